@@ -0,0 +1,485 @@
+package Analyzer;
+
+import DataStructure.ArrayList;
+import DataStructure.FrequencyVector;
+import DataStructure.LongCountMap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 单文档特征画像（不可变）
+ *
+ * 把一份源代码经过 预处理 → 词法分析 → 关键字/运算符/标识符/n-gram 统计 之后得到的全部特征
+ * 一次性保存下来，供后续任意多次两两比较复用：
+ * - token 数量（长度相似度）
+ * - 关键字、运算符频度向量
+ * - 标识符序列 n-gram（2~6 阶）哈希计数及其平方模长
+ * - 归一化 token n-gram（2~8 阶）哈希计数及其平方模长
+ *
+ * 对 N 份代码做两两比较时，只需构建 N 次画像，其余 N² 次比较都是廉价的向量运算。
+ * 画像一经构建不再修改，可以安全地在多个线程之间共享。
+ *
+ * 画像有两种存储形式，比较时可以任意混用：
+ * - 由源代码构建的画像把特征保存在堆上的数组中；
+ * - {@link #readFrom} 得到的画像只是二进制记录（如映射文件）的视图，比较时按偏移直接读取记录，
+ *   n-gram 键与计数留在页缓存里，不复制到堆上。
+ */
+public final class DocumentProfile {
+
+    /** 标识符序列 n-gram 的阶数范围 */
+    public static final int ID_MIN_N = 2;
+    public static final int ID_MAX_N = 6;
+
+    /** 归一化 token n-gram 的阶数范围 */
+    public static final int SEQ_MIN_N = 2;
+    public static final int SEQ_MAX_N = 8;
+
+    // 二进制记录头：5 个 int，补齐到 8 字节
+    private static final int RECORD_HEADER_BYTES = 24;
+
+    // 每个线程一个预处理缓冲区，反复构建画像时不再重新分配；
+    // 容量超过 MAX_RETAINED_CHARS 的缓冲区用完即丢弃，避免处理过一次超大文档的线程长期占住内存
+    private static final ThreadLocal<SourceBuffer> BUFFERS = ThreadLocal.withInitial(SourceBuffer::new);
+    private static final int MAX_RETAINED_CHARS = 1 << 20;
+
+    private final int tokenCount;
+
+    // 关键字、运算符频度向量：堆上的画像持有向量，视图为 null，从 record 的对应偏移读取
+    private final FrequencyVector keywordVector;
+    private final FrequencyVector operatorVector;
+    private final ByteBuffer record;
+    private final int keywordDimension;
+    private final int operatorDimension;
+    private final int keywordCountsAt;
+    private final int operatorCountsAt;
+
+    private final NGrams identifierNGrams;
+    private final NGrams tokenNGrams;
+
+    private DocumentProfile(int tokenCount,
+                            FrequencyVector keywordVector,
+                            FrequencyVector operatorVector,
+                            LongCountMap identifierNGrams,
+                            LongCountMap tokenNGrams) {
+        this.tokenCount = tokenCount;
+        this.keywordVector = keywordVector;
+        this.operatorVector = operatorVector;
+        this.record = null;
+        this.keywordDimension = keywordVector.getDimension();
+        this.operatorDimension = operatorVector.getDimension();
+        this.keywordCountsAt = 0;
+        this.operatorCountsAt = 0;
+        this.identifierNGrams = new NGrams(identifierNGrams, ID_MAX_N);
+        this.tokenNGrams = new NGrams(tokenNGrams, SEQ_MAX_N);
+    }
+
+    /**
+     * 记录视图，布局见 {@link #writeTo}
+     */
+    private DocumentProfile(ByteBuffer record) {
+        this.record = record;
+        this.tokenCount = record.getInt(0);
+        int idGrams = record.getInt(4);
+        int tokenGrams = record.getInt(8);
+        this.keywordDimension = record.getInt(12);
+        this.operatorDimension = record.getInt(16);
+        this.keywordVector = null;
+        this.operatorVector = null;
+
+        int idKeysAt = RECORD_HEADER_BYTES;
+        int tokenKeysAt = idKeysAt + 8 * idGrams;
+        int idNormsAt = tokenKeysAt + 8 * tokenGrams;
+        int tokenNormsAt = idNormsAt + 8 * (ID_MAX_N + 1);
+        this.keywordCountsAt = tokenNormsAt + 8 * (SEQ_MAX_N + 1);
+        this.operatorCountsAt = keywordCountsAt + 4 * keywordDimension;
+        int idCountsAt = operatorCountsAt + 4 * operatorDimension;
+        int tokenCountsAt = idCountsAt + 4 * idGrams;
+        int idSizesAt = tokenCountsAt + 4 * tokenGrams;
+        int tokenSizesAt = idSizesAt + 4 * (ID_MAX_N + 1);
+        this.identifierNGrams = new NGrams(record, idGrams, idKeysAt, idCountsAt, idSizesAt, idNormsAt, ID_MAX_N);
+        this.tokenNGrams = new NGrams(record, tokenGrams, tokenKeysAt, tokenCountsAt, tokenSizesAt, tokenNormsAt, SEQ_MAX_N);
+    }
+
+    /**
+     * 从原始源代码构建画像
+     */
+    public static DocumentProfile build(CharSequence code) {
+        // 预处理结果写入线程内复用的缓冲区，Lexer 直接读取，不生成中间 String
+        StageTracer.Span span = StageTracer.begin();
+        SourceBuffer buffer = BUFFERS.get();
+        TokenStream tokens;
+        try {
+            Preprocessor.processInto(code, buffer);
+            StageTracer.lap(span, StageTracer.Stage.PREPROCESS);
+            tokens = Lexer.tokenizeCodes(buffer.chars(), buffer.length());
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_CHARS) {
+                BUFFERS.remove();
+            }
+        }
+        StageTracer.lap(span, StageTracer.Stage.LEX);
+        return fromTokens(tokens, span);
+    }
+
+    /**
+     * 从整数 Token 流构建画像
+     */
+    public static DocumentProfile fromTokens(TokenStream tokens) {
+        return fromTokens(tokens, StageTracer.begin());
+    }
+
+    private static DocumentProfile fromTokens(TokenStream tokens, StageTracer.Span span) {
+        FrequencyVector kwVec = KeywordAnalyzer.toVector(tokens);
+        StageTracer.lap(span, StageTracer.Stage.KEYWORD);
+        FrequencyVector opVec = OperatorAnalyzer.toVector(tokens);
+        StageTracer.lap(span, StageTracer.Stage.OPERATOR);
+
+        int[] ids = IdentifierAnalyzer.normalizedIdentifierIds(tokens);
+        LongCountMap idGrams = NGramAnalyzer.hashNGrams(ids, ids.length, ID_MIN_N, ID_MAX_N);
+        StageTracer.lap(span, StageTracer.Stage.IDENTIFIER_NGRAMS);
+        LongCountMap seqGrams = NGramAnalyzer.hashNormalizedNGrams(tokens, SEQ_MIN_N, SEQ_MAX_N);
+        StageTracer.lap(span, StageTracer.Stage.TOKEN_NGRAMS);
+
+        DocumentProfile profile = new DocumentProfile(tokens.size(), kwVec, opVec, idGrams, seqGrams);
+        StageTracer.lap(span, StageTracer.Stage.ASSEMBLE);
+        return profile;
+    }
+
+    /**
+     * 从字符串 Token 列表构建画像（结果与整数 Token 流一致）
+     */
+    public static DocumentProfile fromTokens(ArrayList<String> tokens) {
+        FrequencyVector kwVec = KeywordAnalyzer.toVector(KeywordAnalyzer.analyze(tokens));
+        FrequencyVector opVec = OperatorAnalyzer.toVector(OperatorAnalyzer.analyze(tokens));
+
+        int[] ids = IdentifierAnalyzer.normalizedIdentifierIds(tokens);
+        LongCountMap idGrams = NGramAnalyzer.hashNGrams(ids, ids.length, ID_MIN_N, ID_MAX_N);
+        LongCountMap seqGrams = NGramAnalyzer.hashNormalizedNGrams(tokens, SEQ_MIN_N, SEQ_MAX_N);
+
+        return new DocumentProfile(tokens.size(), kwVec, opVec, idGrams, seqGrams);
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * 归一化 token n-gram 的不同键数量（所有阶数合计）
+     */
+    public int getTokenNGramCount() {
+        return tokenNGrams.length;
+    }
+
+    /**
+     * 第 i 个归一化 token n-gram 哈希键（按升序，键格式见 NGramAnalyzer.hashNGrams）
+     */
+    public long getTokenNGramKey(int i) {
+        tokenNGrams.checkIndex(i);
+        return tokenNGrams.key(i);
+    }
+
+    /**
+     * 第 i 个归一化 token n-gram 的出现次数
+     */
+    public int getTokenNGramCountAt(int i) {
+        tokenNGrams.checkIndex(i);
+        return tokenNGrams.count(i);
+    }
+
+    /**
+     * 第 n 阶归一化 token n-gram 的不同键数量
+     */
+    public int getTokenNGramSize(int n) {
+        tokenNGrams.checkOrder(n);
+        return tokenNGrams.size(n);
+    }
+
+    /**
+     * 第 n 阶归一化 token n-gram 计数向量的模长
+     */
+    public double getTokenNGramNorm(int n) {
+        tokenNGrams.checkOrder(n);
+        return Math.sqrt(tokenNGrams.normSquared(n));
+    }
+
+    /**
+     * 二进制编码后的字节数（8 字节对齐，布局见 {@link #writeTo}）
+     */
+    public int serializedSize() {
+        int size = RECORD_HEADER_BYTES;
+        size += 8 * (identifierNGrams.length + tokenNGrams.length);
+        size += 8 * (ID_MAX_N + 1 + SEQ_MAX_N + 1);
+        size += 4 * (keywordDimension + operatorDimension);
+        size += 4 * (identifierNGrams.length + tokenNGrams.length);
+        size += 4 * (ID_MAX_N + 1 + SEQ_MAX_N + 1);
+        return (size + 7) & ~7;
+    }
+
+    /**
+     * 画像在堆上占用的估算字节数，供缓存做容量核算：
+     * 堆上的画像按数组内容（与 serializedSize 相同）加本对象、两个频度向量、两组 n-gram 及 10 个数组的对象头估算
+     * （按 16 字节/个）；记录视图的数据不在堆上，只计本对象、两组 n-gram 与记录缓冲区对象
+     */
+    public long estimatedHeapBytes() {
+        if (record != null) {
+            return 64 + 2 * 48 + 64;
+        }
+        return serializedSize() - RECORD_HEADER_BYTES + 64 + 2 * 32 + 2 * 48 + 10 * 16;
+    }
+
+    /**
+     * 以小端序写入 out 的当前位置（写入 serializedSize() 个字节）
+     *
+     * 布局：int tokenCount、标识符 gram 数、token gram 数、关键字维度、运算符维度（补齐到 8 字节）；
+     * 随后依次为 long 键数组（标识符、token）、double 平方模长数组（标识符、token），
+     * 最后是 int 数组：关键字向量、运算符向量、两组计数、两组按阶数的 gram 数量。
+     * long/double 区域从 8 字节边界开始，映射后可以直接按偏移读取，无需解码。
+     */
+    public void writeTo(ByteBuffer out) {
+        int size = serializedSize();
+        if (record != null) {
+            // 视图直接整段复制原记录
+            ByteBuffer src = record.duplicate();
+            src.clear().limit(size);
+            out.put(src);
+            return;
+        }
+        ByteBuffer buf = out.slice().order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(tokenCount);
+        buf.putInt(identifierNGrams.length);
+        buf.putInt(tokenNGrams.length);
+        buf.putInt(keywordDimension);
+        buf.putInt(operatorDimension);
+        buf.position(RECORD_HEADER_BYTES);
+        for (long key : identifierNGrams.keys) buf.putLong(key);
+        for (long key : tokenNGrams.keys) buf.putLong(key);
+        for (double norm : identifierNGrams.norms) buf.putDouble(norm);
+        for (double norm : tokenNGrams.norms) buf.putDouble(norm);
+        for (int v : keywordVector.getData()) buf.putInt(v);
+        for (int v : operatorVector.getData()) buf.putInt(v);
+        for (int v : identifierNGrams.counts) buf.putInt(v);
+        for (int v : tokenNGrams.counts) buf.putInt(v);
+        for (int v : identifierNGrams.sizes) buf.putInt(v);
+        for (int v : tokenNGrams.sizes) buf.putInt(v);
+        while (buf.position() < size) {
+            buf.put((byte) 0); // 对齐填充
+        }
+        out.position(out.position() + size);
+    }
+
+    /**
+     * 在 in 的当前位置建立 {@link #writeTo} 写入的画像视图，并把 in 的位置移过该记录
+     * 不复制任何数据：画像直接引用 in 中的记录（对映射文件即页缓存），之后 in 的内容不得再修改。
+     */
+    public static DocumentProfile readFrom(ByteBuffer in) {
+        DocumentProfile profile = new DocumentProfile(in.slice().order(ByteOrder.LITTLE_ENDIAN));
+        in.position(in.position() + profile.serializedSize());
+        return profile;
+    }
+
+    /**
+     * 关键字频度余弦相似度
+     */
+    public static double keywordSimilarity(DocumentProfile p1, DocumentProfile p2) {
+        if (p1.record == null && p2.record == null) {
+            return FrequencyVector.cosineSimilarity(p1.keywordVector, p2.keywordVector);
+        }
+        return cosineSimilarity(p1.keywordVector, p1.record, p1.keywordCountsAt, p1.keywordDimension,
+            p2.keywordVector, p2.record, p2.keywordCountsAt, p2.keywordDimension);
+    }
+
+    /**
+     * 运算符频度余弦相似度
+     */
+    public static double operatorSimilarity(DocumentProfile p1, DocumentProfile p2) {
+        if (p1.record == null && p2.record == null) {
+            return FrequencyVector.cosineSimilarity(p1.operatorVector, p2.operatorVector);
+        }
+        return cosineSimilarity(p1.operatorVector, p1.record, p1.operatorCountsAt, p1.operatorDimension,
+            p2.operatorVector, p2.record, p2.operatorCountsAt, p2.operatorDimension);
+    }
+
+    /**
+     * 标识符序列 n-gram 各阶余弦相似度，返回数组下标即阶数（[ID_MIN_N, ID_MAX_N] 有效）
+     */
+    public static double[] identifierNGramSimilarities(DocumentProfile p1, DocumentProfile p2) {
+        return cosineSimilaritiesByOrder(p1.identifierNGrams, p2.identifierNGrams, ID_MIN_N, ID_MAX_N);
+    }
+
+    /**
+     * 归一化 token n-gram 各阶余弦相似度，返回数组下标即阶数（[SEQ_MIN_N, SEQ_MAX_N] 有效）
+     */
+    public static double[] tokenNGramSimilarities(DocumentProfile p1, DocumentProfile p2) {
+        return cosineSimilaritiesByOrder(p1.tokenNGrams, p2.tokenNGrams, SEQ_MIN_N, SEQ_MAX_N);
+    }
+
+    /**
+     * token 数量相似度（长度比）
+     */
+    public static double lengthSimilarity(DocumentProfile p1, DocumentProfile p2) {
+        int n1 = p1.tokenCount;
+        int n2 = p2.tokenCount;
+        if (n1 == 0 && n2 == 0) return 1.0;
+        if (n1 == 0 || n2 == 0) return 0.0;
+        return (double) Math.min(n1, n2) / (double) Math.max(n1, n2);
+    }
+
+    /**
+     * 至少一侧为记录视图时的频度向量余弦相似度（与 FrequencyVector.cosineSimilarity 累加顺序相同，结果一致）
+     */
+    private static double cosineSimilarity(FrequencyVector v1, ByteBuffer r1, int at1, int dim1,
+                                           FrequencyVector v2, ByteBuffer r2, int at2, int dim2) {
+        if (dim1 != dim2) {
+            throw new IllegalArgumentException("向量维度不一致");
+        }
+        double dotProduct = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+        for (int i = 0; i < dim1; i++) {
+            double a = v1 != null ? v1.getData()[i] : r1.getInt(at1 + 4 * i);
+            double b = v2 != null ? v2.getData()[i] : r2.getInt(at2 + 4 * i);
+            dotProduct += a * b;
+            norm1 += a * a;
+            norm2 += b * b;
+        }
+        if (norm1 == 0 && norm2 == 0) return 1.0;
+        if (norm1 == 0 || norm2 == 0) return 0.0;
+        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    }
+
+    /**
+     * 多阶稀疏计数向量的余弦相似度
+     * 模长已在构建画像时按阶数预先算好；两侧的键都已升序排列，
+     * 这里做一次归并扫描，按键所属阶数把点积累加到对应位置，从而一次合并得到全部阶数的余弦值。
+     */
+    private static double[] cosineSimilaritiesByOrder(NGrams g1, NGrams g2, int minN, int maxN) {
+        double[] dots = new double[maxN + 1];
+        int i = 0;
+        int j = 0;
+        int n1 = g1.length;
+        int n2 = g2.length;
+        while (i < n1 && j < n2) {
+            long k1 = g1.key(i);
+            long k2 = g2.key(j);
+            if (k1 < k2) {
+                i++;
+            } else if (k1 > k2) {
+                j++;
+            } else {
+                dots[NGramAnalyzer.orderOf(k1)] += (double) g1.count(i) * g2.count(j);
+                i++;
+                j++;
+            }
+        }
+
+        double[] sims = new double[maxN + 1];
+        for (int n = minN; n <= maxN; n++) {
+            int size1 = g1.size(n);
+            int size2 = g2.size(n);
+            if (size1 == 0 && size2 == 0) {
+                sims[n] = 1.0;
+            } else if (size1 == 0 || size2 == 0) {
+                sims[n] = 0.0;
+            } else {
+                sims[n] = dots[n] / (Math.sqrt(g1.normSquared(n)) * Math.sqrt(g2.normSquared(n)));
+            }
+        }
+        return sims;
+    }
+
+    private static long[] sortedKeys(LongCountMap grams) {
+        long[] keys = grams.keys();
+        java.util.Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int[] countsOf(LongCountMap grams, long[] keys) {
+        int[] counts = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            counts[i] = grams.get(keys[i]);
+        }
+        return counts;
+    }
+
+    /**
+     * 一组多阶 n-gram：升序哈希键与对应计数，以及按阶数下标的不同 gram 数量与平方模长
+     *
+     * 堆上的画像持有数组；记录视图的数组字段为 null，按偏移从记录读取。
+     * 访问方法里的分支在同一种存储形式下总是走同一边，JIT 编译后与直接访问数组几乎没有差别。
+     */
+    private static final class NGrams {
+        final int length;
+        final int maxN;
+        final long[] keys;
+        final int[] counts;
+        final int[] sizes;
+        final double[] norms;
+        final ByteBuffer record;
+        final int keysAt;
+        final int countsAt;
+        final int sizesAt;
+        final int normsAt;
+
+        NGrams(LongCountMap grams, int maxN) {
+            this.keys = sortedKeys(grams);
+            this.counts = countsOf(grams, keys);
+            this.length = keys.length;
+            this.maxN = maxN;
+            this.sizes = new int[maxN + 1];
+            this.norms = new double[maxN + 1];
+            for (int i = 0; i < keys.length; i++) {
+                int n = NGramAnalyzer.orderOf(keys[i]);
+                sizes[n]++;
+                norms[n] += (double) counts[i] * counts[i];
+            }
+            this.record = null;
+            this.keysAt = 0;
+            this.countsAt = 0;
+            this.sizesAt = 0;
+            this.normsAt = 0;
+        }
+
+        NGrams(ByteBuffer record, int length, int keysAt, int countsAt, int sizesAt, int normsAt, int maxN) {
+            this.length = length;
+            this.maxN = maxN;
+            this.keys = null;
+            this.counts = null;
+            this.sizes = null;
+            this.norms = null;
+            this.record = record;
+            this.keysAt = keysAt;
+            this.countsAt = countsAt;
+            this.sizesAt = sizesAt;
+            this.normsAt = normsAt;
+        }
+
+        long key(int i) {
+            return keys != null ? keys[i] : record.getLong(keysAt + 8 * i);
+        }
+
+        int count(int i) {
+            return counts != null ? counts[i] : record.getInt(countsAt + 4 * i);
+        }
+
+        int size(int n) {
+            return sizes != null ? sizes[n] : record.getInt(sizesAt + 4 * n);
+        }
+
+        double normSquared(int n) {
+            return norms != null ? norms[n] : record.getDouble(normsAt + 8 * n);
+        }
+
+        void checkIndex(int i) {
+            if (i < 0 || i >= length) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + length);
+            }
+        }
+
+        void checkOrder(int n) {
+            if (n < 0 || n > maxN) {
+                throw new IndexOutOfBoundsException("Order: " + n + ", Max: " + maxN);
+            }
+        }
+    }
+}
@@ -91,6 +91,48 @@ public class IdentifierAnalyzer {
         return seq;
     }
 
+    /**
+     * 提取标识符序列的首次出现编号（即 IDk 中的 k）
+     * 例：a b a c -> 0 1 0 2
+     */
+    public static int[] normalizedIdentifierIds(ArrayList<String> tokens) {
+        HashMap<Integer> idMap = new HashMap<>();
+        int nextId = 0;
+
+        int[] ids = new int[tokens.size()];
+        int length = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (!isIdentifier(token)) {
+                continue;
+            }
+            Integer existing = idMap.get(token);
+            if (existing == null) {
+                existing = nextId++;
+                idMap.put(token, existing);
+            }
+            ids[length++] = existing;
+        }
+
+        return java.util.Arrays.copyOf(ids, length);
+    }
+
+    /**
+     * 直接由整数 Token 流提取标识符首次出现编号
+     * 词法分析阶段已按首次出现顺序为标识符编号，这里只需按区间筛选
+     */
+    public static int[] normalizedIdentifierIds(TokenStream tokens) {
+        int[] ids = new int[tokens.size()];
+        int[] codes = tokens.rawCodes();
+        int length = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (JavaConstants.isIdentifierCode(codes[i])) {
+                ids[length++] = codes[i] - JavaConstants.IDENTIFIER_CODE_BASE;
+            }
+        }
+        return java.util.Arrays.copyOf(ids, length);
+    }
+
     /**
      * 判断是否为用户标识符
      */
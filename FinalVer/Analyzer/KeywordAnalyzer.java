@@ -45,4 +45,20 @@ public class KeywordAnalyzer {
         }
         return vector;
     }
-}
\ No newline at end of file
+
+    /**
+     * 直接由整数 Token 流统计关键字频度向量
+     * 关键字编码即其在 KEYWORDS 中的下标，区间判断后直接累加
+     */
+    public static FrequencyVector toVector(TokenStream tokens) {
+        int[] counts = new int[JavaConstants.KEYWORDS.length];
+        int[] codes = tokens.rawCodes();
+        for (int i = 0; i < tokens.size(); i++) {
+            int code = codes[i];
+            if (JavaConstants.isKeywordCode(code)) {
+                counts[code]++;
+            }
+        }
+        return new FrequencyVector(counts);
+    }
+}
@@ -1,6 +1,7 @@
 package Analyzer;
 
 import DataStructure.ArrayList;
+import DataStructure.SymbolTable;
 import Constants.JavaConstants;
 
 /**
@@ -9,6 +10,52 @@ import Constants.JavaConstants;
  */
 public class Lexer {
 
+    // 关键字与字面量的固定符号表：编号 [0, KEYWORDS.length) 为关键字，其后依次为字面量。
+    // 构建后只读，可被多个线程同时查询。
+    private static final SymbolTable RESERVED_WORDS = new SymbolTable();
+
+    // 运算符最长匹配长度：与最初“依次尝试 3/2/1 字符”的实现保持一致，
+    // 因此 4 字符的 >>>= 会被切分为 >>> 和 =
+    private static final int MAX_OPERATOR_LENGTH = 3;
+
+    // 运算符 DFA（由 OPERATORS 构建的字符前缀树）：
+    // OPERATOR_TRANSITIONS[state * 128 + c] 为读入 ASCII 字符 c 后的状态，0 表示无转移；
+    // OPERATOR_ACCEPT[state] 为到达该状态时匹配到的运算符下标，-1 表示不是完整运算符。
+    private static final int[] OPERATOR_TRANSITIONS;
+    private static final int[] OPERATOR_ACCEPT;
+
+    static {
+        for (String keyword : JavaConstants.KEYWORDS) {
+            RESERVED_WORDS.intern(keyword);
+        }
+        for (String literal : JavaConstants.LITERALS) {
+            RESERVED_WORDS.intern(literal);
+        }
+
+        int maxStates = 1;
+        for (String operator : JavaConstants.OPERATORS) {
+            maxStates += operator.length();
+        }
+        int[] transitions = new int[maxStates * 128];
+        int[] accept = new int[maxStates];
+        java.util.Arrays.fill(accept, -1);
+        int states = 1;
+        for (int i = 0; i < JavaConstants.OPERATORS.length; i++) {
+            String operator = JavaConstants.OPERATORS[i];
+            int state = 0;
+            for (int j = 0; j < operator.length(); j++) {
+                int slot = state * 128 + operator.charAt(j);
+                if (transitions[slot] == 0) {
+                    transitions[slot] = states++;
+                }
+                state = transitions[slot];
+            }
+            accept[state] = i;
+        }
+        OPERATOR_TRANSITIONS = java.util.Arrays.copyOf(transitions, states * 128);
+        OPERATOR_ACCEPT = java.util.Arrays.copyOf(accept, states);
+    }
+
     /**
      * 对源代码进行词法分析
      * @param code 预处理后的源代码
@@ -16,11 +63,13 @@ public class Lexer {
      */
     public static ArrayList<String> tokenize(String code) {
         ArrayList<String> tokens = new ArrayList<>();
+        char[] chars = code.toCharArray();
+        int length = chars.length;
         int i = 0;
 
-        // 遍历整个源代码字符串
-        while (i < code.length()) {
-            char c = code.charAt(i);
+        // 遍历整个源代码
+        while (i < length) {
+            char c = chars[i];
 
             // 1. 跳过空白字符（空格、换行、制表符等）
             if (Character.isWhitespace(c)) {
@@ -31,30 +80,30 @@ public class Lexer {
             // 2. 识别标识符或关键字
             // Java 标识符必须以字母或下划线开头
             if (Character.isLetter(c) || c == '_') {
-                StringBuilder sb = new StringBuilder();
-                while (i < code.length() && (Character.isLetterOrDigit(code.charAt(i)) || code.charAt(i) == '_')) {
-                    sb.append(code.charAt(i));
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(chars[i]) || chars[i] == '_')) {
                     i++;
                 }
-                tokens.append(sb.toString());
+                tokens.append(new String(chars, start, i - start));
                 continue;
             }
 
             // 3. 识别数字字面量
             // 相似度分析中通常不关心具体数值，因此扫描后跳过，不存入 Token 列表
             if (Character.isDigit(c)) {
-                while (i < code.length() && (Character.isDigit(code.charAt(i)) || code.charAt(i) == '.')) {
+                while (i < length && (Character.isDigit(chars[i]) || chars[i] == '.')) {
                     i++;
                 }
                 continue;
             }
 
             // 4. 尝试匹配运算符（如 ++, +=, ==, -> 等）
-            // 采用“最长匹配”原则，优先匹配 3 字符和 2 字符的运算符
-            String op = tryMatchOperator(code, i);
-            if (op != null) {
-                tokens.append(op);
-                i += op.length();
+            // 采用“最长匹配”原则，运算符文本直接取 OPERATORS 中的常量，不分配新字符串
+            int op = matchOperator(chars, i, length);
+            if (op >= 0) {
+                String operator = JavaConstants.OPERATORS[op];
+                tokens.append(operator);
+                i += operator.length();
                 continue;
             }
 
@@ -66,28 +115,109 @@ public class Lexer {
     }
 
     /**
-     * 尝试匹配运算符（最长匹配）
+     * 对源代码进行词法分析，输出整数 Token 流
+     *
+     * 切分规则与 {@link #tokenize} 完全一致，区别在于每个 token 直接编码为 int：
+     * 关键字/运算符/字面量取固定编码，标识符按首次出现顺序编号（编码区间见 JavaConstants）。
+     * 标识符通过字符区间查表，不为每个 token 创建 String。
+     * 同时记录每个 token 所在的行号（预处理保留了全部换行符，因此与原始源码行号一致）。
+     * @param code 预处理后的源代码
+     */
+    public static TokenStream tokenizeCodes(String code) {
+        char[] chars = code.toCharArray();
+        return tokenizeCodes(chars, chars.length);
+    }
+
+    /**
+     * 对字符数组前 length 个字符进行词法分析，输出整数 Token 流
      */
-    private static String tryMatchOperator(String code, int start) {
-        // 尝试匹配3字符运算符
-        if (start + 3 <= code.length()) {
-            String op3 = code.substring(start, start + 3);
-            if (JavaConstants.isOperator(op3)) {
-                return op3;
+    public static TokenStream tokenizeCodes(char[] code, int length) {
+        int[] codes = new int[Math.max(16, length / 4)];
+        int[] lines = new int[codes.length];
+        int size = 0;
+        int line = 1;
+        SymbolTable identifiers = new SymbolTable();
+        int i = 0;
+
+        while (i < length) {
+            char c = code[i];
+
+            // 1. 跳过空白字符
+            if (Character.isWhitespace(c)) {
+                if (c == '\n') {
+                    line++;
+                }
+                i++;
+                continue;
             }
-        }
-        // 尝试匹配2字符运算符
-        if (start + 2 <= code.length()) {
-            String op2 = code.substring(start, start + 2);
-            if (JavaConstants.isOperator(op2)) {
-                return op2;
+
+            int tokenCode;
+            int start = i;
+
+            // 2. 识别标识符、关键字或字面量
+            if (Character.isLetter(c) || c == '_') {
+                while (i < length && (Character.isLetterOrDigit(code[i]) || code[i] == '_')) {
+                    i++;
+                }
+                int reserved = RESERVED_WORDS.lookup(code, start, i - start);
+                if (reserved < 0) {
+                    tokenCode = JavaConstants.IDENTIFIER_CODE_BASE + identifiers.intern(code, start, i - start);
+                } else if (reserved < JavaConstants.KEYWORDS.length) {
+                    tokenCode = reserved;
+                } else {
+                    tokenCode = JavaConstants.LITERAL_CODE_BASE + reserved - JavaConstants.KEYWORDS.length;
+                }
+            } else if (Character.isDigit(c)) {
+                // 3. 数字字面量：扫描后跳过
+                while (i < length && (Character.isDigit(code[i]) || code[i] == '.')) {
+                    i++;
+                }
+                continue;
+            } else {
+                // 4. 运算符（最长匹配）
+                int op = matchOperator(code, i, length);
+                if (op < 0) {
+                    // 5. 忽略无法识别的单个字符
+                    i++;
+                    continue;
+                }
+                tokenCode = JavaConstants.OPERATOR_CODE_BASE + op;
+                i += JavaConstants.OPERATORS[op].length();
+            }
+
+            if (size == codes.length) {
+                codes = java.util.Arrays.copyOf(codes, size + (size >> 1));
+                lines = java.util.Arrays.copyOf(lines, codes.length);
             }
+            lines[size] = line;
+            codes[size++] = tokenCode;
         }
-        // 尝试匹配1字符运算符
-        String op1 = code.substring(start, start + 1);
-        if (JavaConstants.isOperator(op1)) {
-            return op1;
+
+        return new TokenStream(codes, lines, size, identifiers.size());
+    }
+
+    /**
+     * 尝试匹配运算符（最长匹配）
+     * 沿 DFA 逐字符前进，记录最后一个接受状态；整个过程只做数组访问，不分配对象。
+     * @return 匹配到的运算符在 OPERATORS 中的下标，无法匹配时返回 -1
+     */
+    private static int matchOperator(char[] code, int start, int length) {
+        int end = Math.min(length, start + MAX_OPERATOR_LENGTH);
+        int state = 0;
+        int matched = -1;
+        for (int i = start; i < end; i++) {
+            char c = code[i];
+            if (c >= 128) {
+                break;
+            }
+            state = OPERATOR_TRANSITIONS[state * 128 + c];
+            if (state == 0) {
+                break;
+            }
+            if (OPERATOR_ACCEPT[state] >= 0) {
+                matched = OPERATOR_ACCEPT[state];
+            }
         }
-        return null;
+        return matched;
     }
-}
\ No newline at end of file
+}
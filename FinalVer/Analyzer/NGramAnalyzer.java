@@ -3,6 +3,7 @@ package Analyzer;
 import Constants.JavaConstants;
 import DataStructure.ArrayList;
 import DataStructure.HashMap;
+import DataStructure.LongCountMap;
 
 /**
  * N-gram 分析器（基于 token 序列）
@@ -10,6 +11,12 @@ import DataStructure.HashMap;
  */
 public class NGramAnalyzer {
 
+    // 哈希 n-gram 键布局：高 4 位为阶数，低 60 位为哈希值
+    private static final int ORDER_SHIFT = 60;
+    private static final long HASH_MASK = (1L << ORDER_SHIFT) - 1;
+    private static final int MAX_HASHED_ORDER = 15;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
     /**
      * 对给定 token 序列提取 n-gram 频次。
      * 
@@ -61,17 +68,122 @@ public class NGramAnalyzer {
         if (n <= 0) {
             throw new IllegalArgumentException("n must be positive: " + n);
         }
+        return analyzeNGrams(normalize(tokens), n);
+    }
+
+    /**
+     * 单次遍历提取 [minN, maxN] 全部阶数的 n-gram，并以 64 位哈希值作为键计数。
+     *
+     * 原理：
+     * 对每个起点 i，从 h = 0 开始逐个吸收 token 编码：h = (h + code + 1) * M，
+     * 吸收第 n 个 token 后的 h 就是 n-gram [i, i+n) 的多项式哈希，无需拼接任何字符串。
+     * 再经过一次 64 位混淆（murmur3 fmix64）使各位充分扩散，
+     * 最高 4 位写入阶数 n，剩余 60 位保存哈希值，所有阶数共用一张计数表。
+     *
+     * 不同 n-gram 的哈希值相同（碰撞）时计数会被合并；
+     * 60 位空间下单份文档几万个不同 gram 的碰撞概率约为 D² / 2^61，可忽略，
+     * 实际碰撞率可用 {@link #collisionReport} 核对。
+     *
+     * @param codes token 编码序列（取前 length 个）
+     */
+    public static LongCountMap hashNGrams(int[] codes, int length, int minN, int maxN) {
+        checkOrders(minN, maxN);
+        if (maxN > MAX_HASHED_ORDER) {
+            throw new IllegalArgumentException("n-gram order too large for hashed keys: " + maxN);
+        }
+
+        int windows = Math.max(0, length - minN + 1);
+        LongCountMap grams = new LongCountMap(windows * (maxN - minN + 1));
+        for (int i = 0; i + minN <= length; i++) {
+            long h = 0;
+            for (int j = 0; j < maxN && i + j < length; j++) {
+                h = (h + codes[i + j] + 1) * HASH_MULTIPLIER;
+                int n = j + 1;
+                if (n < minN) continue;
+                grams.increment(((long) n << ORDER_SHIFT) | (fmix64(h) & HASH_MASK));
+            }
+        }
+        return grams;
+    }
 
+    /**
+     * 归一化后单次遍历提取 [minN, maxN] 全部阶数的 n-gram 哈希计数。
+     * 归一化只做一次，结果表的键格式同 {@link #hashNGrams}。
+     */
+    public static LongCountMap hashNormalizedNGrams(ArrayList<String> tokens, int minN, int maxN) {
+        int[] codes = normalizeToCodes(tokens);
+        return hashNGrams(codes, codes.length, minN, maxN);
+    }
+
+    /**
+     * 直接由整数 Token 流提取 [minN, maxN] 全部阶数的归一化 n-gram 哈希计数。
+     * 词法分析阶段已完成标识符编号，这里只需剔除字面量。
+     */
+    public static LongCountMap hashNormalizedNGrams(TokenStream tokens, int minN, int maxN) {
+        int[] source = tokens.rawCodes();
+        int[] codes = new int[tokens.size()];
+        int length = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (!JavaConstants.isLiteralCode(source[i])) {
+                codes[length++] = source[i];
+            }
+        }
+        return hashNGrams(codes, length, minN, maxN);
+    }
+
+    /**
+     * 哈希 n-gram 键所属的阶数
+     */
+    public static int orderOf(long key) {
+        return (int) (key >>> ORDER_SHIFT);
+    }
+
+    /**
+     * 统计归一化 n-gram 的哈希碰撞情况：
+     * 分别用字符串 gram 与哈希键计数，比较二者的不同键数量。
+     */
+    public static CollisionReport collisionReport(ArrayList<String> tokens, int minN, int maxN) {
+        ArrayList<String> normalized = normalize(tokens);
+        int distinctGrams = 0;
+        for (int n = minN; n <= maxN; n++) {
+            distinctGrams += analyzeNGrams(normalized, n).size();
+        }
+        int distinctHashes = hashNormalizedNGrams(tokens, minN, maxN).size();
+        return new CollisionReport(distinctGrams, distinctHashes);
+    }
+
+    /**
+     * 哈希碰撞统计结果
+     * @param distinctGrams 不同的字符串 n-gram 数量
+     * @param distinctHashes 不同的哈希键数量
+     */
+    public record CollisionReport(int distinctGrams, int distinctHashes) {
+        public int collisions() {
+            return distinctGrams - distinctHashes;
+        }
+
+        public double rate() {
+            return distinctGrams == 0 ? 0.0 : (double) collisions() / distinctGrams;
+        }
+    }
+
+    /**
+     * 将 token 流归一化为整数编码序列，规则与 {@link #normalize} 一致：
+     * 关键字/运算符取 JavaConstants 中的固定编码，标识符按首次出现顺序编码为 IDENTIFIER_CODE_BASE + k。
+     */
+    private static int[] normalizeToCodes(ArrayList<String> tokens) {
         HashMap<Integer> idMap = new HashMap<>();
         int nextId = 0;
 
-        ArrayList<String> normalized = new ArrayList<>();
+        int[] codes = new int[tokens.size()];
+        int length = 0;
         for (int i = 0; i < tokens.size(); i++) {
             String token = tokens.get(i);
             if (token == null || token.isEmpty()) continue;
 
-            if (JavaConstants.isKeyword(token) || JavaConstants.isOperator(token)) {
-                normalized.append(token);
+            int code = JavaConstants.getTokenCode(token);
+            if (code >= 0) {
+                codes[length++] = code;
                 continue;
             }
 
@@ -84,26 +196,58 @@ public class NGramAnalyzer {
                 id = nextId++;
                 idMap.put(token, id);
             }
-            normalized.append("ID" + id);
+            codes[length++] = JavaConstants.IDENTIFIER_CODE_BASE + id;
         }
+        return length == codes.length ? codes : java.util.Arrays.copyOf(codes, length);
+    }
 
-        HashMap<Integer> freqMap = new HashMap<>();
-        if (normalized.size() < n) {
-            return freqMap;
-        }
+    /**
+     * murmur3 的 64 位末端混淆函数
+     */
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
 
-        for (int i = 0; i + n <= normalized.size(); i++) {
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < n; j++) {
-                if (j > 0) sb.append(' ');
-                sb.append(normalized.get(i + j));
+    /**
+     * 将 token 流归一化：关键字与运算符保持原样，标识符按首次出现顺序映射为 IDk，字面量剔除。
+     */
+    private static ArrayList<String> normalize(ArrayList<String> tokens) {
+        HashMap<Integer> idMap = new HashMap<>();
+        int nextId = 0;
+
+        ArrayList<String> normalized = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token == null || token.isEmpty()) continue;
+
+            if (JavaConstants.isKeyword(token) || JavaConstants.isOperator(token)) {
+                normalized.append(token);
+                continue;
             }
-            String gram = sb.toString();
-            int count = freqMap.getOrDefault(gram, 0);
-            freqMap.put(gram, count + 1);
+
+            if (isExcludedLiteral(token)) {
+                continue;
+            }
+
+            Integer id = idMap.get(token);
+            if (id == null) {
+                id = nextId++;
+                idMap.put(token, id);
+            }
+            normalized.append("ID" + id);
         }
+        return normalized;
+    }
 
-        return freqMap;
+    private static void checkOrders(int minN, int maxN) {
+        if (minN <= 0 || maxN < minN) {
+            throw new IllegalArgumentException("invalid n-gram orders: [" + minN + ", " + maxN + "]");
+        }
     }
 
     private static boolean isExcludedLiteral(String token) {
@@ -11,6 +11,15 @@ import Constants.JavaConstants;
  */
 public class OperatorAnalyzer {
 
+    // 按 OPERATORS 下标标记的分隔符/界符
+    private static final boolean[] DELIMITER_FLAGS = new boolean[JavaConstants.OPERATORS.length];
+
+    static {
+        for (int i = 0; i < JavaConstants.OPERATORS.length; i++) {
+            DELIMITER_FLAGS[i] = isDelimiter(JavaConstants.OPERATORS[i]);
+        }
+    }
+
     /**
      * 分析Token列表，统计运算符频度
      */
@@ -56,4 +65,22 @@ public class OperatorAnalyzer {
         }
         return vector;
     }
+
+    /**
+     * 直接由整数 Token 流统计运算符频度向量（同样不计入分隔符/界符）
+     */
+    public static FrequencyVector toVector(TokenStream tokens) {
+        int[] counts = new int[JavaConstants.OPERATORS.length];
+        int[] codes = tokens.rawCodes();
+        for (int i = 0; i < tokens.size(); i++) {
+            int code = codes[i];
+            if (JavaConstants.isOperatorCode(code)) {
+                int index = code - JavaConstants.OPERATOR_CODE_BASE;
+                if (!DELIMITER_FLAGS[index]) {
+                    counts[index]++;
+                }
+            }
+        }
+        return new FrequencyVector(counts);
+    }
 }
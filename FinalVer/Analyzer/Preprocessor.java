@@ -6,189 +6,113 @@ package Analyzer;
  */
 public class Preprocessor {
 
+    // 状态机状态
+    private static final int CODE = 0;           // 普通代码
+    private static final int LINE_COMMENT = 1;   // 单行注释 //...
+    private static final int BLOCK_COMMENT = 2;  // 多行注释 /*...*/
+    private static final int STRING = 3;         // 字符串字面量 "..."
+    private static final int CHAR = 4;           // 字符字面量 '...'
+
     /**
      * 预处理源代码
      */
     public static String process(String code) {
-        code = removeComments(code);
-        code = removeStringLiterals(code);
-        code = removeCharLiterals(code);
-        return code;
+        SourceBuffer buffer = new SourceBuffer(code.length());
+        processInto(code, buffer);
+        return buffer.toString();
     }
 
     /**
-     * 去除注释
-     * 
+     * 预处理源代码，结果写入可复用的缓冲区（原有内容被覆盖）
+     *
      * 算法实现逻辑：
-     * 采用简单的状态机思路遍历字符流，识别以下四种状态：
-     * 1. 单行注释 (//...)：遇到 // 开始，直到换行符结束。
-     * 2. 多行注释 (/*...* /)：遇到 /* 开始，直到 * / 结束。
-     * 3. 字符串字面量 ("...")：在字符串内部时，忽略其中的 // 或 /*，防止误删。
-     * 4. 字符字面量 ('...')：同上，处理单引号内的内容。
-     * 
+     * 采用单遍状态机遍历字符流，同时完成去注释和清空字面量，识别以下五种状态：
+     * 1. 普通代码：字符原样保留，遇到 //、/*、"、' 时切换状态。
+     * 2. 单行注释 (//...)：注释开始符替换为一个空格，内容丢弃，直到换行符结束（保留换行符）。
+     * 3. 多行注释 (/*...* /)：注释开始符替换为一个空格，内容丢弃但保留换行符，直到 * / 结束。
+     * 4. 字符串字面量 ("...")：只保留首尾引号与其中的换行符（文本块 """...""" 可跨多行），
+     *    内容（含转义字符 \")丢弃；其中的 // 或 /* 不视为注释。
+     * 5. 字符字面量 ('...')：同上，只保留首尾单引号。
+     *
      * 目的：
-     * 注释不参与逻辑运算，去除注释可以消除因注释内容不同而导致的相似度干扰。
+     * 注释不参与逻辑运算，字面量内容与业务数据相关，去除它们可以消除相似度干扰。
+     * 每个输入字符至多产生一个输出字符，因此缓冲区容量等于输入长度即可，无需中途扩容。
      */
-    private static String removeComments(String code) {
-        StringBuilder result = new StringBuilder();
-        boolean inString = false;      // 是否在双引号字符串内
-        boolean inChar = false;        // 是否在单引号字符内
-        boolean inLineComment = false; // 是否在单行注释内
-        boolean inBlockComment = false;// 是否在块注释内
+    public static void processInto(CharSequence code, SourceBuffer out) {
+        int length = code.length();
+        out.reset(length);
+        int state = CODE;
         int i = 0;
-        while (i < code.length()) {
-            char c = code.charAt(i);
 
-            // 处理单行注释状态
-            if (inLineComment) {
-                if (c == '\n') {
-                    inLineComment = false;
-                    result.append('\n'); // 保留换行符以维持行号结构（可选）
-                }
-                i++;
-                continue;
-            }
+        while (i < length) {
+            char c = code.charAt(i);
 
-            // 处理块注释状态
-            if (inBlockComment) {
-                if (c == '\n') {
-                    result.append('\n');
+            switch (state) {
+                case LINE_COMMENT:
+                    if (c == '\n') {
+                        state = CODE;
+                        out.append('\n'); // 保留换行符以维持行号结构
+                    }
                     i++;
-                    continue;
-                }
-                // 检查块注释结束标志 */
-                if (c == '*' && i + 1 < code.length() && code.charAt(i + 1) == '/') {
-                    inBlockComment = false;
-                    i += 2;
-                    continue;
-                }
-                i++;
-                continue;
-            }
-
-            // 处理字符串内部状态（需处理转义字符 \"）
-            if (inString) {
-                result.append(c);
-                if (c == '\\' && i + 1 < code.length()) {
-                    result.append(code.charAt(i + 1));
-                    i += 2;
-                    continue;
-                }
-                if (c == '"') {
-                    inString = false;
-                }
-                i++;
-                continue;
-            }
-
-            // 处理字符内部状态（需处理转义字符 \'）
-            if (inChar) {
-                result.append(c);
-                if (c == '\\' && i + 1 < code.length()) {
-                    result.append(code.charAt(i + 1));
-                    i += 2;
-                    continue;
-                }
-                if (c == '\'') {
-                    inChar = false;
-                }
-                i++;
-                continue;
-            }
-
-            // 状态切换检测
-            if (c == '"') {
-                inString = true;
-                result.append(c);
-                i++;
-                continue;
-            }
-            if (c == '\'') {
-                inChar = true;
-                result.append(c);
-                i++;
-                continue;
-            }
-
-            // 检查注释开始标志 // 或 /*
-            if (c == '/' && i + 1 < code.length()) {
-                char next = code.charAt(i + 1);
-                if (next == '/') {
-                    inLineComment = true;
-                    result.append(' '); // 用空格替换注释开始符
-                    i += 2;
-                    continue;
-                }
-                if (next == '*') {
-                    inBlockComment = true;
-                    result.append(' ');
-                    i += 2;
-                    continue;
-                }
-            }
-
-            // 普通代码字符，直接保留
-            result.append(c);
-            i++;
-        }
-        return result.toString();
-    }
+                    break;
 
-    /**
-     * 去除字符串字面量 "..."
-     */
-    private static String removeStringLiterals(String code) {
-        StringBuilder result = new StringBuilder();
-        int i = 0;
-        while (i < code.length()) {
-            if (code.charAt(i) == '"') {
-                result.append('"');
-                i++;
-                while (i < code.length() && code.charAt(i) != '"') {
-                    if (code.charAt(i) == '\\' && i + 1 < code.length()) {
+                case BLOCK_COMMENT:
+                    if (c == '\n') {
+                        out.append('\n');
+                        i++;
+                    } else if (c == '*' && i + 1 < length && code.charAt(i + 1) == '/') {
+                        // 块注释结束标志 */
+                        state = CODE;
                         i += 2;
                     } else {
                         i++;
                     }
-                }
-                if (i < code.length()) {
-                    result.append('"');
+                    break;
+
+                case STRING:
+                case CHAR:
+                    // 字面量内部：跳过转义字符（文本块的行尾 \ 续行仍保留换行），
+                    // 遇到对应的结束引号时保留引号并回到普通代码
+                    if (c == '\\' && i + 1 < length) {
+                        if (code.charAt(i + 1) == '\n') {
+                            out.append('\n');
+                        }
+                        i += 2;
+                        break;
+                    }
+                    if (c == '\n') {
+                        out.append('\n');
+                    } else if (c == (state == STRING ? '"' : '\'')) {
+                        out.append(c);
+                        state = CODE;
+                    }
                     i++;
-                }
-            } else {
-                result.append(code.charAt(i));
-                i++;
-            }
-        }
-        return result.toString();
-    }
+                    break;
 
-    /**
-     * 去除字符字面量 '...'
-     */
-    private static String removeCharLiterals(String code) {
-        StringBuilder result = new StringBuilder();
-        int i = 0;
-        while (i < code.length()) {
-            if (code.charAt(i) == '\'') {
-                result.append('\'');
-                i++;
-                while (i < code.length() && code.charAt(i) != '\'') {
-                    if (code.charAt(i) == '\\' && i + 1 < code.length()) {
+                default:
+                    if (c == '"') {
+                        state = STRING;
+                        out.append(c);
+                        i++;
+                    } else if (c == '\'') {
+                        state = CHAR;
+                        out.append(c);
+                        i++;
+                    } else if (c == '/' && i + 1 < length && code.charAt(i + 1) == '/') {
+                        state = LINE_COMMENT;
+                        out.append(' '); // 用空格替换注释开始符
+                        i += 2;
+                    } else if (c == '/' && i + 1 < length && code.charAt(i + 1) == '*') {
+                        state = BLOCK_COMMENT;
+                        out.append(' ');
                         i += 2;
                     } else {
+                        // 普通代码字符，直接保留
+                        out.append(c);
                         i++;
                     }
-                }
-                if (i < code.length()) {
-                    result.append('\'');
-                    i++;
-                }
-            } else {
-                result.append(code.charAt(i));
-                i++;
+                    break;
             }
         }
-        return result.toString();
     }
 }
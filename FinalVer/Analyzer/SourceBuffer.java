@@ -0,0 +1,60 @@
+package Analyzer;
+
+/**
+ * 可复用的字符缓冲区
+ * 预处理结果写入这里，再由 Lexer 直接读取，中间不构造 String。
+ * 缓冲区只增不减，同一线程反复使用时不再重新分配；是否保留过大的缓冲区由持有者决定（见 DocumentProfile.build）。
+ */
+public final class SourceBuffer {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private char[] chars;
+    private int length;
+
+    public SourceBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SourceBuffer(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        }
+        this.chars = new char[initialCapacity];
+        this.length = 0;
+    }
+
+    /**
+     * 底层字符数组（仅前 length() 个有效）
+     */
+    public char[] chars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int capacity() {
+        return chars.length;
+    }
+
+    /**
+     * 清空内容并保证至少能容纳 capacity 个字符
+     */
+    public void reset(int capacity) {
+        if (capacity > chars.length) {
+            chars = new char[capacity];
+        }
+        length = 0;
+    }
+
+    void append(char c) {
+        chars[length++] = c;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,176 @@
+package Analyzer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 分析流水线的阶段追踪：记录每个阶段的耗时与分配的字节数
+ *
+ * 追踪模式在类初始化时由 -Dsimilarity.trace 决定，之后不再改变：
+ * - off（默认）：{@link #begin} 恒返回 null，JIT 把 ENABLED 当作常量，埋点连同判断一起被消除，没有任何开销；
+ * - all：每次调用都追踪；
+ * - sample:N：每次调用以 1/N 的概率追踪（线程内随机数，不共享计数器），供生产环境长期开启。
+ * 记录交给通过 {@link #setSink} 安装的接收器（未安装时同样不追踪）。
+ *
+ * 埋点写法：
+ * <pre>
+ *   StageTracer.Span span = StageTracer.begin();
+ *   ... 阶段一 ...
+ *   StageTracer.lap(span, Stage.PREPROCESS);
+ *   ... 阶段二 ...
+ *   StageTracer.lap(span, Stage.LEX);
+ * </pre>
+ * Span 是线程内复用的对象，同一线程上的追踪不能嵌套（外层 begin 之后、最后一次 lap 之前不能再调用 begin）。
+ * 分配字节数来自 com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes，
+ * JVM 不支持时记为 -1。
+ */
+public final class StageTracer {
+
+    /** 流水线阶段 */
+    public enum Stage {
+        PREPROCESS("preprocess"),
+        LEX("lex"),
+        KEYWORD("keyword"),
+        OPERATOR("operator"),
+        // 标识符序列 n-gram 与归一化 token n-gram 各阶在一次遍历中同时提取，无法按阶拆分
+        IDENTIFIER_NGRAMS("identifier_ngrams"),
+        TOKEN_NGRAMS("token_ngrams"),
+        // 画像构造：n-gram 键排序与各阶模长汇总
+        ASSEMBLE("assemble"),
+        KEYWORD_SIMILARITY("keyword_similarity"),
+        OPERATOR_SIMILARITY("operator_similarity"),
+        // 各阶余弦同样在一次归并中算出
+        IDENTIFIER_SIMILARITY("identifier_similarity"),
+        TOKEN_SIMILARITY("token_similarity"),
+        // 长度相似度与加权融合
+        FUSION("fusion");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        /** 小写下划线形式的名称（用作指标标签） */
+        public String label() {
+            return label;
+        }
+    }
+
+    /** 阶段记录的接收器，会在多个线程上被并发调用，实现必须线程安全且足够廉价 */
+    public interface Sink {
+        /**
+         * @param nanos 阶段耗时
+         * @param allocatedBytes 阶段内当前线程分配的字节数，不支持时为 -1
+         */
+        void record(Stage stage, long nanos, long allocatedBytes);
+    }
+
+    /** 是否开启追踪（-Dsimilarity.trace 不为 off） */
+    public static final boolean ENABLED;
+    // 每次调用以 1/SAMPLE_EVERY 的概率追踪
+    private static final int SAMPLE_EVERY;
+    private static final com.sun.management.ThreadMXBean ALLOCATION;
+
+    static {
+        String mode = System.getProperty("similarity.trace", "off").trim().toLowerCase(java.util.Locale.ROOT);
+        int every = 0;
+        if (mode.equals("all")) {
+            every = 1;
+        } else if (mode.startsWith("sample:")) {
+            try {
+                every = Integer.parseInt(mode.substring("sample:".length()));
+            } catch (NumberFormatException e) {
+                every = 0;
+            }
+            if (every <= 0) {
+                System.err.println("Ignoring invalid similarity.trace=" + mode + ", tracing disabled");
+                every = 0;
+            }
+        } else if (!mode.equals("off")) {
+            System.err.println("Unknown similarity.trace=" + mode + " (expected off, all or sample:N), tracing disabled");
+        }
+        ENABLED = every > 0;
+        SAMPLE_EVERY = Math.max(1, every);
+        ALLOCATION = ENABLED ? allocationBean() : null;
+    }
+
+    private static volatile Sink sink;
+
+    private static final ThreadLocal<Span> SPANS = ThreadLocal.withInitial(Span::new);
+
+    /** 一次追踪：记录上一个阶段结束的时刻与当时的分配字节数 */
+    public static final class Span {
+        private long nanos;
+        private long bytes;
+
+        private Span() {
+        }
+
+        private void restart() {
+            bytes = allocatedBytes();
+            nanos = System.nanoTime();
+        }
+
+        private void lap(Stage stage) {
+            long now = System.nanoTime();
+            long allocated = allocatedBytes();
+            Sink s = sink;
+            if (s != null) {
+                s.record(stage, now - nanos, bytes < 0 ? -1 : allocated - bytes);
+            }
+            // 重新计时，接收器本身的耗时与分配不计入下一阶段
+            restart();
+        }
+    }
+
+    private StageTracer() {
+    }
+
+    /**
+     * 安装接收器；传入 null 停止记录
+     */
+    public static void setSink(Sink value) {
+        sink = value;
+    }
+
+    /**
+     * 开始一次追踪；未开启、未安装接收器或本次未被采样时返回 null
+     */
+    public static Span begin() {
+        if (!ENABLED || sink == null) {
+            return null;
+        }
+        if (SAMPLE_EVERY > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) != 0) {
+            return null;
+        }
+        Span span = SPANS.get();
+        span.restart();
+        return span;
+    }
+
+    /**
+     * 结束 stage（自 begin 或上一次 lap 以来的部分）并开始下一阶段；span 为 null 时什么也不做
+     */
+    public static void lap(Span span, Stage stage) {
+        if (span != null) {
+            span.lap(stage);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ALLOCATION != null ? ALLOCATION.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+package Analyzer;
+
+import Constants.JavaConstants;
+
+/**
+ * 整数 Token 流
+ * 由 {@link Lexer#tokenizeCodes} 生成，每个 token 用一个 int 编码表示（编码区间见 JavaConstants）：
+ * - 关键字、运算符、字面量使用固定编码；
+ * - 标识符在文档内按首次出现顺序编号为 IDENTIFIER_CODE_BASE + k。
+ * 每个 token 还附带其所在的源码行号，用于定位匹配片段。
+ *
+ * 下游分析器直接按区间判断 token 类别，不再对字符串做哈希查询。
+ */
+public final class TokenStream {
+
+    private final int[] codes;
+    private final int[] lines;
+    private final int size;
+    private final int identifierCount;
+
+    TokenStream(int[] codes, int[] lines, int size, int identifierCount) {
+        this.codes = codes;
+        this.lines = lines;
+        this.size = size;
+        this.identifierCount = identifierCount;
+    }
+
+    /**
+     * token 总数（含字面量，与字符串模式下 Lexer.tokenize 的结果数量一致）
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 获取第 index 个 token 的编码
+     */
+    public int codeAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return codes[index];
+    }
+
+    /**
+     * 获取第 index 个 token 所在的行号（从 1 开始）
+     */
+    public int lineAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return lines[index];
+    }
+
+    /**
+     * 文档中不同标识符的数量
+     */
+    public int identifierCount() {
+        return identifierCount;
+    }
+
+    /**
+     * 将编码还原为可读文本（标识符还原为 IDk），用于调试
+     */
+    public static String describe(int code) {
+        if (JavaConstants.isKeywordCode(code)) {
+            return JavaConstants.KEYWORDS[code];
+        }
+        if (JavaConstants.isOperatorCode(code)) {
+            return JavaConstants.OPERATORS[code - JavaConstants.OPERATOR_CODE_BASE];
+        }
+        if (JavaConstants.isLiteralCode(code)) {
+            return JavaConstants.LITERALS[code - JavaConstants.LITERAL_CODE_BASE];
+        }
+        return "ID" + (code - JavaConstants.IDENTIFIER_CODE_BASE);
+    }
+
+    /**
+     * 供同包分析器直接遍历的编码数组（只读，仅前 size 个有效）
+     */
+    int[] rawCodes() {
+        return codes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(describe(codes[i]));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
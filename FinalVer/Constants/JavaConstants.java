@@ -1,5 +1,6 @@
 package Constants;
 
+import DataStructure.HashMap;
 import DataStructure.HashSet;
 
 /**
@@ -46,9 +47,24 @@ public class JavaConstants {
         "@"
     };
 
+    // 字面量（词法上与标识符相同，但不参与标识符归一化）
+    public static final String[] LITERALS = {
+        "true", "false", "null"
+    };
+
+    // token 整数编码（区间互不重叠，按区间即可判断 token 类别）：
+    // [0, OPERATOR_CODE_BASE)                      关键字，取其在 KEYWORDS 中的下标
+    // [OPERATOR_CODE_BASE, LITERAL_CODE_BASE)      运算符，OPERATOR_CODE_BASE + 其在 OPERATORS 中的下标
+    // [LITERAL_CODE_BASE, IDENTIFIER_CODE_BASE)    字面量，LITERAL_CODE_BASE + 其在 LITERALS 中的下标
+    // [IDENTIFIER_CODE_BASE, ...)                  标识符 IDk，IDENTIFIER_CODE_BASE + k（k 为首次出现顺序）
+    public static final int OPERATOR_CODE_BASE = KEYWORDS.length;
+    public static final int LITERAL_CODE_BASE = OPERATOR_CODE_BASE + OPERATORS.length;
+    public static final int IDENTIFIER_CODE_BASE = 128;
+
     // 使用HashSet加速查询
     private static HashSet keywordSet;
     private static HashSet operatorSet;
+    private static HashMap<Integer> codeMap;
 
     static {
         keywordSet = new HashSet();
@@ -59,6 +75,13 @@ public class JavaConstants {
         for (String operator : OPERATORS) {
             operatorSet.add(operator);
         }
+        codeMap = new HashMap<>();
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            codeMap.put(KEYWORDS[i], i);
+        }
+        for (int i = 0; i < OPERATORS.length; i++) {
+            codeMap.put(OPERATORS[i], OPERATOR_CODE_BASE + i);
+        }
     }
 
     /**
@@ -98,4 +121,28 @@ public class JavaConstants {
         }
         return -1;
     }
+
+    /**
+     * 获取关键字/运算符的 token 编码，其他 token 返回 -1
+     */
+    public static int getTokenCode(String token) {
+        Integer code = codeMap.get(token);
+        return code != null ? code : -1;
+    }
+
+    public static boolean isKeywordCode(int code) {
+        return code >= 0 && code < OPERATOR_CODE_BASE;
+    }
+
+    public static boolean isOperatorCode(int code) {
+        return code >= OPERATOR_CODE_BASE && code < LITERAL_CODE_BASE;
+    }
+
+    public static boolean isLiteralCode(int code) {
+        return code >= LITERAL_CODE_BASE && code < IDENTIFIER_CODE_BASE;
+    }
+
+    public static boolean isIdentifierCode(int code) {
+        return code >= IDENTIFIER_CODE_BASE;
+    }
 }
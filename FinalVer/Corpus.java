@@ -0,0 +1,484 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import Analyzer.DocumentProfile;
+import DataStructure.ArrayList;
+import Index.LshIndex;
+import Index.MinHash;
+import Index.ProfileStore;
+
+/**
+ * 语料库模式：对一个或多个目录下的全部 .java 文件计算两两相似度矩阵
+ *
+ * 用法：
+ *   java Main corpus <dir>... [--format csv|jsonl] [--threshold t] [--out file] [--threads n]
+ *                             [--lsh j [--hashes k] [--recall r] [--max-bucket m]] [--index corpus.idx]
+ *   java Main index <dir>... --out corpus.idx [--threads n]
+ *
+ * 流程：
+ * 1. 递归收集所有 .java 文件（按路径排序，输出稳定）。
+ * 2. 在 fork-join 线程池上并行为每个文件构建一次 DocumentProfile。
+ * 3. 把上三角矩阵（i < j）按行优先顺序切成固定对数的块，块内再切成 (i, j 区间) 小片并行打分，
+ *    每块算完后按顺序写出；内存中只保留当前块的输出，与文件数无关。
+ *
+ * 指定 --lsh j 时不再计算全部 N² 对：为每个文件计算 MinHash 签名并按 LSH 分带，
+ * 只对落入同一个桶的候选对精确打分。分带参数按 “gram 集合 Jaccard 为 j 的文件对
+ * 以不低于 r 的概率成为候选” 选取；Jaccard 明显低于 j 的文件对会被跳过，
+ * 因此 j 应取得比关心的相似度区间更低一些。候选对按行从 LSH 索引中流式取出、分块打分；
+ * 文档数超过 --max-bucket 的桶（大量几乎相同的模板提交）被跳过，数量在 stderr 中报告。
+ *
+ * index 子命令把全部文件的画像写入持久化画像文件（见 Index.ProfileStore）；
+ * 之后以 --index 代替目录参数即可直接映射该文件，不再重新读取和分析源码。
+ */
+public class Corpus {
+
+    // 每块包含的文件对数量（决定输出缓冲的上限），以及块内并行任务的粒度
+    private static final int PAIRS_PER_BLOCK = 1 << 18;
+    private static final int PAIRS_PER_TASK = 1 << 10;
+
+    // 固定的 MinHash 种子，同一语料库每次运行得到相同的候选集
+    static final long MINHASH_SEED = 0x5EEDL;
+
+    public static void run(String[] args) throws IOException {
+        ArrayList<Path> roots = new ArrayList<>();
+        String format = "csv";
+        double threshold = Double.NEGATIVE_INFINITY;
+        String out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double lshThreshold = Double.NaN;
+        int hashes = 128;
+        double recall = 0.95;
+        int maxBucket = 1000;
+        String index = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format":
+                    format = Main.requireValue(args, ++i, "--format").toLowerCase(Locale.ROOT);
+                    break;
+                case "--threshold":
+                    threshold = Double.parseDouble(Main.requireValue(args, ++i, "--threshold"));
+                    break;
+                case "--out":
+                    out = Main.requireValue(args, ++i, "--out");
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(Main.requireValue(args, ++i, "--threads"));
+                    break;
+                case "--lsh":
+                    lshThreshold = Double.parseDouble(Main.requireValue(args, ++i, "--lsh"));
+                    break;
+                case "--hashes":
+                    hashes = Integer.parseInt(Main.requireValue(args, ++i, "--hashes"));
+                    break;
+                case "--recall":
+                    recall = Double.parseDouble(Main.requireValue(args, ++i, "--recall"));
+                    break;
+                case "--max-bucket":
+                    maxBucket = Integer.parseInt(Main.requireValue(args, ++i, "--max-bucket"));
+                    break;
+                case "--index":
+                    index = Main.requireValue(args, ++i, "--index");
+                    break;
+                default:
+                    roots.append(Paths.get(args[i]));
+            }
+        }
+        if (roots.isEmpty() == (index == null) || !("csv".equals(format) || "jsonl".equals(format)) || threads <= 0 || hashes <= 0 || maxBucket < 2) {
+            System.out.println("用法: java Main corpus <dir>... [--format csv|jsonl] [--threshold t] [--out file] [--threads n]");
+            System.out.println("                          [--lsh j [--hashes k] [--recall r] [--max-bucket m]] [--index corpus.idx]");
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (Writer writer = openWriter(out)) {
+            long t0 = System.nanoTime();
+            Path[] files;
+            DocumentProfile[] profiles;
+            if (index != null) {
+                ProfileStore store = ProfileStore.open(Paths.get(index));
+                files = storedNames(store);
+                profiles = loadAll(store);
+            } else {
+                files = listJavaFiles(roots);
+                profiles = analyzeAll(pool, files);
+            }
+            long t1 = System.nanoTime();
+            long written;
+            if (Double.isNaN(lshThreshold)) {
+                written = writeMatrix(pool, files, profiles, format, threshold, writer);
+            } else {
+                LshIndex lsh = LshIndex.forThreshold(hashes, lshThreshold, recall, maxBucket);
+                addSignatures(pool, profiles, new MinHash(hashes, MINHASH_SEED), lsh);
+                written = writeCandidates(pool, files, profiles, lsh, format, threshold, writer);
+            }
+            long t2 = System.nanoTime();
+            System.err.printf(Locale.US, "files=%d pairs=%d written=%d analyze=%.2fs compare=%.2fs threads=%d%n",
+                files.length, (long) files.length * (files.length - 1) / 2, written,
+                (t1 - t0) / 1e9, (t2 - t1) / 1e9, threads);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * index 子命令：分析目录下全部文件并写入画像文件
+     */
+    public static void index(String[] args) throws IOException {
+        ArrayList<Path> roots = new ArrayList<>();
+        String out = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    out = Main.requireValue(args, ++i, "--out");
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(Main.requireValue(args, ++i, "--threads"));
+                    break;
+                default:
+                    roots.append(Paths.get(args[i]));
+            }
+        }
+        if (roots.isEmpty() || out == null || threads <= 0) {
+            System.out.println("用法: java Main index <dir>... --out corpus.idx [--threads n]");
+            return;
+        }
+
+        Path[] files = listJavaFiles(roots);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long t0 = System.nanoTime();
+            DocumentProfile[] profiles = analyzeAll(pool, files);
+            long t1 = System.nanoTime();
+            String[] names = new String[files.length];
+            for (int i = 0; i < files.length; i++) {
+                names[i] = files[i].toString();
+            }
+            ProfileStore.write(Paths.get(out), names, profiles);
+            long t2 = System.nanoTime();
+            System.err.printf(Locale.US, "files=%d bytes=%d analyze=%.2fs write=%.2fs%n",
+                files.length, Files.size(Paths.get(out)), (t1 - t0) / 1e9, (t2 - t1) / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 画像文件中记录的文档名称
+     */
+    static Path[] storedNames(ProfileStore store) {
+        Path[] files = new Path[store.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = Paths.get(store.name(i));
+        }
+        return files;
+    }
+
+    /**
+     * 画像文件中全部记录的视图：只创建很小的视图对象，n-gram 数据留在映射区，打分时直接读取
+     */
+    static DocumentProfile[] loadAll(ProfileStore store) {
+        DocumentProfile[] profiles = new DocumentProfile[store.size()];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = store.profile(i);
+        }
+        return profiles;
+    }
+
+    /**
+     * 递归收集目录（或单个文件）下的全部 .java 文件，按路径排序
+     */
+    static Path[] listJavaFiles(ArrayList<Path> roots) throws IOException {
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 0; i < roots.size(); i++) {
+            try (Stream<Path> walk = Files.walk(roots.get(i))) {
+                walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
+                    .forEach(files::append);
+            }
+        }
+        Path[] result = files.toArray(new Path[0]);
+        java.util.Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 在线程池上并行为每个文件构建画像；读取失败的文件记为空文档并在 stderr 提示
+     */
+    static DocumentProfile[] analyzeAll(ForkJoinPool pool, Path[] files) {
+        DocumentProfile[] profiles = new DocumentProfile[files.length];
+        invoke(pool, () -> IntStream.range(0, files.length).parallel().forEach(i -> {
+            String code = "";
+            try {
+                code = readFile(files[i]);
+            } catch (IOException e) {
+                System.err.println("读取文件失败: " + files[i] + " (" + e.getMessage() + ")");
+            }
+            profiles[i] = DocumentProfile.build(code);
+        }));
+        return profiles;
+    }
+
+    /**
+     * 读取文件内容（UTF-8，非法字节替换为占位符而不是报错）
+     */
+    static String readFile(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 并行计算签名，再按文档顺序加入 LSH 索引（文档编号与 profiles 下标一致）
+     */
+    static void addSignatures(ForkJoinPool pool, DocumentProfile[] profiles, MinHash minHash, LshIndex lsh) {
+        int[][] signatures = new int[profiles.length][];
+        invoke(pool, () -> IntStream.range(0, profiles.length).parallel()
+            .forEach(i -> signatures[i] = minHash.signature(profiles[i])));
+        for (int i = 0; i < profiles.length; i++) {
+            lsh.add(signatures[i], profiles[i].getTokenNGramCount() == 0);
+            signatures[i] = null;
+        }
+    }
+
+    private static long writeMatrix(ForkJoinPool pool, Path[] files, DocumentProfile[] profiles,
+                                    String format, double threshold, Writer writer) throws IOException {
+        boolean csv = "csv".equals(format);
+        String[] names = quotedNames(files, csv);
+        if (csv) {
+            writer.write("file1,file2,similarity\n");
+        }
+
+        int n = profiles.length;
+        long remaining = (long) n * (n - 1) / 2;
+        long written = 0;
+        int tasks = PAIRS_PER_BLOCK / PAIRS_PER_TASK;
+        StringBuilder[] chunks = new StringBuilder[tasks];
+        long[] counts = new long[tasks];
+        // 每个小片的起点 (row, col) 与对数；小片可以跨行，顺序与逐行遍历一致
+        int[] startRow = new int[tasks];
+        int[] startCol = new int[tasks];
+        int[] sizes = new int[tasks];
+        int row = 0;
+        int col = 1;
+        while (remaining > 0) {
+            int used = 0;
+            while (used < tasks && remaining > 0) {
+                int size = (int) Math.min(PAIRS_PER_TASK, remaining);
+                startRow[used] = row;
+                startCol[used] = col;
+                sizes[used] = size;
+                remaining -= size;
+                used++;
+                for (int left = size; left > 0; ) {
+                    int rowLeft = n - col;
+                    if (left < rowLeft) {
+                        col += left;
+                        left = 0;
+                    } else {
+                        left -= rowLeft;
+                        row++;
+                        col = row + 1;
+                    }
+                }
+            }
+            int tiles = used;
+            invoke(pool, () -> IntStream.range(0, tiles).parallel().forEach(t -> {
+                StringBuilder sb = new StringBuilder();
+                long count = 0;
+                int i = startRow[t];
+                int j = startCol[t];
+                for (int k = 0; k < sizes[t]; k++) {
+                    double similarity = SimilarityCalculator.calculate(profiles[i], profiles[j]);
+                    if (similarity >= threshold) {
+                        appendPair(sb, csv, names[i], names[j], similarity);
+                        count++;
+                    }
+                    if (++j == n) {
+                        i++;
+                        j = i + 1;
+                    }
+                }
+                chunks[t] = sb;
+                counts[t] = count;
+            }));
+            for (int t = 0; t < tiles; t++) {
+                writer.append(chunks[t]);
+                written += counts[t];
+                chunks[t] = null;
+            }
+        }
+        writer.flush();
+        return written;
+    }
+
+    /**
+     * 只对候选对打分：按行从 LSH 索引取出候选对，攒满约 PAIRS_PER_BLOCK 对后并行打分并写出。
+     * 候选对按 (i, j) 升序，输出顺序与全矩阵模式一致；内存中只保留当前块
+     */
+    private static long writeCandidates(ForkJoinPool pool, Path[] files, DocumentProfile[] profiles, LshIndex lsh,
+                                        String format, double threshold, Writer writer) throws IOException {
+        boolean csv = "csv".equals(format);
+        String[] names = quotedNames(files, csv);
+        if (csv) {
+            writer.write("file1,file2,similarity\n");
+        }
+
+        long written = 0;
+        long candidates = 0;
+        long[] pairs = new long[PAIRS_PER_BLOCK];
+        int doc = 0;
+        while (doc < profiles.length) {
+            int size = 0;
+            // 一行的候选对不拆开，块可能略大于 PAIRS_PER_BLOCK（至多多出一行，即不超过文件数）
+            while (doc < profiles.length && size < PAIRS_PER_BLOCK) {
+                int[] row = lsh.candidatesAfter(doc);
+                if (size + row.length > pairs.length) {
+                    pairs = java.util.Arrays.copyOf(pairs, size + row.length);
+                }
+                for (int j : row) {
+                    pairs[size++] = ((long) doc << 32) | j;
+                }
+                doc++;
+            }
+            candidates += size;
+            written += writeBlock(pool, profiles, names, csv, pairs, size, threshold, writer);
+        }
+        writer.flush();
+        System.err.printf(Locale.US, "lsh bands=%d rows=%d candidates=%d oversizedBuckets=%d%n",
+            lsh.bands(), lsh.rows(), candidates, lsh.oversizedBuckets());
+        return written;
+    }
+
+    /**
+     * 把 pairs[0, size) 切成 PAIRS_PER_TASK 对一组并行打分，按顺序写出，返回写出的对数
+     */
+    private static long writeBlock(ForkJoinPool pool, DocumentProfile[] profiles, String[] names, boolean csv,
+                                   long[] pairs, int size, double threshold, Writer writer) throws IOException {
+        int used = (size + PAIRS_PER_TASK - 1) / PAIRS_PER_TASK;
+        StringBuilder[] chunks = new StringBuilder[used];
+        long[] counts = new long[used];
+        invoke(pool, () -> IntStream.range(0, used).parallel().forEach(t -> {
+            StringBuilder sb = new StringBuilder();
+            long count = 0;
+            int end = Math.min(size, (t + 1) * PAIRS_PER_TASK);
+            for (int p = t * PAIRS_PER_TASK; p < end; p++) {
+                int i = (int) (pairs[p] >>> 32);
+                int j = (int) pairs[p];
+                double similarity = SimilarityCalculator.calculate(profiles[i], profiles[j]);
+                if (similarity < threshold) continue;
+                appendPair(sb, csv, names[i], names[j], similarity);
+                count++;
+            }
+            chunks[t] = sb;
+            counts[t] = count;
+        }));
+        long written = 0;
+        for (int t = 0; t < used; t++) {
+            writer.append(chunks[t]);
+            written += counts[t];
+        }
+        return written;
+    }
+
+    private static String[] quotedNames(Path[] files, boolean csv) {
+        String[] names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = csv ? csvField(files[i].toString()) : jsonString(files[i].toString());
+        }
+        return names;
+    }
+
+    private static void appendPair(StringBuilder sb, boolean csv, String name1, String name2, double similarity) {
+        if (csv) {
+            sb.append(name1).append(',').append(name2).append(',');
+            appendScore(sb, similarity).append('\n');
+        } else {
+            sb.append("{\"file1\":").append(name1).append(",\"file2\":").append(name2);
+            sb.append(",\"similarity\":");
+            appendScore(sb, similarity).append("}\n");
+        }
+    }
+
+    /**
+     * 在指定线程池中执行并行流任务（并行流会使用提交它的 fork-join 池）
+     */
+    static void invoke(ForkJoinPool pool, Runnable task) {
+        try {
+            pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 以 6 位小数追加相似度（等价于 %.6f，但避免每对结果都走一次 String.format）
+     */
+    static StringBuilder appendScore(StringBuilder sb, double value) {
+        if (!(value >= 0) || value >= 1e9) {
+            return sb.append(String.format(Locale.US, "%.6f", value));
+        }
+        long scaled = Math.round(value * 1_000_000);
+        sb.append(scaled / 1_000_000).append('.');
+        long fraction = scaled % 1_000_000;
+        for (long p = 100_000; p > fraction && p > 1; p /= 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    private static Writer openWriter(String out) throws IOException {
+        if (out == null) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16) {
+                @Override
+                public void close() throws IOException {
+                    flush(); // 不关闭 System.out
+                }
+            };
+        }
+        return Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8);
+    }
+
+    static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
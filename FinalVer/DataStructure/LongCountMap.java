@@ -0,0 +1,241 @@
+package DataStructure;
+
+/**
+ * long 键计数表（开放寻址 + 线性探测）
+ * 用于统计 n-gram 哈希值出现次数
+ *
+ * 与 HashMap 不同，键和计数都直接存放在基本类型数组中：
+ * 不创建 HashEntry 节点，也不对 Integer 装箱，插入时不产生任何垃圾对象。
+ * 键 0 用作空槽标记，因此单独用一个字段记录键 0 的计数。
+ */
+public class LongCountMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;      // 槽位键，0 表示空槽
+    private int[] counts;     // 槽位计数
+    private int size;         // 非零键数量（不含键 0）
+    private int zeroCount;    // 键 0 的计数
+    private int mask;         // 容量 - 1（容量恒为 2 的幂）
+    private int threshold;    // 扩容阈值
+
+    public LongCountMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongCountMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + expectedSize);
+        }
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * 计数加一
+     */
+    public void increment(long key) {
+        add(key, 1);
+    }
+
+    /**
+     * 计数增加 delta（结果为 0 时删除该键）
+     */
+    public void add(long key, int delta) {
+        if (key == 0) {
+            zeroCount += delta;
+            return;
+        }
+        int index = indexOf(key);
+        if (keys[index] == key) {
+            counts[index] += delta;
+            if (counts[index] == 0) {
+                removeAt(index);
+            }
+            return;
+        }
+        if (delta == 0) {
+            return;
+        }
+        keys[index] = key;
+        counts[index] = delta;
+        if (++size > threshold) {
+            resize();
+        }
+    }
+
+    /**
+     * 直接设置计数（也可用于保存 long -> int 的映射，值 0 等同于不存在：
+     * 对新键不插入，对已有键则删除）
+     */
+    public void put(long key, int value) {
+        if (key == 0) {
+            zeroCount = value;
+            return;
+        }
+        int index = indexOf(key);
+        if (keys[index] == key) {
+            if (value == 0) {
+                removeAt(index);
+            } else {
+                counts[index] = value;
+            }
+            return;
+        }
+        if (value == 0) {
+            return;
+        }
+        keys[index] = key;
+        counts[index] = value;
+        if (++size > threshold) {
+            resize();
+        }
+    }
+
+    /**
+     * 删除键，返回删除前的计数（不存在时为 0）
+     */
+    public int remove(long key) {
+        if (key == 0) {
+            int old = zeroCount;
+            zeroCount = 0;
+            return old;
+        }
+        int index = indexOf(key);
+        if (keys[index] != key) {
+            return 0;
+        }
+        int old = counts[index];
+        removeAt(index);
+        return old;
+    }
+
+    /**
+     * 获取计数，不存在时返回 0
+     */
+    public int get(long key) {
+        if (key == 0) {
+            return zeroCount;
+        }
+        int index = indexOf(key);
+        return keys[index] == key ? counts[index] : 0;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != 0;
+    }
+
+    public int size() {
+        return zeroCount != 0 ? size + 1 : size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            counts[i] = 0;
+        }
+        size = 0;
+        zeroCount = 0;
+    }
+
+    /**
+     * 获取所有键（顺序不固定）
+     */
+    public long[] keys() {
+        long[] result = new long[size()];
+        int idx = 0;
+        if (zeroCount != 0) {
+            result[idx++] = 0;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                result[idx++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 定位键所在槽位；键不存在时返回应插入的空槽位置
+     */
+    private int indexOf(long key) {
+        int index = mix(key) & mask;
+        while (keys[index] != 0 && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * 清空槽位并回移后续探测链上的键（backward shift），
+     * 保证线性探测的查找不会在空洞处提前结束
+     */
+    private void removeAt(int index) {
+        int hole = index;
+        int i = (index + 1) & mask;
+        while (keys[i] != 0) {
+            int home = mix(keys[i]) & mask;
+            // 键 i 的探测起点不在 (hole, i] 之间时，可以前移到空洞
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                counts[hole] = counts[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[hole] = 0;
+        counts[hole] = 0;
+        size--;
+    }
+
+    /**
+     * 扩容为原来的 2 倍并重新放置所有键
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new int[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * 将 64 位键折叠为 32 位槽位哈希，高位也参与定位
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        long[] ks = keys();
+        for (int i = 0; i < ks.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(ks[i]).append("=").append(get(ks[i]));
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,204 @@
+package DataStructure;
+
+/**
+ * 有界 LRU 缓存（键类型固定为 String）
+ *
+ * 结构：HashMap 负责按键 O(1) 查找节点，节点同时挂在一条双向链表上，
+ * 表头为最近使用、表尾为最久未使用。命中时把节点移到表头，超出上限时从表尾淘汰，
+ * 两种操作都是 O(1)。（DataStructure.LinkedList 是单向链表，删除任意节点需要 O(n)，因此这里单独维护前后指针。）
+ *
+ * 上限：
+ * - maxEntries：条目数上限；
+ * - maxBytes：调用方为每个条目估算的字节数之和的上限；
+ * - ttlMillis：条目存活时间，0 表示永不过期（过期条目在被访问时删除并计为未命中）。
+ *
+ * 所有方法均为 synchronized，可被多个请求线程共享。
+ * @param <V> 值类型
+ */
+public class LruCache<V> {
+
+    private final class Node {
+        final String key;
+        V value;
+        long bytes;
+        long expiresAt;
+        Node prev;
+        Node next;
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMillis;
+
+    private final HashMap<Node> index;
+    private Node head;  // 最近使用
+    private Node tail;  // 最久未使用
+    private int size;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maxEntries 条目数上限（> 0）
+     * @param maxBytes 估算字节数上限（> 0）
+     * @param ttlMillis 存活时间（毫秒），0 表示不过期
+     */
+    public LruCache(int maxEntries, long maxBytes, long ttlMillis) {
+        if (maxEntries <= 0 || maxBytes <= 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Illegal cache limits: entries=" + maxEntries
+                + " bytes=" + maxBytes + " ttl=" + ttlMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+        this.index = new HashMap<>(Math.max(16, Math.min(maxEntries, 1 << 16) * 2));
+    }
+
+    /**
+     * 查询并标记为最近使用；不存在或已过期时返回 null
+     */
+    public synchronized V get(String key) {
+        Node node = index.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        if (ttlMillis > 0 && System.currentTimeMillis() >= node.expiresAt) {
+            unlink(node);
+            expirations++;
+            misses++;
+            return null;
+        }
+        moveToFront(node);
+        hits++;
+        return node.value;
+    }
+
+    /**
+     * 插入或更新条目并标记为最近使用，随后从表尾淘汰直至满足上限
+     * @param entryBytes 该条目的估算字节数（单个条目超过 maxBytes 时不缓存）
+     */
+    public synchronized void put(String key, V value, long entryBytes) {
+        if (entryBytes > maxBytes) {
+            Node old = index.get(key);
+            if (old != null) unlink(old);
+            return;
+        }
+        Node node = index.get(key);
+        if (node == null) {
+            node = new Node(key);
+            index.put(key, node);
+            size++;
+        } else {
+            detach(node);
+            bytes -= node.bytes;
+        }
+        node.value = value;
+        node.bytes = entryBytes;
+        node.expiresAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE;
+        bytes += entryBytes;
+        attachFront(node);
+
+        while (size > maxEntries || bytes > maxBytes) {
+            unlink(tail);
+            evictions++;
+        }
+    }
+
+    /**
+     * 删除条目
+     */
+    public synchronized V remove(String key) {
+        Node node = index.get(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        head = tail = null;
+        size = 0;
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * 命中率 hits / (hits + misses)，尚无访问时为 0
+     */
+    public synchronized double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long expirations() {
+        return expirations;
+    }
+
+    /**
+     * 统计信息（JSON 对象）
+     */
+    public synchronized String statsJson() {
+        return "{\"entries\":" + size + ",\"bytes\":" + bytes
+            + ",\"maxEntries\":" + maxEntries + ",\"maxBytes\":" + maxBytes + ",\"ttlMillis\":" + ttlMillis
+            + ",\"hits\":" + hits + ",\"misses\":" + misses + ",\"hitRatio\":" + hitRatio()
+            + ",\"evictions\":" + evictions + ",\"expirations\":" + expirations + "}";
+    }
+
+    private void unlink(Node node) {
+        detach(node);
+        index.remove(node.key);
+        size--;
+        bytes -= node.bytes;
+    }
+
+    private void moveToFront(Node node) {
+        if (node != head) {
+            detach(node);
+            attachFront(node);
+        }
+    }
+
+    private void detach(Node node) {
+        if (node.prev != null) node.prev.next = node.next;
+        else head = node.next;
+        if (node.next != null) node.next.prev = node.prev;
+        else tail = node.prev;
+        node.prev = node.next = null;
+    }
+
+    private void attachFront(Node node) {
+        node.next = head;
+        if (head != null) head.prev = node;
+        head = node;
+        if (tail == null) tail = node;
+    }
+}
@@ -0,0 +1,160 @@
+package DataStructure;
+
+/**
+ * 符号表（字符区间驻留表）
+ * 用于词法分析时为标识符分配“首次出现顺序”编号
+ *
+ * 键直接以 (字符数组, 起点, 长度) 的形式给出，查询时不需要先构造 String；
+ * 只有第一次出现的符号才会被复制进内部字符池。
+ * 编号从 0 开始按插入顺序递增，开放寻址 + 线性探测。
+ */
+public class SymbolTable {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] slots;        // 槽位存放 符号编号 + 1，0 表示空槽
+    private int[] hashes;       // 按符号编号保存的哈希值
+    private int[] offsets;      // 按符号编号保存其在字符池中的起点
+    private int[] lengths;      // 按符号编号保存的长度
+    private char[] pool;        // 字符池
+    private int poolSize;
+    private int size;
+    private int mask;
+
+    public SymbolTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SymbolTable(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        mask = capacity - 1;
+        hashes = new int[capacity >> 1];
+        offsets = new int[capacity >> 1];
+        lengths = new int[capacity >> 1];
+        pool = new char[capacity * 4];
+    }
+
+    /**
+     * 查询符号编号，不存在时返回 -1
+     */
+    public int lookup(char[] chars, int start, int length) {
+        int h = hash(chars, start, length);
+        int slot = h & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == h && matches(id, chars, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 查询符号编号，不存在时按插入顺序分配新编号
+     */
+    public int intern(char[] chars, int start, int length) {
+        int h = hash(chars, start, length);
+        int slot = h & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == h && matches(id, chars, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        ensurePool(length);
+        System.arraycopy(chars, start, pool, poolSize, length);
+        hashes[id] = h;
+        offsets[id] = poolSize;
+        lengths[id] = length;
+        poolSize += length;
+        slots[slot] = id + 1;
+
+        if (size * 2 >= slots.length) {
+            resize();
+        }
+        return id;
+    }
+
+    /**
+     * 按字符串驻留（构建固定符号表时使用）
+     */
+    public int intern(String symbol) {
+        char[] chars = symbol.toCharArray();
+        return intern(chars, 0, chars.length);
+    }
+
+    /**
+     * 获取编号对应的符号文本
+     */
+    public String symbolAt(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Index: " + id + ", Size: " + size);
+        }
+        return new String(pool, offsets[id], lengths[id]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private boolean matches(int id, char[] chars, int start, int length) {
+        if (lengths[id] != length) {
+            return false;
+        }
+        int offset = offsets[id];
+        for (int i = 0; i < length; i++) {
+            if (pool[offset + i] != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensurePool(int extra) {
+        if (poolSize + extra > pool.length) {
+            int newLength = Math.max(pool.length * 2, poolSize + extra);
+            char[] newPool = new char[newLength];
+            System.arraycopy(pool, 0, newPool, 0, poolSize);
+            pool = newPool;
+        }
+    }
+
+    /**
+     * 扩容：槽位数组翻倍，按编号重新放置
+     */
+    private void resize() {
+        int capacity = slots.length << 1;
+        slots = new int[capacity];
+        mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+        hashes = java.util.Arrays.copyOf(hashes, capacity >> 1);
+        offsets = java.util.Arrays.copyOf(offsets, capacity >> 1);
+        lengths = java.util.Arrays.copyOf(lengths, capacity >> 1);
+    }
+
+    private static int hash(char[] chars, int start, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[start + i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
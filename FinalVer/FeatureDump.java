@@ -1,30 +1,56 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
-import Analyzer.IdentifierAnalyzer;
-import Analyzer.KeywordAnalyzer;
+import Analyzer.DocumentProfile;
 import Analyzer.Lexer;
 import Analyzer.NGramAnalyzer;
-import Analyzer.OperatorAnalyzer;
 import Analyzer.Preprocessor;
-import Constants.JavaConstants;
+import Analyzer.StageTracer;
 import DataStructure.ArrayList;
-import DataStructure.FrequencyVector;
-import DataStructure.HashMap;
+import Index.LshIndex;
+import Index.MinHash;
 
 /**
  * 导出相似度各维度特征（用于调参/拟合权重）
  *
  * 用法：
  *   java FeatureDump <file1.java> <file2.java>
+ *   java FeatureDump --trace <file1.java> <file2.java>
+ *   java FeatureDump --collisions <file.java>...
+ *   java FeatureDump --minhash <dir>... [--hashes k] [--lsh j] [--recall r]
  *
  * 输出（单行 JSON）：
  *   {"kw":...,"id":...,"op":...,"seq":...,"total":...}
+ *
+ * --trace 额外输出一行各阶段的调用次数、耗时与分配字节数（见 Analyzer/StageTracer.java）：
+ *   {"trace":[{"stage":"preprocess","calls":4,"nanos":...,"bytes":...}, ...]}
+ *
+ * --collisions 模式逐个文件输出归一化 n-gram 哈希键的碰撞统计（每个文件一行 JSON）。
+ * --minhash 模式对目录下全部文件两两输出 gram 集合的精确 Jaccard 与 MinHash 估计值
+ * （每对一行 JSON，含是否为 LSH 候选），最后一行为误差与候选召回率汇总。
  */
 public class FeatureDump {
 
     public static void main(String[] args) throws IOException {
+        boolean trace = args.length >= 1 && "--trace".equals(args[0]);
+        if (trace) {
+            // 追踪模式在 StageTracer 初始化时读取，须在任何分析之前设置；命令行已指定时以命令行为准
+            if (System.getProperty("similarity.trace") == null) {
+                System.setProperty("similarity.trace", "all");
+            }
+            args = java.util.Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length >= 1 && "--collisions".equals(args[0])) {
+            dumpCollisions(args);
+            return;
+        }
+        if (args.length >= 1 && "--minhash".equals(args[0])) {
+            dumpMinHash(args);
+            return;
+        }
         if (args.length < 2) {
             System.out.println("用法: java FeatureDump <file1.java> <file2.java>");
             return;
@@ -33,6 +59,11 @@ public class FeatureDump {
         String code1 = readFile(args[0]);
         String code2 = readFile(args[1]);
 
+        TraceTotals totals = null;
+        if (trace) {
+            totals = new TraceTotals();
+            StageTracer.setSink(totals);
+        }
         Features features = computeFeatures(code1, code2);
         double total = SimilarityCalculator.calculate(code1, code2);
 
@@ -44,108 +75,133 @@ public class FeatureDump {
             features.seq6, features.seq7, features.seq8,
             total
         );
+        if (totals != null) {
+            System.out.println(totals.toJson());
+        }
     }
 
-    private static Features computeFeatures(String code1, String code2) {
-        String processed1 = Preprocessor.process(code1);
-        String processed2 = Preprocessor.process(code2);
-
-        ArrayList<String> tokens1 = Lexer.tokenize(processed1);
-        ArrayList<String> tokens2 = Lexer.tokenize(processed2);
-
-        HashMap<Integer> kwMap1 = KeywordAnalyzer.analyze(tokens1);
-        HashMap<Integer> kwMap2 = KeywordAnalyzer.analyze(tokens2);
-        FrequencyVector kwVec1 = KeywordAnalyzer.toVector(kwMap1);
-        FrequencyVector kwVec2 = KeywordAnalyzer.toVector(kwMap2);
-        double kwSim = FrequencyVector.cosineSimilarity(kwVec1, kwVec2);
-
-        HashMap<Integer> opMap1 = OperatorAnalyzer.analyze(tokens1);
-        HashMap<Integer> opMap2 = OperatorAnalyzer.analyze(tokens2);
-        FrequencyVector opVec1 = OperatorAnalyzer.toVector(opMap1);
-        FrequencyVector opVec2 = OperatorAnalyzer.toVector(opMap2);
-        double opSim = FrequencyVector.cosineSimilarity(opVec1, opVec2);
-
-        double idSim = identifierSequenceNGramSimilarity(tokens1, tokens2);
-
-        double seq2 = normalizedTokenNGramCosine(tokens1, tokens2, 2);
-        double seq3 = normalizedTokenNGramCosine(tokens1, tokens2, 3);
-        double seq4 = normalizedTokenNGramCosine(tokens1, tokens2, 4);
-        double seq5 = normalizedTokenNGramCosine(tokens1, tokens2, 5);
-        double seq6 = normalizedTokenNGramCosine(tokens1, tokens2, 6);
-        double seq7 = normalizedTokenNGramCosine(tokens1, tokens2, 7);
-        double seq8 = normalizedTokenNGramCosine(tokens1, tokens2, 8);
-        double seqSim = 0.05 * seq2 + 0.08 * seq3 + 0.10 * seq4 + 0.12 * seq5 + 0.15 * seq6 + 0.20 * seq7 + 0.30 * seq8;
-        double lenSim = tokenLengthSimilarity(tokens1.size(), tokens2.size());
-
-        return new Features(kwSim, idSim, opSim, seqSim, lenSim, tokens1.size(), tokens2.size(), seq2, seq3, seq4, seq5, seq6, seq7, seq8);
-    }
-
-    private static double identifierSequenceNGramSimilarity(ArrayList<String> tokens1, ArrayList<String> tokens2) {
-        ArrayList<String> ids1 = IdentifierAnalyzer.normalizedIdentifierSequence(tokens1);
-        ArrayList<String> ids2 = IdentifierAnalyzer.normalizedIdentifierSequence(tokens2);
-
-        double s2 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 2), NGramAnalyzer.analyzeNGrams(ids2, 2));
-        double s3 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 3), NGramAnalyzer.analyzeNGrams(ids2, 3));
-        double s4 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 4), NGramAnalyzer.analyzeNGrams(ids2, 4));
-        double s5 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 5), NGramAnalyzer.analyzeNGrams(ids2, 5));
-        double s6 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 6), NGramAnalyzer.analyzeNGrams(ids2, 6));
+    /**
+     * 按阶段累计调用次数、耗时与分配字节数（单线程使用）
+     */
+    private static final class TraceTotals implements StageTracer.Sink {
+        private final long[] calls = new long[StageTracer.Stage.values().length];
+        private final long[] nanos = new long[calls.length];
+        private final long[] bytes = new long[calls.length];
+
+        @Override
+        public void record(StageTracer.Stage stage, long stageNanos, long allocatedBytes) {
+            int i = stage.ordinal();
+            calls[i]++;
+            nanos[i] += stageNanos;
+            bytes[i] = allocatedBytes < 0 || bytes[i] < 0 ? -1 : bytes[i] + allocatedBytes;
+        }
 
-        return 0.10 * s2 + 0.15 * s3 + 0.20 * s4 + 0.25 * s5 + 0.30 * s6;
+        String toJson() {
+            StringBuilder json = new StringBuilder("{\"trace\":[");
+            for (StageTracer.Stage stage : StageTracer.Stage.values()) {
+                int i = stage.ordinal();
+                if (i > 0) json.append(',');
+                json.append("{\"stage\":\"").append(stage.label()).append("\",\"calls\":").append(calls[i])
+                    .append(",\"nanos\":").append(nanos[i]).append(",\"bytes\":").append(bytes[i]).append('}');
+            }
+            return json.append("]}").toString();
+        }
     }
 
-    private static double normalizedTokenNGramCosine(ArrayList<String> tokens1, ArrayList<String> tokens2, int n) {
-        HashMap<Integer> grams1 = NGramAnalyzer.analyzeNormalizedNGrams(tokens1, n);
-        HashMap<Integer> grams2 = NGramAnalyzer.analyzeNormalizedNGrams(tokens2, n);
-        return cosineSimilaritySparseCounts(grams1, grams2);
+    private static void dumpCollisions(String[] args) throws IOException {
+        for (int i = 1; i < args.length; i++) {
+            ArrayList<String> tokens = Lexer.tokenize(Preprocessor.process(readFile(args[i])));
+            NGramAnalyzer.CollisionReport report = NGramAnalyzer.collisionReport(
+                tokens, DocumentProfile.SEQ_MIN_N, DocumentProfile.SEQ_MAX_N);
+            System.out.printf(
+                "{\"file\":\"%s\",\"grams\":%d,\"hashes\":%d,\"collisions\":%d,\"rate\":%.10f}%n",
+                args[i].replace("\\", "/"), report.distinctGrams(), report.distinctHashes(),
+                report.collisions(), report.rate()
+            );
+        }
     }
 
-    private static double cosineSimilaritySparseCounts(HashMap<Integer> map1, HashMap<Integer> map2) {
-        String[] keys1 = map1.keys();
-        String[] keys2 = map2.keys();
-
-        if (keys1.length == 0 && keys2.length == 0) {
-            return 1.0;
-        }
-        if (keys1.length == 0 || keys2.length == 0) {
-            return 0.0;
+    private static void dumpMinHash(String[] args) throws IOException {
+        ArrayList<Path> roots = new ArrayList<>();
+        int hashes = 128;
+        double lshThreshold = 0.5;
+        double recall = 0.95;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--hashes": hashes = Integer.parseInt(args[++i]); break;
+                case "--lsh": lshThreshold = Double.parseDouble(args[++i]); break;
+                case "--recall": recall = Double.parseDouble(args[++i]); break;
+                default: roots.append(Paths.get(args[i]));
+            }
         }
 
-        HashMap<Integer> a = map1;
-        HashMap<Integer> b = map2;
-        String[] aKeys = keys1;
-        String[] bKeys = keys2;
-        if (keys1.length > keys2.length) {
-            a = map2;
-            b = map1;
-            aKeys = keys2;
-            bKeys = keys1;
+        Path[] files = Corpus.listJavaFiles(roots);
+        DocumentProfile[] profiles = new DocumentProfile[files.length];
+        for (int i = 0; i < files.length; i++) {
+            profiles[i] = DocumentProfile.build(Corpus.readFile(files[i]));
         }
-
-        double dot = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-
-        for (String k : aKeys) {
-            int av = a.getOrDefault(k, 0);
-            int bv = b.getOrDefault(k, 0);
-            dot += (double) av * bv;
-            normA += (double) av * av;
+        MinHash minHash = new MinHash(hashes, Corpus.MINHASH_SEED);
+        LshIndex lsh = LshIndex.forThreshold(hashes, lshThreshold, recall);
+        int[][] signatures = new int[files.length][];
+        for (int i = 0; i < files.length; i++) {
+            signatures[i] = minHash.signature(profiles[i]);
+            lsh.add(signatures[i], profiles[i].getTokenNGramCount() == 0);
         }
-
-        for (String k : bKeys) {
-            int bv = b.getOrDefault(k, 0);
-            normB += (double) bv * bv;
+        int pairs = 0, above = 0, aboveFound = 0, candidates = 0;
+        double sumError = 0, sumSquaredError = 0, maxError = 0;
+        for (int i = 0; i < files.length; i++) {
+            int[] row = lsh.candidatesAfter(i);
+            candidates += row.length;
+            for (int j = i + 1; j < files.length; j++) {
+                double exact = MinHash.exactJaccard(profiles[i], profiles[j]);
+                double estimate = MinHash.estimateJaccard(signatures[i], signatures[j]);
+                boolean candidate = java.util.Arrays.binarySearch(row, j) >= 0;
+                double error = Math.abs(estimate - exact);
+                pairs++;
+                sumError += error;
+                sumSquaredError += error * error;
+                maxError = Math.max(maxError, error);
+                if (exact >= lshThreshold) {
+                    above++;
+                    if (candidate) aboveFound++;
+                }
+                System.out.printf(
+                    "{\"file1\":\"%s\",\"file2\":\"%s\",\"exact\":%.6f,\"estimate\":%.6f,\"error\":%.6f,\"candidate\":%b}%n",
+                    files[i].toString().replace("\\", "/"), files[j].toString().replace("\\", "/"),
+                    exact, estimate, estimate - exact, candidate
+                );
+            }
         }
-
-        if (normA == 0 && normB == 0) return 1.0;
-        if (normA == 0 || normB == 0) return 0.0;
-        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+        System.out.printf(
+            "{\"summary\":true,\"files\":%d,\"pairs\":%d,\"hashes\":%d,\"meanAbsError\":%.6f,\"rmse\":%.6f,\"maxAbsError\":%.6f,"
+                + "\"lsh\":%.2f,\"bands\":%d,\"rows\":%d,\"candidates\":%d,\"pairsAboveLsh\":%d,\"recall\":%.6f}%n",
+            files.length, pairs, hashes,
+            pairs == 0 ? 0.0 : sumError / pairs, pairs == 0 ? 0.0 : Math.sqrt(sumSquaredError / pairs), maxError,
+            lshThreshold, lsh.bands(), lsh.rows(), candidates, above,
+            above == 0 ? 1.0 : (double) aboveFound / above
+        );
     }
 
-    private static double tokenLengthSimilarity(int n1, int n2) {
-        if (n1 == 0 && n2 == 0) return 1.0;
-        if (n1 == 0 || n2 == 0) return 0.0;
-        return (double) Math.min(n1, n2) / (double) Math.max(n1, n2);
+    private static Features computeFeatures(String code1, String code2) {
+        DocumentProfile p1 = DocumentProfile.build(code1);
+        DocumentProfile p2 = DocumentProfile.build(code2);
+
+        // 两次 build 各自追踪画像构建的阶段，这里追踪各维度打分
+        StageTracer.Span span = StageTracer.begin();
+        double kwSim = DocumentProfile.keywordSimilarity(p1, p2);
+        StageTracer.lap(span, StageTracer.Stage.KEYWORD_SIMILARITY);
+        double opSim = DocumentProfile.operatorSimilarity(p1, p2);
+        StageTracer.lap(span, StageTracer.Stage.OPERATOR_SIMILARITY);
+        double idSim = SimilarityCalculator.calculateIdentifierSequenceSimilarity(p1, p2);
+        StageTracer.lap(span, StageTracer.Stage.IDENTIFIER_SIMILARITY);
+
+        double[] seq = DocumentProfile.tokenNGramSimilarities(p1, p2);
+        double seqSim = SimilarityCalculator.calculateNormalizedTokenNGramSimilarity(p1, p2);
+        StageTracer.lap(span, StageTracer.Stage.TOKEN_SIMILARITY);
+        double lenSim = DocumentProfile.lengthSimilarity(p1, p2);
+        StageTracer.lap(span, StageTracer.Stage.FUSION);
+
+        return new Features(kwSim, idSim, opSim, seqSim, lenSim, p1.getTokenCount(), p2.getTokenCount(), seq[2], seq[3], seq[4], seq[5], seq[6], seq[7], seq[8]);
     }
 
     private static String readFile(String path) throws IOException {
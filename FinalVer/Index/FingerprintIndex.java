@@ -0,0 +1,182 @@
+package Index;
+
+import DataStructure.ArrayList;
+import DataStructure.LongCountMap;
+
+/**
+ * 全局 winnowing 指纹索引：指纹哈希 -> (文档, 文档内指纹位置)
+ *
+ * 语料库级别的克隆检测只需遍历每条倒排表，为同一条倒排表中的文档两两累加共享指纹数，
+ * 总耗时与倒排项数量（及每条倒排表的文档数平方）成正比，不必比较全部 N² 对。
+ * 出现在过多文档中的指纹（模板代码、常见写法）可以用 maxDocFrequency 跳过。
+ * 由于倒排项带有位置，任意两份文档的匹配片段（行范围）可以直接从索引中取出。
+ *
+ * 线程安全：add 与查询方法互斥（均为 synchronized）。
+ */
+public class FingerprintIndex {
+
+    // 指纹哈希 -> 倒排表编号 + 1
+    private final LongCountMap postingIds = new LongCountMap();
+    private int[][] postingDocs = new int[16][];
+    private int[][] postingOffsets = new int[16][];
+    private int[] postingSizes = new int[16];
+    private int postingCount;
+
+    private final ArrayList<Winnowing.Fingerprints> documents = new ArrayList<>();
+    private int[] distinctCounts = new int[16];
+
+    /**
+     * 加入一份文档的指纹，返回文档编号（从 0 开始按加入顺序递增）
+     */
+    public synchronized int add(Winnowing.Fingerprints fingerprints) {
+        int doc = documents.size();
+        documents.append(fingerprints);
+        if (doc == distinctCounts.length) {
+            distinctCounts = java.util.Arrays.copyOf(distinctCounts, doc * 2);
+        }
+        int distinct = 0;
+        for (int i = 0; i < fingerprints.size(); i++) {
+            long hash = fingerprints.hashAt(i);
+            int id = postingIds.get(hash) - 1;
+            if (id < 0) {
+                id = newPosting();
+                postingIds.put(hash, id + 1);
+            }
+            int size = postingSizes[id];
+            if (size == 0 || postingDocs[id][size - 1] != doc) {
+                distinct++;
+            }
+            appendPosting(id, doc, i);
+        }
+        distinctCounts[doc] = distinct;
+        return doc;
+    }
+
+    /**
+     * 共享至少 minShared 个不同指纹的全部文档对，按 (doc1, doc2) 升序
+     * @param maxDocFrequency 跳过出现在超过该数量文档中的指纹
+     */
+    public synchronized ClonePair[] clonePairs(int minShared, int maxDocFrequency) {
+        LongCountMap shared = new LongCountMap();
+        int[] docs = new int[16];
+        for (int id = 0; id < postingCount; id++) {
+            // 同一文档在倒排表中连续出现，去重后得到包含该指纹的文档列表
+            int n = 0;
+            int[] posting = postingDocs[id];
+            for (int j = 0; j < postingSizes[id]; j++) {
+                if (n == 0 || docs[n - 1] != posting[j]) {
+                    if (n == docs.length) {
+                        docs = java.util.Arrays.copyOf(docs, n * 2);
+                    }
+                    docs[n++] = posting[j];
+                }
+            }
+            if (n < 2 || n > maxDocFrequency) continue;
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    shared.increment(((long) docs[a] << 32) | docs[b]);
+                }
+            }
+        }
+
+        long[] keys = shared.keys();
+        java.util.Arrays.sort(keys);
+        ArrayList<ClonePair> pairs = new ArrayList<>();
+        for (long key : keys) {
+            int count = shared.get(key);
+            if (count < minShared) continue;
+            int doc1 = (int) (key >>> 32);
+            int doc2 = (int) key;
+            pairs.append(new ClonePair(doc1, doc2, count,
+                (double) count / distinctCounts[doc1], (double) count / distinctCounts[doc2]));
+        }
+        return pairs.toArray(new ClonePair[0]);
+    }
+
+    /**
+     * 两份已加入文档之间的匹配片段：相同指纹覆盖的行范围，按 doc1 中的位置排列，
+     * 在两边都相互重叠或相邻的片段合并为一段
+     */
+    public synchronized Region[] matches(int doc1, int doc2) {
+        Winnowing.Fingerprints f1 = documents.get(doc1);
+        Winnowing.Fingerprints f2 = documents.get(doc2);
+        ArrayList<Region> regions = new ArrayList<>();
+        Region current = null;
+        for (int i = 0; i < f1.size(); i++) {
+            int id = postingIds.get(f1.hashAt(i)) - 1;
+            if (id < 0) continue;
+            for (int j = 0; j < postingSizes[id]; j++) {
+                if (postingDocs[id][j] != doc2) continue;
+                int offset = postingOffsets[id][j];
+                Region match = new Region(f1.startLineAt(i), f1.endLineAt(i),
+                    f2.startLineAt(offset), f2.endLineAt(offset));
+                if (current != null && current.touches(match)) {
+                    current = current.union(match);
+                } else {
+                    if (current != null) regions.append(current);
+                    current = match;
+                }
+                break; // 同一指纹在 doc2 中出现多次时只取第一处
+            }
+        }
+        if (current != null) regions.append(current);
+        return regions.toArray(new Region[0]);
+    }
+
+    /**
+     * 已加入的文档数量
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * 文档中不同指纹的数量
+     */
+    public synchronized int distinctFingerprints(int doc) {
+        return distinctCounts[doc];
+    }
+
+    private int newPosting() {
+        if (postingCount == postingSizes.length) {
+            int capacity = postingCount * 2;
+            postingDocs = java.util.Arrays.copyOf(postingDocs, capacity);
+            postingOffsets = java.util.Arrays.copyOf(postingOffsets, capacity);
+            postingSizes = java.util.Arrays.copyOf(postingSizes, capacity);
+        }
+        postingDocs[postingCount] = new int[2];
+        postingOffsets[postingCount] = new int[2];
+        return postingCount++;
+    }
+
+    private void appendPosting(int id, int doc, int offset) {
+        int size = postingSizes[id];
+        if (size == postingDocs[id].length) {
+            postingDocs[id] = java.util.Arrays.copyOf(postingDocs[id], size * 2);
+            postingOffsets[id] = java.util.Arrays.copyOf(postingOffsets[id], size * 2);
+        }
+        postingDocs[id][size] = doc;
+        postingOffsets[id][size] = offset;
+        postingSizes[id] = size + 1;
+    }
+
+    /**
+     * 克隆候选：共享的不同指纹数，以及它占两份文档各自指纹数的比例
+     */
+    public record ClonePair(int doc1, int doc2, int shared, double coverage1, double coverage2) {}
+
+    /**
+     * 匹配片段：doc1 中的行范围与 doc2 中对应的行范围（闭区间）
+     */
+    public record Region(int start1, int end1, int start2, int end2) {
+        boolean touches(Region other) {
+            return other.start1 <= end1 + 1 && other.end1 >= start1 - 1
+                && other.start2 <= end2 + 1 && other.end2 >= start2 - 1;
+        }
+
+        Region union(Region other) {
+            return new Region(Math.min(start1, other.start1), Math.max(end1, other.end1),
+                Math.min(start2, other.start2), Math.max(end2, other.end2));
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package Index;
+
+import Analyzer.DocumentProfile;
+import Analyzer.NGramAnalyzer;
+import DataStructure.LongCountMap;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 归一化 token n-gram 倒排索引
+ *
+ * 键为 n-gram 哈希（与 DocumentProfile 中 2~8 阶归一化 token n-gram 相同，
+ * 即 NGramAnalyzer.analyzeNormalizedNGrams 产生的那些 gram），
+ * 倒排表记录包含该 gram 的文档编号及其出现次数。
+ *
+ * top-k 查询只遍历查询文档各个 gram 的倒排表，为真正共享 gram 的文档累加得分：
+ *   score(d) = Σ_n w_n · Σ_{g ∈ n 阶} q(g)·d(g) / (|q_n|·|d_n|)
+ * 即按给定阶数权重融合的各阶余弦（与 SimilarityCalculator 的 seqSim 同一口径）。
+ * 查询耗时与命中的倒排项数量成正比，与语料库规模无关；
+ * 得到的候选短名单再交给 SimilarityCalculator 做精确打分。
+ *
+ * 线程安全：多个 search 可以并发执行；add 持有写锁，与 search 互斥。
+ */
+public class InvertedIndex {
+
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+
+    // gram 哈希 -> 倒排表编号 + 1
+    private final LongCountMap postingIds = new LongCountMap();
+    private int[][] postingDocs = new int[16][];
+    private int[][] postingCounts = new int[16][];
+    private int[] postingSizes = new int[16];
+    private int postingCount;
+
+    // 文档编号 -> 各阶模长（下标即阶数）
+    private double[][] docNorms = new double[16][];
+    private int docCount;
+    private long postingEntries;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 每个线程一份稀疏累加器，只清理被触及的位置
+    private final ThreadLocal<Accumulator> accumulators = ThreadLocal.withInitial(Accumulator::new);
+
+    /**
+     * 加入一个文档，返回其文档编号（从 0 开始按加入顺序递增）
+     */
+    public int add(DocumentProfile profile) {
+        lock.writeLock().lock();
+        try {
+            return addLocked(profile);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int addLocked(DocumentProfile profile) {
+        int doc = docCount;
+        if (doc == docNorms.length) {
+            docNorms = java.util.Arrays.copyOf(docNorms, doc * 2);
+        }
+        double[] norms = new double[DocumentProfile.SEQ_MAX_N + 1];
+        for (int n = DocumentProfile.SEQ_MIN_N; n <= DocumentProfile.SEQ_MAX_N; n++) {
+            norms[n] = profile.getTokenNGramNorm(n);
+        }
+        docNorms[doc] = norms;
+
+        for (int i = 0; i < profile.getTokenNGramCount(); i++) {
+            long key = profile.getTokenNGramKey(i);
+            int id = postingIds.get(key) - 1;
+            if (id < 0) {
+                id = newPosting();
+                postingIds.put(key, id + 1);
+            }
+            appendPosting(id, doc, profile.getTokenNGramCountAt(i));
+        }
+        postingEntries += profile.getTokenNGramCount();
+        docCount = doc + 1;
+        return doc;
+    }
+
+    /**
+     * top-k 查询
+     * @param query 查询文档画像
+     * @param k 返回的候选数量上限
+     * @param orderWeights 各阶权重（下标即阶数）
+     * @param maxDocFrequency 跳过出现在超过该比例文档中的 gram（如 0.5），1.0 表示不跳过
+     * @return 按得分降序排列的候选
+     */
+    public Hit[] search(DocumentProfile query, int k, double[] orderWeights, double maxDocFrequency) {
+        if (k <= 0) {
+            return new Hit[0];
+        }
+        lock.readLock().lock();
+        try {
+            return searchLocked(query, k, orderWeights, maxDocFrequency);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Hit[] searchLocked(DocumentProfile query, int k, double[] orderWeights, double maxDocFrequency) {
+        Accumulator acc = accumulators.get();
+        acc.ensureCapacity(docCount);
+        double dfLimit = maxDocFrequency * docCount;
+
+        for (int i = 0; i < query.getTokenNGramCount(); i++) {
+            long key = query.getTokenNGramKey(i);
+            int id = postingIds.get(key) - 1;
+            if (id < 0) continue;
+            int size = postingSizes[id];
+            if (size > dfLimit) continue;
+
+            int n = NGramAnalyzer.orderOf(key);
+            double qNorm = query.getTokenNGramNorm(n);
+            double weight = n < orderWeights.length ? orderWeights[n] : 0.0;
+            if (weight == 0.0 || qNorm == 0.0) continue;
+            double scale = weight * query.getTokenNGramCountAt(i) / qNorm;
+
+            int[] postingDoc = postingDocs[id];
+            int[] postingCount = postingCounts[id];
+            for (int j = 0; j < size; j++) {
+                int doc = postingDoc[j];
+                acc.add(doc, scale * postingCount[j] / docNorms[doc][n]);
+            }
+        }
+
+        Hit[] hits = acc.topK(k);
+        acc.reset();
+        return hits;
+    }
+
+    /**
+     * 已加入的文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 不同 gram（倒排表）数量
+     */
+    public int postingListCount() {
+        lock.readLock().lock();
+        try {
+            return postingCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 倒排项总数
+     */
+    public long postingEntryCount() {
+        lock.readLock().lock();
+        try {
+            return postingEntries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int newPosting() {
+        if (postingCount == postingSizes.length) {
+            int capacity = postingCount * 2;
+            postingDocs = java.util.Arrays.copyOf(postingDocs, capacity);
+            postingCounts = java.util.Arrays.copyOf(postingCounts, capacity);
+            postingSizes = java.util.Arrays.copyOf(postingSizes, capacity);
+        }
+        postingDocs[postingCount] = new int[INITIAL_POSTING_CAPACITY];
+        postingCounts[postingCount] = new int[INITIAL_POSTING_CAPACITY];
+        return postingCount++;
+    }
+
+    private void appendPosting(int id, int doc, int count) {
+        int size = postingSizes[id];
+        if (size == postingDocs[id].length) {
+            postingDocs[id] = java.util.Arrays.copyOf(postingDocs[id], size * 2);
+            postingCounts[id] = java.util.Arrays.copyOf(postingCounts[id], size * 2);
+        }
+        postingDocs[id][size] = doc;
+        postingCounts[id][size] = count;
+        postingSizes[id] = size + 1;
+    }
+
+    /**
+     * 查询命中：文档编号与得分
+     */
+    public record Hit(int doc, double score) {}
+
+    /**
+     * 稀疏累加器：稠密得分数组 + 被触及文档列表
+     * 查询结束后只清理被触及的位置，因此单次查询的开销与命中数量成正比。
+     */
+    private static final class Accumulator {
+        private double[] scores = new double[0];
+        private int[] touched = new int[16];
+        private int touchedCount;
+
+        void ensureCapacity(int documents) {
+            if (scores.length < documents) {
+                scores = java.util.Arrays.copyOf(scores, Math.max(documents, scores.length * 2));
+            }
+        }
+
+        void add(int doc, double value) {
+            if (scores[doc] == 0.0) {
+                if (touchedCount == touched.length) {
+                    touched = java.util.Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += value;
+        }
+
+        /**
+         * 用大小为 k 的最小堆选出得分最高的 k 个文档
+         */
+        Hit[] topK(int k) {
+            int heapSize = 0;
+            int[] heap = new int[Math.min(k, touchedCount)];
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (heapSize < heap.length) {
+                    heap[heapSize++] = doc;
+                    siftUp(heap, heapSize - 1);
+                } else if (heap.length > 0 && scores[doc] > scores[heap[0]]) {
+                    heap[0] = doc;
+                    siftDown(heap, heapSize);
+                }
+            }
+            Hit[] hits = new Hit[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                int doc = heap[0];
+                hits[i] = new Hit(doc, scores[doc]);
+                heap[0] = heap[i];
+                siftDown(heap, i);
+            }
+            return hits;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0.0;
+            }
+            touchedCount = 0;
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (scores[heap[i]] >= scores[heap[parent]]) break;
+                swap(heap, i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size) {
+            int i = 0;
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) break;
+                int smallest = left;
+                if (left + 1 < size && scores[heap[left + 1]] < scores[heap[left]]) {
+                    smallest = left + 1;
+                }
+                if (scores[heap[i]] <= scores[heap[smallest]]) break;
+                swap(heap, i, smallest);
+                i = smallest;
+            }
+        }
+
+        private static void swap(int[] heap, int a, int b) {
+            int t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package Index;
+
+import DataStructure.LongCountMap;
+
+/**
+ * MinHash 签名的 LSH 分带（banding）索引
+ *
+ * 签名被切成 bands 段、每段 rows 个分量；两份文档只要有任意一段完全相同，就落入同一个桶，
+ * 成为候选对。Jaccard 为 s 的一对文档成为候选的概率为
+ *   P(s) = 1 - (1 - s^rows)^bands
+ * 这是一条以 (1/bands)^(1/rows) 附近为拐点的 S 形曲线：
+ * 远低于拐点的文档对几乎不会被比较，远高于拐点的几乎一定会被比较。
+ * {@link #forThreshold} 按目标阈值与召回率选取 bands/rows。
+ *
+ * 只有候选对需要精确打分，语料库比较因此从 O(N²) 降为 O(N + 候选对数)。
+ * 空文档（没有任何 gram）不加入桶，不与任何文档成为候选。
+ *
+ * 候选对按行（较小的文档编号）逐行取出，见 {@link #candidatesAfter}：一对文档只在它们
+ * 第一次落入同一个桶的段上产生，不需要先收集全部候选对再排序去重。
+ * 超过 maxBucketSize 篇文档的桶（大量几乎相同的模板提交）整体跳过，
+ * 避免单个桶产生平方级的候选对。
+ */
+public class LshIndex {
+
+    private final int bands;
+    private final int rows;
+
+    // (段号, 段哈希) -> 桶编号 + 1
+    private final LongCountMap bucketIds = new LongCountMap();
+    private int[][] bucketDocs = new int[16][];
+    private int[] bucketSizes = new int[16];
+    private int bucketCount;
+    private int docCount;
+    // 文档 doc 在第 b 段所在的桶：docBuckets[doc * bands + b]，空文档为 -1
+    private int[] docBuckets = new int[16];
+    private final int maxBucketSize;
+
+    public LshIndex(int bands, int rows) {
+        this(bands, rows, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxBucketSize 桶内文档数超过该值时，该桶不再产生候选
+     */
+    public LshIndex(int bands, int rows, int maxBucketSize) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands and rows must be positive: " + bands + "x" + rows);
+        }
+        if (maxBucketSize < 2) {
+            throw new IllegalArgumentException("maxBucketSize must be at least 2: " + maxBucketSize);
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.maxBucketSize = maxBucketSize;
+    }
+
+    /**
+     * 为长度 numHashes 的签名选取分带参数：
+     * 在 bands * rows <= numHashes 的组合中，取满足 P(threshold) >= recall 的最大 rows
+     * （rows 越大，低相似度文档对成为候选的概率越小），同一 rows 下 bands 取满。
+     * 即使 rows = 1 也达不到目标召回率时退化为 rows = 1。
+     */
+    public static LshIndex forThreshold(int numHashes, double threshold, double recall) {
+        return forThreshold(numHashes, threshold, recall, Integer.MAX_VALUE);
+    }
+
+    public static LshIndex forThreshold(int numHashes, double threshold, double recall, int maxBucketSize) {
+        int bestRows = 1;
+        for (int r = 1; r <= numHashes; r++) {
+            if (collisionProbability(threshold, numHashes / r, r) >= recall) {
+                bestRows = r;
+            }
+        }
+        return new LshIndex(numHashes / bestRows, bestRows, maxBucketSize);
+    }
+
+    /**
+     * Jaccard 为 s 的文档对在给定分带参数下成为候选的概率
+     */
+    public static double collisionProbability(double s, int bands, int rows) {
+        return 1.0 - Math.pow(1.0 - Math.pow(s, rows), bands);
+    }
+
+    public int bands() {
+        return bands;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * S 曲线拐点的近似位置 (1/bands)^(1/rows)
+     */
+    public double threshold() {
+        return Math.pow(1.0 / bands, 1.0 / rows);
+    }
+
+    /**
+     * 加入一份签名，返回文档编号（从 0 开始按加入顺序递增）
+     * @param empty 文档是否没有任何 gram（为 true 时只占用编号，不入桶）
+     */
+    public synchronized int add(int[] signature, boolean empty) {
+        if (signature.length < bands * rows) {
+            throw new IllegalArgumentException("signature too short: " + signature.length + " < " + bands * rows);
+        }
+        int doc = docCount++;
+        if (docBuckets.length < docCount * bands) {
+            docBuckets = java.util.Arrays.copyOf(docBuckets, Math.max(docBuckets.length * 2, docCount * bands));
+        }
+        int base = doc * bands;
+        for (int b = 0; b < bands; b++) {
+            if (empty) {
+                docBuckets[base + b] = -1;
+                continue;
+            }
+            long key = bandKey(signature, b);
+            int id = bucketIds.get(key) - 1;
+            if (id < 0) {
+                id = newBucket();
+                bucketIds.put(key, id + 1);
+            }
+            appendToBucket(id, doc);
+            docBuckets[base + b] = id;
+        }
+        return doc;
+    }
+
+    /**
+     * 与给定签名在任意一段上相同的已加入文档，按编号升序、去重
+     */
+    public synchronized int[] candidates(int[] signature) {
+        LongCountMap seen = new LongCountMap();
+        for (int b = 0; b < bands; b++) {
+            int id = bucketIds.get(bandKey(signature, b)) - 1;
+            if (id < 0 || bucketSizes[id] > maxBucketSize) continue;
+            for (int j = 0; j < bucketSizes[id]; j++) {
+                seen.increment(bucketDocs[id][j]);
+            }
+        }
+        long[] docs = seen.keys();
+        int[] result = new int[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            result[i] = (int) docs[i];
+        }
+        java.util.Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 与文档 doc 成为候选、且编号大于 doc 的文档，升序、去重
+     *
+     * 对 doc 的每一段，桶内编号大于 doc 的文档（桶内按加入顺序追加，编号天然升序，二分定位起点）
+     * 只有在更早的段上没有与 doc 落入同一个（未超限的）桶时才计入，因此每对只产生一次。
+     * 依次对 0..size()-1 调用即可按 (i, j) 升序流式取出全部候选对。
+     */
+    public synchronized int[] candidatesAfter(int doc) {
+        if (doc < 0 || doc >= docCount) {
+            throw new IndexOutOfBoundsException("doc: " + doc + ", size: " + docCount);
+        }
+        int base = doc * bands;
+        int[] result = new int[16];
+        int size = 0;
+        for (int b = 0; b < bands; b++) {
+            int id = docBuckets[base + b];
+            if (id < 0 || bucketSizes[id] > maxBucketSize) continue;
+            int[] docs = bucketDocs[id];
+            int n = bucketSizes[id];
+            int from = java.util.Arrays.binarySearch(docs, 0, n, doc) + 1;
+            for (int x = from; x < n; x++) {
+                int other = docs[x];
+                if (collidesBefore(doc, other, b)) continue;
+                if (size == result.length) {
+                    result = java.util.Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = other;
+            }
+        }
+        java.util.Arrays.sort(result, 0, size);
+        return java.util.Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 因超过 maxBucketSize 而被跳过的桶数
+     */
+    public synchronized int oversizedBuckets() {
+        int count = 0;
+        for (int id = 0; id < bucketCount; id++) {
+            if (bucketSizes[id] > maxBucketSize) count++;
+        }
+        return count;
+    }
+
+    /**
+     * 已加入的文档数量
+     */
+    public synchronized int size() {
+        return docCount;
+    }
+
+    /**
+     * 段哈希：以段号为初值，对段内 rows 个分量做多项式哈希，使不同段的桶互不混淆
+     */
+    private long bandKey(int[] signature, int band) {
+        long h = (band + 1) * 0xC2B2AE3D27D4EB4FL;
+        int from = band * rows;
+        for (int i = from; i < from + rows; i++) {
+            h = (h + signature[i] + 1) * 0x9E3779B97F4A7C15L;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * 两份文档在第 band 段之前是否已在某个未超限的桶中相遇
+     */
+    private boolean collidesBefore(int doc, int other, int band) {
+        int a = doc * bands;
+        int c = other * bands;
+        for (int b = 0; b < band; b++) {
+            int id = docBuckets[a + b];
+            if (id == docBuckets[c + b] && bucketSizes[id] <= maxBucketSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int newBucket() {
+        if (bucketCount == bucketSizes.length) {
+            bucketDocs = java.util.Arrays.copyOf(bucketDocs, bucketCount * 2);
+            bucketSizes = java.util.Arrays.copyOf(bucketSizes, bucketCount * 2);
+        }
+        bucketDocs[bucketCount] = new int[2];
+        return bucketCount++;
+    }
+
+    private void appendToBucket(int id, int doc) {
+        int size = bucketSizes[id];
+        if (size == bucketDocs[id].length) {
+            bucketDocs[id] = java.util.Arrays.copyOf(bucketDocs[id], size * 2);
+        }
+        bucketDocs[id][size] = doc;
+        bucketSizes[id] = size + 1;
+    }
+}
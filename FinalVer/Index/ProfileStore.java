@@ -0,0 +1,264 @@
+package Index;
+
+import Analyzer.DocumentProfile;
+import Constants.JavaConstants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 持久化的语料库画像文件（内存映射读取）
+ *
+ * 文件布局（小端序）：
+ *   [0, 64)          文件头：魔数、格式版本、文档数、特征维度与阶数、各区域偏移
+ *   [64, offsets)    文档画像记录，逐个紧密排列，每条 8 字节对齐（编码见 DocumentProfile.writeTo）
+ *   offsets          long[docCount + 1]：第 i 条记录位于 [offsets[i], offsets[i+1])
+ *   names            int[docCount + 1] 名称偏移 + UTF-8 名称字节
+ *
+ * 打开文件时只读取文件头并建立内存映射，不解析任何记录：记录和名称都留在页缓存中，
+ * 因此十万级文档的文件也能在毫秒级打开。{@link #profile} 返回的画像是映射记录的视图，
+ * 打分时直接从映射区读取 n-gram 键与计数，语料库再大也只在堆上占用每个文档一个很小的视图对象。
+ * 特征提取方式（n-gram 哈希、阶数、关键字/运算符表）变化时必须提升 FORMAT_VERSION，
+ * 旧文件会在打开时被拒绝，而不是被静默地用不兼容的键比较。
+ *
+ * 打开后的实例只读，可被多个线程同时访问。
+ */
+public final class ProfileStore {
+
+    /** 文件魔数 "SCSPROF1" */
+    public static final long MAGIC = 0x53435350524F4631L;
+    /** 格式版本 */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 64;
+    // 单个映射区域的上限（MappedByteBuffer 以 int 寻址）
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE & ~7L;
+
+    private final int docCount;
+    private final LongBuffer offsets;
+    private final ByteBuffer names;
+    private final int namesDataStart;
+    // 记录区按记录边界切分的映射段：segmentFirstDoc[s] 为第 s 段的第一条记录
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentBase;
+    private final int[] segmentFirstDoc;
+
+    private ProfileStore(int docCount, LongBuffer offsets, ByteBuffer names,
+                         MappedByteBuffer[] segments, long[] segmentBase, int[] segmentFirstDoc) {
+        this.docCount = docCount;
+        this.offsets = offsets;
+        this.names = names;
+        this.namesDataStart = 4 * (docCount + 1);
+        this.segments = segments;
+        this.segmentBase = segmentBase;
+        this.segmentFirstDoc = segmentFirstDoc;
+    }
+
+    /**
+     * 把画像写入文件（先写临时文件再原子替换，写到一半中断不会留下损坏的文件）
+     * @param names 每个文档的名称（通常是文件路径）
+     */
+    public static void write(Path path, String[] names, DocumentProfile[] profiles) throws IOException {
+        if (names.length != profiles.length) {
+            throw new IllegalArgumentException("names and profiles differ in length: " + names.length + " vs " + profiles.length);
+        }
+        int n = profiles.length;
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position(HEADER_BYTES);
+            long[] recordOffsets = new long[n + 1];
+            long pos = HEADER_BYTES;
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            for (int i = 0; i < n; i++) {
+                int size = profiles[i].serializedSize();
+                if (buf.capacity() < size) {
+                    buf = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+                }
+                buf.clear();
+                profiles[i].writeTo(buf);
+                buf.flip();
+                writeFully(ch, buf);
+                recordOffsets[i] = pos;
+                pos += size;
+            }
+            recordOffsets[n] = pos;
+
+            long offsetsPos = pos;
+            ByteBuffer table = ByteBuffer.allocate(8 * (n + 1)).order(ByteOrder.LITTLE_ENDIAN);
+            for (long offset : recordOffsets) table.putLong(offset);
+            table.flip();
+            writeFully(ch, table);
+            pos += 8L * (n + 1);
+
+            long namesPos = pos;
+            byte[][] encoded = new byte[n][];
+            int total = 0;
+            for (int i = 0; i < n; i++) {
+                encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+                total += encoded[i].length;
+            }
+            ByteBuffer nameBuf = ByteBuffer.allocate(4 * (n + 1) + total).order(ByteOrder.LITTLE_ENDIAN);
+            int nameOffset = 0;
+            for (int i = 0; i <= n; i++) {
+                nameBuf.putInt(nameOffset);
+                if (i < n) nameOffset += encoded[i].length;
+            }
+            for (byte[] bytes : encoded) nameBuf.put(bytes);
+            nameBuf.flip();
+            writeFully(ch, nameBuf);
+            pos += nameBuf.limit();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC);
+            header.putInt(FORMAT_VERSION);
+            header.putInt(n);
+            header.putInt(JavaConstants.KEYWORDS.length);
+            header.putInt(JavaConstants.OPERATORS.length);
+            header.putInt(DocumentProfile.ID_MAX_N);
+            header.putInt(DocumentProfile.SEQ_MAX_N);
+            header.putLong(offsetsPos);
+            header.putLong(namesPos);
+            header.putLong(pos);
+            header.position(HEADER_BYTES);
+            header.flip();
+            ch.position(0);
+            writeFully(ch, header);
+            ch.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以只读内存映射打开画像文件
+     * @throws IOException 文件不存在、不是画像文件、版本或特征配置与当前程序不一致
+     */
+    public static ProfileStore open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = ch.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("not a profile store: " + path);
+            }
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getLong() != MAGIC) {
+                throw new IOException("not a profile store: " + path);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported profile store version " + version + " (expected " + FORMAT_VERSION + "): " + path);
+            }
+            int n = header.getInt();
+            if (header.getInt() != JavaConstants.KEYWORDS.length || header.getInt() != JavaConstants.OPERATORS.length
+                    || header.getInt() != DocumentProfile.ID_MAX_N || header.getInt() != DocumentProfile.SEQ_MAX_N) {
+                throw new IOException("profile store was built with a different feature configuration: " + path);
+            }
+            long offsetsPos = header.getLong();
+            long namesPos = header.getLong();
+            long end = header.getLong();
+            if (end != fileSize || offsetsPos < HEADER_BYTES || namesPos != offsetsPos + 8L * (n + 1) || namesPos > end) {
+                throw new IOException("truncated or corrupt profile store: " + path);
+            }
+
+            LongBuffer offsets = ch.map(FileChannel.MapMode.READ_ONLY, offsetsPos, 8L * (n + 1))
+                .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            ByteBuffer names = ch.map(FileChannel.MapMode.READ_ONLY, namesPos, end - namesPos)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+            // 记录区通常只需一个映射段；超过 2GB 时按记录边界切分
+            int segmentCount = 0;
+            MappedByteBuffer[] segments = new MappedByteBuffer[4];
+            long[] bases = new long[4];
+            int[] firstDocs = new int[4];
+            int doc = 0;
+            while (doc < n) {
+                long base = offsets.get(doc);
+                int last = doc;
+                while (last < n && offsets.get(last + 1) - base <= MAX_SEGMENT_BYTES) {
+                    last++;
+                }
+                if (last == doc) {
+                    throw new IOException("profile record too large: #" + doc + " in " + path);
+                }
+                if (segmentCount == segments.length) {
+                    segments = java.util.Arrays.copyOf(segments, segmentCount * 2);
+                    bases = java.util.Arrays.copyOf(bases, segmentCount * 2);
+                    firstDocs = java.util.Arrays.copyOf(firstDocs, segmentCount * 2);
+                }
+                segments[segmentCount] = ch.map(FileChannel.MapMode.READ_ONLY, base, offsets.get(last) - base);
+                bases[segmentCount] = base;
+                firstDocs[segmentCount] = doc;
+                segmentCount++;
+                doc = last;
+            }
+            return new ProfileStore(n, offsets, names,
+                java.util.Arrays.copyOf(segments, segmentCount),
+                java.util.Arrays.copyOf(bases, segmentCount),
+                java.util.Arrays.copyOf(firstDocs, segmentCount));
+        }
+    }
+
+    /**
+     * 文档数量
+     */
+    public int size() {
+        return docCount;
+    }
+
+    /**
+     * 第 i 个文档的名称
+     */
+    public String name(int i) {
+        checkIndex(i);
+        int from = names.getInt(4 * i);
+        int to = names.getInt(4 * (i + 1));
+        byte[] bytes = new byte[to - from];
+        names.duplicate().position(namesDataStart + from).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 第 i 个文档画像的视图（不复制记录数据；只读取文件头部的几个字段，创建开销很小）
+     */
+    public DocumentProfile profile(int i) {
+        checkIndex(i);
+        int s = segmentOf(i);
+        ByteBuffer buf = segments[s].duplicate();
+        buf.position((int) (offsets.get(i) - segmentBase[s]));
+        return DocumentProfile.readFrom(buf);
+    }
+
+    private int segmentOf(int doc) {
+        int lo = 0;
+        int hi = segmentFirstDoc.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segmentFirstDoc[mid] <= doc) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= docCount) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + docCount);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+}
@@ -0,0 +1,682 @@
+package Index;
+
+import Analyzer.DocumentProfile;
+import DataStructure.ArrayList;
+import DataStructure.HashMap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * 可增量更新的分段语料库索引（LSM 风格）
+ *
+ * - 新文档先进入内存段（memtable），达到 flushThreshold 篇后写成一个不可变的段文件（ProfileStore 格式）。
+ * - 同名文档再次加入视为更新：旧版本立即失效，新版本进入内存段。
+ * - 删除段内文档时记录墓碑 (名称, 代号)：它使代号更小的段中的同名文档失效，并立即写入清单文件。
+ * - 后台线程在段数达到 mergeFactor 时，挑选文档总数最少的 mergeFactor 个相邻段合并为一个，
+ *   合并时丢弃已失效的文档；只合并相邻段，保证“代号越大越新”的顺序不被打乱。
+ * - 每次修改都发布一个新的不可变快照；查询只读取开始时拿到的快照，
+ *   因此合并、刷盘、删除与查询可以并发进行，查询看到的始终是某一时刻的一致状态。
+ * - 段内画像是映射文件上的视图，不复制到堆上；只有倒排索引在堆上，且在该段第一次被查询时才构建，
+ *   之后缓存在段上。打开索引、刷盘和只做增删的命令行调用因此不会为每个段重建倒排索引。
+ *
+ * 目录结构：manifest（文本清单：段列表与墓碑）+ segment-<id>.idx（段文件）。
+ * 清单总是先写临时文件再原子替换；不在清单中的段文件视为中断的刷盘/合并残留，打开时删除。
+ * 内存段没有预写日志：进程异常退出时尚未刷盘的文档会丢失，正常关闭（close）会先刷盘。
+ */
+public class SegmentedIndex implements AutoCloseable {
+
+    private static final String MANIFEST = "manifest";
+    private static final int MANIFEST_VERSION = 1;
+
+    private final Path dir;
+    private final int flushThreshold;
+    private final int mergeFactor;
+
+    // 以下写入状态均由 lock 保护
+    private final Object lock = new Object();
+    private final HashMap<Location> live = new HashMap<>();   // 名称 -> 当前有效版本的位置
+    private final HashMap<Long> tombstones = new HashMap<>(); // 名称 -> 墓碑代号
+    private ArrayList<Segment> segments = new ArrayList<>();  // 按代号升序
+    private String[] memNames;
+    private DocumentProfile[] memProfiles;
+    private int memCount;
+    private long nextGeneration = 1;
+    private long nextSegmentId = 1;
+    private boolean merging;
+    private boolean mergeBlocked;
+    private boolean closed;
+
+    private volatile Snapshot current;
+    private final Thread merger;
+
+    private SegmentedIndex(Path dir, int flushThreshold, int mergeFactor) {
+        this.dir = dir;
+        this.flushThreshold = flushThreshold;
+        this.mergeFactor = mergeFactor;
+        this.memNames = new String[flushThreshold];
+        this.memProfiles = new DocumentProfile[flushThreshold];
+        this.merger = new Thread(this::mergeLoop, "segment-merger");
+        this.merger.setDaemon(true);
+    }
+
+    /**
+     * 打开（或新建）索引目录并启动后台合并线程
+     * @param flushThreshold 内存段达到多少篇文档时刷盘
+     * @param mergeFactor 段数达到多少时触发一次合并（至少为 2）
+     */
+    public static SegmentedIndex open(Path dir, int flushThreshold, int mergeFactor) throws IOException {
+        if (flushThreshold <= 0 || mergeFactor < 2) {
+            throw new IllegalArgumentException("flushThreshold must be positive and mergeFactor >= 2");
+        }
+        Files.createDirectories(dir);
+        SegmentedIndex index = new SegmentedIndex(dir, flushThreshold, mergeFactor);
+        synchronized (index.lock) {
+            index.load();
+            index.publish();
+        }
+        index.merger.start();
+        return index;
+    }
+
+    /**
+     * 加入（或更新）一篇文档
+     */
+    public void add(String name, DocumentProfile profile) throws IOException {
+        if (name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("document name must not contain line breaks: " + name);
+        }
+        synchronized (lock) {
+            checkOpen();
+            Location old = live.get(name);
+            if (old != null) {
+                kill(old);
+                if (old.segmentId() != Location.MEMTABLE) {
+                    // 段内旧版本需要墓碑，否则新版本在刷盘前被删除时旧版本会在重新打开后复活
+                    tombstones.put(name, nextGeneration);
+                }
+            }
+            memNames[memCount] = name;
+            memProfiles[memCount] = profile;
+            live.put(name, new Location(Location.MEMTABLE, memCount));
+            memCount++;
+            if (memCount >= flushThreshold) {
+                flushLocked();
+            } else {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * 删除一篇文档
+     * @return 文档存在并被删除时返回 true
+     */
+    public boolean remove(String name) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            Location old = live.remove(name);
+            if (old == null) {
+                return false;
+            }
+            kill(old);
+            if (old.segmentId() != Location.MEMTABLE) {
+                // 内存段的代号即下一个段的代号：墓碑使之前所有段中的同名文档失效
+                tombstones.put(name, nextGeneration);
+            }
+            if (tombstones.containsKey(name)) {
+                writeManifest();
+            }
+            publish();
+            return true;
+        }
+    }
+
+    /**
+     * 立即把内存段写成段文件
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            flushLocked();
+        }
+    }
+
+    /**
+     * 当前快照（不可变，可在任意线程中长期持有）
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * 阻塞直到后台合并全部完成（段数小于 mergeFactor）
+     */
+    public void awaitMerges() throws InterruptedException {
+        synchronized (lock) {
+            while (merging || (!mergeBlocked && pickMerge() != null)) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * 刷盘、等待合并完成并停止后台线程
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            flushLocked();
+        }
+        try {
+            awaitMerges();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            merger.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------------------------------- 写入路径（持有 lock）
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("index is closed");
+        }
+    }
+
+    /**
+     * 使某个位置上的文档失效：段内文档复制并修改存活位图，内存段文档直接移除
+     */
+    private void kill(Location location) {
+        if (location.segmentId() == Location.MEMTABLE) {
+            int idx = location.index();
+            String[] names = new String[flushThreshold];
+            DocumentProfile[] profiles = new DocumentProfile[flushThreshold];
+            System.arraycopy(memNames, 0, names, 0, idx);
+            System.arraycopy(memProfiles, 0, profiles, 0, idx);
+            System.arraycopy(memNames, idx + 1, names, idx, memCount - idx - 1);
+            System.arraycopy(memProfiles, idx + 1, profiles, idx, memCount - idx - 1);
+            // 旧数组仍被已发布的快照引用，因此换成新数组而不是原地移动
+            memNames = names;
+            memProfiles = profiles;
+            memCount--;
+            for (int i = idx; i < memCount; i++) {
+                live.put(memNames[i], new Location(Location.MEMTABLE, i));
+            }
+            return;
+        }
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            if (segment.id == location.segmentId()) {
+                segments.set(s, segment.without(location.index()));
+                return;
+            }
+        }
+    }
+
+    private void flushLocked() throws IOException {
+        if (memCount == 0) {
+            return;
+        }
+        long id = nextSegmentId++;
+        long generation = nextGeneration++;
+        String[] names = java.util.Arrays.copyOf(memNames, memCount);
+        DocumentProfile[] profiles = java.util.Arrays.copyOf(memProfiles, memCount);
+        Path file = segmentFile(id);
+        ProfileStore.write(file, names, profiles);
+        Segment segment = Segment.load(id, generation, file);
+        segments.append(segment);
+        for (int i = 0; i < names.length; i++) {
+            live.put(names[i], new Location(id, i));
+        }
+        memNames = new String[flushThreshold];
+        memProfiles = new DocumentProfile[flushThreshold];
+        memCount = 0;
+        writeManifest();
+        publish();
+        mergeBlocked = false;
+        lock.notifyAll();
+    }
+
+    private void publish() {
+        current = new Snapshot(segments.toArray(new Segment[0]), memNames, memProfiles, memCount);
+    }
+
+    // ---------------------------------------------------------------- 合并
+
+    /**
+     * 选出待合并的相邻段：段数达到 mergeFactor 时，取存活文档总数最少的 mergeFactor 个相邻段
+     * @return 窗口起点，无需合并时返回 null
+     */
+    private Integer pickMerge() {
+        int n = segments.size();
+        if (closed || n < mergeFactor) {
+            return null;
+        }
+        int best = 0;
+        long bestCost = Long.MAX_VALUE;
+        for (int start = 0; start + mergeFactor <= n; start++) {
+            long cost = 0;
+            for (int s = start; s < start + mergeFactor; s++) {
+                cost += segments.get(s).liveCount;
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = start;
+            }
+        }
+        return best;
+    }
+
+    private void mergeLoop() {
+        while (true) {
+            Segment[] window;
+            long id;
+            synchronized (lock) {
+                Integer start;
+                while ((start = mergeBlocked ? null : pickMerge()) == null) {
+                    if (closed) return;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                window = new Segment[mergeFactor];
+                for (int s = 0; s < mergeFactor; s++) {
+                    window[s] = segments.get(start + s);
+                }
+                id = nextSegmentId++;
+                merging = true;
+            }
+            try {
+                // 读取与写入新段都在锁外进行，期间查询和写入照常进行
+                ArrayList<String> names = new ArrayList<>();
+                ArrayList<DocumentProfile> profiles = new ArrayList<>();
+                ArrayList<Segment> sources = new ArrayList<>();
+                ArrayList<Integer> sourceIndexes = new ArrayList<>();
+                for (Segment segment : window) {
+                    for (int i = 0; i < segment.store.size(); i++) {
+                        if (!segment.alive[i]) continue;
+                        names.append(segment.store.name(i));
+                        profiles.append(segment.store.profile(i));
+                        sources.append(segment);
+                        sourceIndexes.append(i);
+                    }
+                }
+                Path file = segmentFile(id);
+                ProfileStore.write(file, names.toArray(new String[0]), profiles.toArray(new DocumentProfile[0]));
+                // 打开新段文件；窗口中已有段被查询过（倒排索引已构建）时，新段的倒排索引也在这里提前建好，
+                // 锁内只补记存活位图并替换段列表
+                ProfileStore store = ProfileStore.open(file);
+                Postings postings = new Postings(store);
+                for (Segment segment : window) {
+                    if (segment.postings.built()) {
+                        postings.get();
+                        break;
+                    }
+                }
+                synchronized (lock) {
+                    install(window, id, file, store, postings, sources, sourceIndexes);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("segment merge failed: " + e);
+                synchronized (lock) {
+                    mergeBlocked = true; // 下一次刷盘后再重试
+                }
+            } finally {
+                synchronized (lock) {
+                    merging = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 用合并结果替换窗口中的段；合并期间发生的删除/更新通过比对 live 表补记到新段的存活位图上
+     */
+    private void install(Segment[] window, long id, Path file, ProfileStore store, Postings postings,
+                         ArrayList<Segment> sources, ArrayList<Integer> sourceIndexes) throws IOException {
+        int first = -1;
+        for (int s = 0; s < segments.size(); s++) {
+            if (segments.get(s).id == window[0].id) {
+                first = s;
+                break;
+            }
+        }
+        boolean[] alive = new boolean[sources.size()];
+        for (int j = 0; j < alive.length; j++) {
+            Segment source = sources.get(j);
+            int local = sourceIndexes.get(j);
+            String name = source.store.name(local);
+            Location location = live.get(name);
+            alive[j] = location != null && location.segmentId() == source.id && location.index() == local;
+        }
+        long generation = window[window.length - 1].generation;
+        Segment merged = new Segment(id, generation, file, store, postings, alive);
+
+        ArrayList<Segment> next = new ArrayList<>();
+        for (int s = 0; s < first; s++) next.append(segments.get(s));
+        next.append(merged);
+        for (int s = first + window.length; s < segments.size(); s++) next.append(segments.get(s));
+        segments = next;
+        for (int j = 0; j < alive.length; j++) {
+            if (alive[j]) {
+                live.put(merged.store.name(j), new Location(id, j));
+            }
+        }
+
+        // 所有代号小于墓碑代号的段都已合并、且失效文档已全部物理删除时，墓碑不再需要
+        // （合并期间才失效的文档仍留在新段文件中，此时保留全部墓碑）
+        if (first == 0 && merged.liveCount == merged.store.size()) {
+            long nextGen = segments.size() > 1 ? segments.get(1).generation : Long.MAX_VALUE;
+            for (String name : tombstones.keys()) {
+                if (tombstones.get(name) <= nextGen) {
+                    tombstones.remove(name);
+                }
+            }
+        }
+
+        writeManifest();
+        publish();
+        // 旧段可能仍被尚未结束的查询快照引用：已建立的内存映射在文件删除后依然有效
+        for (Segment old : window) {
+            Files.deleteIfExists(old.file);
+        }
+    }
+
+    // ---------------------------------------------------------------- 清单
+
+    private Path segmentFile(long id) {
+        return dir.resolve("segment-" + id + ".idx");
+    }
+
+    private void writeManifest() throws IOException {
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write("version " + MANIFEST_VERSION + "\n");
+            w.write("next-segment " + nextSegmentId + "\n");
+            w.write("next-generation " + nextGeneration + "\n");
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                w.write("segment " + segment.id + " " + segment.generation + "\n");
+            }
+            for (String name : tombstones.keys()) {
+                w.write("tombstone " + tombstones.get(name) + " " + name + "\n");
+            }
+        }
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取清单、打开全部段，并按“代号更大者优先、墓碑生效”重建 live 表与存活位图
+     */
+    private void load() throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        ArrayList<long[]> listed = new ArrayList<>();
+        if (Files.exists(manifest)) {
+            try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ", 3);
+                    switch (parts[0]) {
+                        case "version":
+                            if (Integer.parseInt(parts[1]) != MANIFEST_VERSION) {
+                                throw new IOException("unsupported manifest version: " + parts[1]);
+                            }
+                            break;
+                        case "next-segment":
+                            nextSegmentId = Long.parseLong(parts[1]);
+                            break;
+                        case "next-generation":
+                            nextGeneration = Long.parseLong(parts[1]);
+                            break;
+                        case "segment":
+                            listed.append(new long[] {Long.parseLong(parts[1]), Long.parseLong(parts[2])});
+                            break;
+                        case "tombstone":
+                            tombstones.put(parts[2], Long.parseLong(parts[1]));
+                            break;
+                        default:
+                            throw new IOException("corrupt manifest line: " + line);
+                    }
+                }
+            }
+        }
+
+        // 先确定每个段的存活位图，再构建段对象（构建时统计存活数，倒排索引留到第一次查询）
+        ProfileStore[] stores = new ProfileStore[listed.size()];
+        boolean[][] alive = new boolean[listed.size()][];
+        for (int s = 0; s < listed.size(); s++) {
+            long id = listed.get(s)[0];
+            long generation = listed.get(s)[1];
+            stores[s] = ProfileStore.open(segmentFile(id));
+            alive[s] = new boolean[stores[s].size()];
+            for (int i = 0; i < alive[s].length; i++) {
+                String name = stores[s].name(i);
+                Long tombstone = tombstones.get(name);
+                if (tombstone != null && tombstone > generation) continue;
+                Location old = live.get(name);
+                if (old != null) {
+                    // 同名文档以代号更大（更晚）的段为准
+                    for (int t = 0; t <= s; t++) {
+                        if (listed.get(t)[0] == old.segmentId()) {
+                            alive[t][old.index()] = false;
+                        }
+                    }
+                }
+                alive[s][i] = true;
+                live.put(name, new Location(id, i));
+            }
+        }
+        for (int s = 0; s < listed.size(); s++) {
+            long id = listed.get(s)[0];
+            segments.append(new Segment(id, listed.get(s)[1], segmentFile(id), stores[s], alive[s]));
+        }
+
+        // 清理中断的刷盘/合并留下的段文件
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.idx*")) {
+            for (Path file : files) {
+                boolean referenced = false;
+                for (int s = 0; s < segments.size(); s++) {
+                    if (segments.get(s).file.getFileName().equals(file.getFileName())) {
+                        referenced = true;
+                        break;
+                    }
+                }
+                if (!referenced) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- 快照与段
+
+    /**
+     * 文档位置：段编号 + 段内下标；内存段使用 MEMTABLE 作为段编号
+     */
+    private record Location(long segmentId, int index) {
+        static final long MEMTABLE = -1;
+    }
+
+    /**
+     * 段的倒排索引：第一次查询时才在堆上构建，之后缓存；同一段文件的各个 Segment（删除时复制出的）共享同一个
+     */
+    static final class Postings {
+        private final ProfileStore store;
+        private volatile InvertedIndex index;
+
+        Postings(ProfileStore store) {
+            this.store = store;
+        }
+
+        boolean built() {
+            return index != null;
+        }
+
+        InvertedIndex get() {
+            InvertedIndex built = index;
+            if (built == null) {
+                synchronized (this) {
+                    built = index;
+                    if (built == null) {
+                        built = new InvertedIndex();
+                        for (int i = 0; i < store.size(); i++) {
+                            built.add(store.profile(i));
+                        }
+                        index = built;
+                    }
+                }
+            }
+            return built;
+        }
+    }
+
+    /**
+     * 不可变段：段文件映射 + 倒排索引（按需构建）+ 存活位图
+     * 存活位图发布后不再修改，删除时复制出新的 Segment。
+     */
+    static final class Segment {
+        final long id;
+        final long generation;
+        final Path file;
+        final ProfileStore store;
+        final Postings postings;
+        final boolean[] alive;
+        final int liveCount;
+
+        private Segment(long id, long generation, Path file, ProfileStore store, Postings postings, boolean[] alive) {
+            this.id = id;
+            this.generation = generation;
+            this.file = file;
+            this.store = store;
+            this.postings = postings;
+            this.alive = alive;
+            int count = 0;
+            for (boolean a : alive) {
+                if (a) count++;
+            }
+            this.liveCount = count;
+        }
+
+        private Segment(long id, long generation, Path file, ProfileStore store, boolean[] alive) {
+            this(id, generation, file, store, new Postings(store), alive);
+        }
+
+        /**
+         * 打开刚写出的段文件，全部文档存活
+         */
+        static Segment load(long id, long generation, Path file) throws IOException {
+            ProfileStore store = ProfileStore.open(file);
+            boolean[] alive = new boolean[store.size()];
+            java.util.Arrays.fill(alive, true);
+            return new Segment(id, generation, file, store, alive);
+        }
+
+        Segment without(int local) {
+            boolean[] copy = alive.clone();
+            copy[local] = false;
+            return new Segment(id, generation, file, store, postings, copy);
+        }
+    }
+
+    /**
+     * 某一时刻的只读视图
+     */
+    public static final class Snapshot {
+        private final Segment[] segments;
+        private final String[] memNames;
+        private final DocumentProfile[] memProfiles;
+        private final int memCount;
+
+        Snapshot(Segment[] segments, String[] memNames, DocumentProfile[] memProfiles, int memCount) {
+            this.segments = segments;
+            this.memNames = memNames;
+            this.memProfiles = memProfiles;
+            this.memCount = memCount;
+        }
+
+        /**
+         * 有效文档数量
+         */
+        public int size() {
+            int size = memCount;
+            for (Segment segment : segments) {
+                size += segment.liveCount;
+            }
+            return size;
+        }
+
+        /**
+         * 段数量（不含内存段）
+         */
+        public int segmentCount() {
+            return segments.length;
+        }
+
+        /**
+         * 第 s 个段的有效文档数 / 总文档数
+         */
+        public String describeSegment(int s) {
+            Segment segment = segments[s];
+            return "segment-" + segment.id + " gen=" + segment.generation
+                + " live=" + segment.liveCount + "/" + segment.store.size();
+        }
+
+        /**
+         * 内存段中的文档数量
+         */
+        public int memtableSize() {
+            return memCount;
+        }
+
+        /**
+         * top-k 查询：各段先用倒排索引按 seqSim 取 shortlist 个候选，内存段全部参与，
+         * 候选再用 scorer 精确打分，返回得分最高的 k 个
+         */
+        public Result[] search(DocumentProfile query, int k, int shortlist, double[] orderWeights,
+                               ToDoubleBiFunction<DocumentProfile, DocumentProfile> scorer) {
+            ArrayList<Result> results = new ArrayList<>();
+            for (Segment segment : segments) {
+                int dead = segment.store.size() - segment.liveCount;
+                InvertedIndex.Hit[] hits = segment.postings.get().search(query, shortlist + dead, orderWeights, 1.0);
+                int taken = 0;
+                for (InvertedIndex.Hit hit : hits) {
+                    if (!segment.alive[hit.doc()]) continue;
+                    if (taken++ == shortlist) break;
+                    results.append(new Result(segment.store.name(hit.doc()),
+                        scorer.applyAsDouble(query, segment.store.profile(hit.doc()))));
+                }
+            }
+            for (int i = 0; i < memCount; i++) {
+                results.append(new Result(memNames[i], scorer.applyAsDouble(query, memProfiles[i])));
+            }
+            Result[] all = results.toArray(new Result[0]);
+            java.util.Arrays.sort(all, (a, b) -> Double.compare(b.score(), a.score()));
+            return java.util.Arrays.copyOf(all, Math.min(k, all.length));
+        }
+    }
+
+    /**
+     * 查询结果：文档名称与得分
+     */
+    public record Result(String name, double score) {}
+}
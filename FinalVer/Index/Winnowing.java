@@ -0,0 +1,144 @@
+package Index;
+
+import Analyzer.Lexer;
+import Analyzer.Preprocessor;
+import Analyzer.TokenStream;
+import Constants.JavaConstants;
+
+/**
+ * 基于 winnowing 的文档指纹（MOSS 的做法，输入换成归一化 token 流）
+ *
+ * 1. 归一化：剔除字面量，所有标识符统一为同一个编码（重命名变量不影响指纹），
+ *    关键字与运算符保留原编码。
+ * 2. 对每个起点计算连续 k 个 token 的哈希。
+ * 3. 在每个长度为 w 的哈希窗口中选出最小值（并列时取最右边的），相邻窗口选中同一位置时只记一次。
+ *
+ * 性质：两份文档中长度 ≥ w + k - 1 个 token 的相同片段至少会产生一个相同指纹；
+ * 短于 k 个 token 的相同片段不会产生指纹（视为噪声）。
+ * 平均每 (w + 1) / 2 个 k-gram 选出一个指纹，每个指纹带有其覆盖的源码行范围。
+ */
+public final class Winnowing {
+
+    /** 默认 k-gram 长度（token 数） */
+    public static final int DEFAULT_K = 8;
+    /** 默认窗口大小 */
+    public static final int DEFAULT_W = 4;
+
+    // 所有标识符归一化后的统一编码
+    private static final int IDENTIFIER = JavaConstants.IDENTIFIER_CODE_BASE;
+
+    private Winnowing() {
+    }
+
+    /**
+     * 对源代码做预处理与词法分析后计算指纹
+     */
+    public static Fingerprints fingerprint(String code, int k, int w) {
+        return fingerprint(Lexer.tokenizeCodes(Preprocessor.process(code)), k, w);
+    }
+
+    /**
+     * 对整数 Token 流计算指纹
+     */
+    public static Fingerprints fingerprint(TokenStream tokens, int k, int w) {
+        if (k <= 0 || w <= 0) {
+            throw new IllegalArgumentException("k and w must be positive: k=" + k + " w=" + w);
+        }
+        // 归一化 token 序列，同时保留每个 token 的行号
+        int[] codes = new int[tokens.size()];
+        int[] lines = new int[tokens.size()];
+        int length = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            int code = tokens.codeAt(i);
+            if (JavaConstants.isLiteralCode(code)) continue;
+            codes[length] = JavaConstants.isIdentifierCode(code) ? IDENTIFIER : code;
+            lines[length++] = tokens.lineAt(i);
+        }
+
+        int grams = length - k + 1;
+        if (grams <= 0) {
+            return new Fingerprints(new long[0], new int[0], new int[0], 0);
+        }
+        long[] hashes = new long[grams];
+        for (int i = 0; i < grams; i++) {
+            long h = 0;
+            for (int j = 0; j < k; j++) {
+                h = (h + codes[i + j] + 1) * 0x9E3779B97F4A7C15L;
+            }
+            hashes[i] = mix(h);
+        }
+
+        // winnowing：窗口不足 w 个时整段视为一个窗口
+        int window = Math.min(w, grams);
+        long[] selected = new long[grams];
+        int[] startLines = new int[grams];
+        int[] endLines = new int[grams];
+        int size = 0;
+        int last = -1;
+        for (int start = 0; start + window <= grams; start++) {
+            int min;
+            if (last >= start) {
+                // 上一个最小值仍在窗口内，只需与新进入的元素比较
+                int entering = start + window - 1;
+                min = hashes[entering] <= hashes[last] ? entering : last;
+            } else {
+                min = start;
+                for (int i = start + 1; i < start + window; i++) {
+                    if (hashes[i] <= hashes[min]) {
+                        min = i;
+                    }
+                }
+            }
+            if (min != last) {
+                selected[size] = hashes[min];
+                startLines[size] = lines[min];
+                endLines[size] = lines[min + k - 1];
+                size++;
+                last = min;
+            }
+        }
+        return new Fingerprints(selected, startLines, endLines, size);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 单份文档的指纹序列（按在文档中的位置排列，可能含重复哈希）
+     */
+    public static final class Fingerprints {
+        private final long[] hashes;
+        private final int[] startLines;
+        private final int[] endLines;
+        private final int size;
+
+        Fingerprints(long[] hashes, int[] startLines, int[] endLines, int size) {
+            this.hashes = hashes;
+            this.startLines = startLines;
+            this.endLines = endLines;
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long hashAt(int i) {
+            return hashes[i];
+        }
+
+        /** 第 i 个指纹所覆盖 k-gram 的起始行 */
+        public int startLineAt(int i) {
+            return startLines[i];
+        }
+
+        /** 第 i 个指纹所覆盖 k-gram 的结束行 */
+        public int endLineAt(int i) {
+            return endLines[i];
+        }
+    }
+}
@@ -2,17 +2,22 @@ import java.io.*;
 
 /**
  * 测试入口
- * 读取两个Java文件并计算相似度
+ * 读取两个Java文件并计算相似度；corpus 子命令计算整个目录的两两相似度矩阵，
+ * index 子命令生成持久化画像文件，query 子命令在目录中查找与给定文件最相似的提交，segments 子命令维护增量分段索引，
+ * winnow 子命令基于指纹做克隆检测，synth 子命令生成带真值的合成抄袭语料库
  */
 public class Main {
 
     public static void main(String[] args) {
-        if (args.length < 2) {
-            System.out.println("用法: java Main <file1.java> <file2.java>");
-            return;
-        }
-
         try {
+            if (args.length >= 1 && runSubcommand(args[0], java.util.Arrays.copyOfRange(args, 1, args.length))) {
+                return;
+            }
+            if (args.length < 2) {
+                usage();
+                return;
+            }
+
             String code1 = readFile(args[0]);
             String code2 = readFile(args[1]);
 
@@ -21,10 +26,65 @@ public class Main {
             System.out.println("文件1: " + args[0]);
             System.out.println("文件2: " + args[1]);
             System.out.printf("相似度: %.4f (%.2f%%)\n", similarity, similarity * 100);
-
         } catch (IOException e) {
             System.out.println("读取文件失败: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            // 缺少选项值、数值格式错误（NumberFormatException）等参数错误
+            System.out.println("参数错误: " + e.getMessage());
+            usage();
+            System.exit(2);
+        }
+    }
+
+    /**
+     * 打印各子命令的用法
+     */
+    private static void usage() {
+        System.out.println("用法: java Main <file1.java> <file2.java>");
+        System.out.println("      java Main corpus <dir>... [--format csv|jsonl] [--threshold t] [--out file] [--threads n]");
+        System.out.println("      java Main index <dir>... --out corpus.idx [--threads n]");
+        System.out.println("      java Main query <file.java> <dir>... [--top k] [--shortlist m] [--max-df f] [--threads n]");
+        System.out.println("      java Main segments <indexDir> add|remove|query|stats ...");
+        System.out.println("      java Main winnow <dir>... [--k n] [--w n] [--min-shared n] [--max-df n] [--format csv|jsonl] [--threads n]");
+        System.out.println("      java Main synth <seedDir>... --out <dir> [--families n] [--variants m] [--lines min-max] [--rate p] [--seed s]");
+    }
+
+    /**
+     * 执行子命令，参数为子命令名之后的部分；command 不是子命令时返回 false，按两个文件的比较处理
+     */
+    private static boolean runSubcommand(String command, String[] args) throws IOException {
+        switch (command) {
+            case "corpus":
+                Corpus.run(args);
+                return true;
+            case "index":
+                Corpus.index(args);
+                return true;
+            case "query":
+                Query.run(args);
+                return true;
+            case "segments":
+                Segments.run(args);
+                return true;
+            case "winnow":
+                Winnow.run(args);
+                return true;
+            case "synth":
+                Synth.run(args);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 取出选项 option 的值 args[index]，缺少时抛出 IllegalArgumentException；各子命令解析参数时共用
+     */
+    static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for " + option);
         }
+        return args[index];
     }
 
     /**
@@ -0,0 +1,111 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import Analyzer.DocumentProfile;
+import DataStructure.ArrayList;
+import Index.InvertedIndex;
+import Index.ProfileStore;
+
+/**
+ * 查询模式：在语料库中查找与给定文件最相似的 k 份提交
+ *
+ * 用法：
+ *   java Main query <file.java> <dir>... [--top k] [--shortlist m] [--max-df f] [--threads n]
+ *   java Main query <file.java> --index corpus.idx [...]
+ *
+ * 流程：
+ * 1. 为语料库中所有文件构建画像，并加入 n-gram 倒排索引。
+ * 2. 用倒排索引取得 seqSim 最高的 m 个候选（只访问与查询文件共享 gram 的文档）。
+ * 3. 对候选用 SimilarityCalculator 精确打分，输出得分最高的 k 个。
+ * 与查询文件不共享任何 gram 的文档不会进入候选，这类文档的综合得分通常也很低。
+ */
+public class Query {
+
+    public static void run(String[] args) throws IOException {
+        String queryFile = null;
+        ArrayList<Path> roots = new ArrayList<>();
+        int top = 10;
+        int shortlist = 100;
+        double maxDocFrequency = 1.0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String store = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--top":
+                    top = Integer.parseInt(Main.requireValue(args, ++i, "--top"));
+                    break;
+                case "--shortlist":
+                    shortlist = Integer.parseInt(Main.requireValue(args, ++i, "--shortlist"));
+                    break;
+                case "--max-df":
+                    maxDocFrequency = Double.parseDouble(Main.requireValue(args, ++i, "--max-df"));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(Main.requireValue(args, ++i, "--threads"));
+                    break;
+                case "--index":
+                    store = Main.requireValue(args, ++i, "--index");
+                    break;
+                default:
+                    if (queryFile == null) {
+                        queryFile = args[i];
+                    } else {
+                        roots.append(Paths.get(args[i]));
+                    }
+            }
+        }
+        if (queryFile == null || roots.isEmpty() == (store == null) || top <= 0 || threads <= 0) {
+            System.out.println("用法: java Main query <file.java> <dir>... [--top k] [--shortlist m] [--max-df f] [--threads n]");
+            System.out.println("      java Main query <file.java> --index corpus.idx [...]");
+            return;
+        }
+        shortlist = Math.max(shortlist, top);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long t0 = System.nanoTime();
+            Path[] files;
+            DocumentProfile[] profiles;
+            if (store != null) {
+                ProfileStore profileStore = ProfileStore.open(Paths.get(store));
+                files = Corpus.storedNames(profileStore);
+                profiles = Corpus.loadAll(profileStore);
+            } else {
+                files = Corpus.listJavaFiles(roots);
+                profiles = Corpus.analyzeAll(pool, files);
+            }
+            InvertedIndex index = new InvertedIndex();
+            for (DocumentProfile profile : profiles) {
+                index.add(profile);
+            }
+            long t1 = System.nanoTime();
+
+            DocumentProfile query = DocumentProfile.build(Corpus.readFile(Paths.get(queryFile)));
+            InvertedIndex.Hit[] candidates = index.search(query, shortlist,
+                SimilarityCalculator.sequenceOrderWeights(), maxDocFrequency);
+            double[] scores = new double[candidates.length];
+            Integer[] order = new Integer[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                scores[i] = SimilarityCalculator.calculate(query, profiles[candidates[i].doc()]);
+                order[i] = i;
+            }
+            java.util.Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+            long t2 = System.nanoTime();
+
+            for (int r = 0; r < Math.min(top, order.length); r++) {
+                int i = order[r];
+                System.out.printf(Locale.US, "%2d  %.4f  (seq %.4f)  %s%n",
+                    r + 1, scores[i], candidates[i].score(), files[candidates[i].doc()]);
+            }
+            System.err.printf(Locale.US, "files=%d postings=%d entries=%d candidates=%d index=%.2fs query=%.1fms%n",
+                files.length, index.postingListCount(), index.postingEntryCount(), candidates.length,
+                (t1 - t0) / 1e9, (t2 - t1) / 1e6);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+import Analyzer.DocumentProfile;
+import DataStructure.ArrayList;
+import Index.SegmentedIndex;
+
+/**
+ * 增量索引模式：维护一个可随时加入/删除文档的分段索引目录（见 Index.SegmentedIndex）
+ *
+ * 用法：
+ *   java Main segments <indexDir> add <file-or-dir>... [--flush n] [--merge-factor m]
+ *   java Main segments <indexDir> remove <name>...
+ *   java Main segments <indexDir> query <file.java> [--top k] [--shortlist m]
+ *   java Main segments <indexDir> stats
+ *
+ * 文档以文件路径为名称；再次 add 同一路径即为更新。
+ * 每次命令结束时刷盘并等待后台合并完成。
+ */
+public class Segments {
+
+    public static void run(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+        Path dir = Paths.get(args[0]);
+        String command = args[1];
+        ArrayList<String> operands = new ArrayList<>();
+        int flush = 1000;
+        int mergeFactor = 4;
+        int top = 10;
+        int shortlist = 100;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--flush":
+                    flush = Integer.parseInt(Main.requireValue(args, ++i, "--flush"));
+                    break;
+                case "--merge-factor":
+                    mergeFactor = Integer.parseInt(Main.requireValue(args, ++i, "--merge-factor"));
+                    break;
+                case "--top":
+                    top = Integer.parseInt(Main.requireValue(args, ++i, "--top"));
+                    break;
+                case "--shortlist":
+                    shortlist = Integer.parseInt(Main.requireValue(args, ++i, "--shortlist"));
+                    break;
+                default:
+                    operands.append(args[i]);
+            }
+        }
+
+        try (SegmentedIndex index = SegmentedIndex.open(dir, flush, mergeFactor)) {
+            long t0 = System.nanoTime();
+            switch (command) {
+                case "add": {
+                    ArrayList<Path> roots = new ArrayList<>();
+                    for (int i = 0; i < operands.size(); i++) {
+                        roots.append(Paths.get(operands.get(i)));
+                    }
+                    Path[] files = Corpus.listJavaFiles(roots);
+                    for (Path file : files) {
+                        index.add(file.toString(), DocumentProfile.build(Corpus.readFile(file)));
+                    }
+                    System.err.printf(Locale.US, "added=%d%n", files.length);
+                    break;
+                }
+                case "remove": {
+                    int removed = 0;
+                    for (int i = 0; i < operands.size(); i++) {
+                        if (index.remove(operands.get(i))) removed++;
+                    }
+                    System.err.printf(Locale.US, "removed=%d%n", removed);
+                    break;
+                }
+                case "query": {
+                    if (operands.size() != 1) {
+                        usage();
+                        return;
+                    }
+                    DocumentProfile query = DocumentProfile.build(Corpus.readFile(Paths.get(operands.get(0))));
+                    SegmentedIndex.Result[] results = index.snapshot().search(query, top, Math.max(top, shortlist),
+                        SimilarityCalculator.sequenceOrderWeights(), SimilarityCalculator::calculate);
+                    for (int r = 0; r < results.length; r++) {
+                        System.out.printf(Locale.US, "%2d  %.4f  %s%n", r + 1, results[r].score(), results[r].name());
+                    }
+                    break;
+                }
+                case "stats":
+                    break;
+                default:
+                    usage();
+                    return;
+            }
+            index.flush();
+            try {
+                index.awaitMerges();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            SegmentedIndex.Snapshot snapshot = index.snapshot();
+            for (int s = 0; s < snapshot.segmentCount(); s++) {
+                System.err.println(snapshot.describeSegment(s));
+            }
+            System.err.printf(Locale.US, "documents=%d segments=%d time=%.2fs%n",
+                snapshot.size(), snapshot.segmentCount(), (System.nanoTime() - t0) / 1e9);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("用法: java Main segments <indexDir> add <file-or-dir>... [--flush n] [--merge-factor m]");
+        System.out.println("      java Main segments <indexDir> remove <name>...");
+        System.out.println("      java Main segments <indexDir> query <file.java> [--top k] [--shortlist m]");
+        System.out.println("      java Main segments <indexDir> stats");
+    }
+}
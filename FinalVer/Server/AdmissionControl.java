@@ -0,0 +1,380 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 计算类请求的准入控制
+ *
+ * 每个请求按输入长度（请求体字节数）估算成本，分两步准入：
+ * 1. {@link #admit}：占用一个排队名额并把成本计入预算。排队名额已满或预算不足时立即拒绝（429），
+ *    此时还没有读取请求体，拒绝几乎不花费任何资源。
+ * 2. {@link Ticket#start}：读完请求体、确实需要计算时，等待一个计算槽位（共 maxConcurrent 个），
+ *    超过 maxWaitMillis 仍未轮到则放弃（503）。
+ * 并行计算的请求（批量、流式）再用 {@link Ticket#widen} 借用空闲槽位，同时使用的线程数不超过持有的槽位数，
+ * 因此全部请求合计占用的计算线程始终不超过 maxConcurrent。
+ * 流式请求的输出没有长度上限，不能一直占着槽位：每块算完用 {@link Ticket#pause} 全部归还，
+ * 下一块再用 {@link Ticket#resume} 重新排队，与其他请求按公平顺序分时使用槽位。
+ * 后台任务不经过准入，只用 {@link #borrowIdle} 在没有请求排队时借用空闲槽位，一小段算完即归还，
+ * 因此后台任务同样计入 maxConcurrent，并且总是让位于交互请求。
+ * 被接受的请求最多排队 maxWaitMillis，因此过载时它们的延迟上限保持不变，多余的请求被快速拒绝而不是无限排队。
+ *
+ * 拒绝时给出 Retry-After 建议：按当前排队与计算中的请求数和最近的平均计算耗时估算排空所需的秒数。
+ */
+final class AdmissionControl {
+
+    /** 准入被拒绝：HTTP 状态码与建议的重试间隔（秒） */
+    static final class Rejected extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final long retryAfterSeconds;
+
+        Rejected(int status, String message, long retryAfterSeconds) {
+            super(message, null, false, false);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    /** 请求体超过大小上限 */
+    static final class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(long limit) {
+            super("Request body exceeds " + limit + " bytes");
+        }
+    }
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxCost;
+    private final long maxWaitMillis;
+    private final Semaphore slots;
+
+    // 以下状态由 this 保护
+    private int waiting;
+    private int running;
+    private long reservedCost;
+    private double averageMillis = 50;
+    private long admitted;
+    private long completed;
+    private long rejectedQueueFull;
+    private long rejectedBudget;
+    private long rejectedTimeout;
+    private long rejectedTooLarge;
+
+    /**
+     * @param maxConcurrent 同时计算的请求数上限
+     * @param maxQueued 已准入但尚未开始计算的请求数上限
+     * @param maxCost 已准入请求的估算成本（字节）之和上限
+     * @param maxWaitMillis 等待计算槽位的最长时间
+     */
+    AdmissionControl(int maxConcurrent, int maxQueued, long maxCost, long maxWaitMillis) {
+        if (maxConcurrent <= 0 || maxQueued < 0 || maxCost <= 0 || maxWaitMillis < 0) {
+            throw new IllegalArgumentException("Illegal admission limits: concurrent=" + maxConcurrent
+                + " queued=" + maxQueued + " cost=" + maxCost + " wait=" + maxWaitMillis);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxCost = maxCost;
+        this.maxWaitMillis = maxWaitMillis;
+        this.slots = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * 预约排队名额与成本预算
+     * @param cost 估算成本（请求体字节数）
+     * @throws Rejected 排队已满或预算不足（429）
+     */
+    synchronized Ticket admit(long cost) throws Rejected {
+        if (waiting >= maxQueued + Math.max(0, maxConcurrent - running)) {
+            rejectedQueueFull++;
+            throw new Rejected(429, "Too many queued requests", retryAfterSeconds());
+        }
+        if (reservedCost + cost > maxCost && reservedCost > 0) {
+            rejectedBudget++;
+            throw new Rejected(429, "Server work budget exhausted", retryAfterSeconds());
+        }
+        waiting++;
+        reservedCost += cost;
+        admitted++;
+        return new Ticket(cost);
+    }
+
+    /**
+     * 记录一次因请求体过大而拒绝的请求（413）
+     */
+    synchronized void recordTooLarge() {
+        rejectedTooLarge++;
+    }
+
+    /**
+     * 包装请求体：读取超过 limit 字节时抛出 BodyTooLargeException
+     */
+    static InputStream limit(InputStream in, long limit) {
+        return new FilterInputStream(in) {
+            private long remaining = limit;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0 && --remaining < 0) throw new BodyTooLargeException(limit);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0 && (remaining -= n) < 0) throw new BodyTooLargeException(limit);
+                return n;
+            }
+        };
+    }
+
+    /**
+     * 一次准入：先 {@link #start} 等待计算槽位，用完后 close 归还（未 start 也必须 close）
+     */
+    final class Ticket implements AutoCloseable {
+        private final long cost;
+        private boolean started;
+        private boolean closed;
+        // 以下状态由 AdmissionControl.this 保护
+        // 当前持有的槽位数（start/resume 占用的一个加上 widen 借用的），pause 之后为 0
+        private int held;
+        private long holdStartNanos;
+        private long heldNanos;
+
+        private Ticket(long cost) {
+            this.cost = cost;
+        }
+
+        /**
+         * 等待计算槽位；重复调用无效果
+         * @throws Rejected 等待超时（503）
+         */
+        void start() throws Rejected, InterruptedIOException {
+            if (started) return;
+            boolean acquired;
+            try {
+                acquired = slots.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for a compute slot");
+            }
+            synchronized (AdmissionControl.this) {
+                if (!acquired) {
+                    rejectedTimeout++;
+                    throw new Rejected(503, "Server busy", retryAfterSeconds());
+                }
+                waiting--;
+                running++;
+                held = 1;
+                holdStartNanos = System.nanoTime();
+            }
+            started = true;
+        }
+
+        /**
+         * 在已持有的槽位之外不等待地借用空闲槽位，使持有数尽量达到 wanted。
+         * 按公平顺序借用：有请求正在排队等待槽位时一个也不借，空闲槽位先让给排队的请求。
+         * @return 当前持有的槽位数，即本请求可以同时使用的计算线程数（未 start 时为 0）
+         */
+        int widen(int wanted) {
+            int extra = 0;
+            synchronized (AdmissionControl.this) {
+                if (held == 0 || closed) return held;
+                wanted -= held;
+            }
+            try {
+                while (extra < wanted && slots.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                    extra++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (AdmissionControl.this) {
+                if (!closed) {
+                    held += extra;
+                    return held;
+                }
+            }
+            // 借用期间请求已结束
+            if (extra > 0) slots.release(extra);
+            return 0;
+        }
+
+        /**
+         * 归还 widen 借用的槽位，只保留 start 占用的一个
+         */
+        void narrow() {
+            int extra;
+            synchronized (AdmissionControl.this) {
+                extra = Math.max(0, held - 1);
+                held -= extra;
+            }
+            if (extra > 0) slots.release(extra);
+        }
+
+        /**
+         * 归还当前持有的全部槽位（start 之后才有效果）；之后需要计算时用 {@link #resume} 重新占用。
+         * 可以在计算线程上调用；与 close 并发或重复调用都只归还一次。
+         */
+        void pause() {
+            int release;
+            synchronized (AdmissionControl.this) {
+                release = held;
+                if (release == 0) return;
+                held = 0;
+                running--;
+                heldNanos += System.nanoTime() - holdStartNanos;
+            }
+            slots.release(release);
+        }
+
+        /**
+         * pause 之后重新等待一个计算槽位，再用 widen 借用至多 wanted 个；仍持有槽位时不做任何事。
+         * 请求已经开始输出，无法再以 503 拒绝，因此不限等待时间，按公平顺序排在已排队的请求之后。
+         * @return 当前持有的槽位数（请求已结束时为 0）
+         */
+        int resume(int wanted) throws InterruptedIOException {
+            synchronized (AdmissionControl.this) {
+                if (!started || closed) return 0;
+                if (held > 0) return held;
+            }
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for a compute slot");
+            }
+            synchronized (AdmissionControl.this) {
+                if (closed) {
+                    slots.release();
+                    return 0;
+                }
+                running++;
+                held = 1;
+                holdStartNanos = System.nanoTime();
+            }
+            return widen(wanted);
+        }
+
+        @Override
+        public void close() {
+            int release;
+            synchronized (AdmissionControl.this) {
+                if (closed) return;
+                closed = true;
+                release = held;
+                held = 0;
+                reservedCost -= cost;
+                if (started) {
+                    if (release > 0) {
+                        running--;
+                        heldNanos += System.nanoTime() - holdStartNanos;
+                    }
+                    completed++;
+                    // 平均计算耗时只计持有槽位的时间，流式请求暂停等待客户端的时间不计入
+                    double millis = heldNanos / 1e6;
+                    averageMillis += (millis - averageMillis) * 0.1;
+                } else {
+                    waiting--;
+                }
+            }
+            if (release > 0) slots.release(release);
+        }
+    }
+
+    synchronized int queueDepth() {
+        return waiting;
+    }
+
+    synchronized int running() {
+        return running;
+    }
+
+    /**
+     * 后台任务借用空闲槽位：没有已准入的请求在排队时，不等待地占用至多 wanted 个，
+     * 否则一个也不借。返回占用的槽位数（可能为 0），用完后必须用 {@link #giveBack} 归还。
+     * 借用的槽位不计入 running；请求一旦开始排队，后台任务归还之后就借不到槽位，直到队列清空。
+     */
+    int borrowIdle(int wanted) {
+        synchronized (this) {
+            if (waiting > 0) return 0;
+        }
+        int taken = 0;
+        try {
+            // 按公平顺序借用：有线程正在等待槽位时立即失败
+            while (taken < wanted && slots.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                taken++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return taken;
+    }
+
+    /**
+     * 归还 borrowIdle 借用的槽位
+     */
+    void giveBack(int count) {
+        if (count > 0) slots.release(count);
+    }
+
+    /**
+     * 被占用的计算槽位数（含批量与流式请求以及后台任务借用的槽位）
+     */
+    int slotsInUse() {
+        return maxConcurrent - slots.availablePermits();
+    }
+
+    synchronized long rejected() {
+        return rejectedQueueFull + rejectedBudget + rejectedTimeout + rejectedTooLarge;
+    }
+
+    synchronized long admitted() {
+        return admitted;
+    }
+
+    synchronized long completed() {
+        return completed;
+    }
+
+    synchronized long rejectedQueueFull() {
+        return rejectedQueueFull;
+    }
+
+    synchronized long rejectedBudget() {
+        return rejectedBudget;
+    }
+
+    synchronized long rejectedTimeout() {
+        return rejectedTimeout;
+    }
+
+    synchronized long rejectedTooLarge() {
+        return rejectedTooLarge;
+    }
+
+    /**
+     * 统计信息（JSON 对象）
+     */
+    synchronized String statsJson() {
+        return String.format(Locale.US, "{\"maxConcurrent\":%d,\"maxQueued\":%d,\"maxCost\":%d,\"maxWaitMillis\":%d,"
+                + "\"queueDepth\":%d,\"running\":%d,\"slotsInUse\":%d,\"reservedCost\":%d,\"averageMillis\":%.1f,"
+                + "\"admitted\":%d,\"completed\":%d,\"rejectedQueueFull\":%d,\"rejectedBudget\":%d,"
+                + "\"rejectedTimeout\":%d,\"rejectedTooLarge\":%d}",
+            maxConcurrent, maxQueued, maxCost, maxWaitMillis, waiting, running, slotsInUse(), reservedCost, averageMillis,
+            admitted, completed, rejectedQueueFull, rejectedBudget, rejectedTimeout, rejectedTooLarge);
+    }
+
+    // 按当前负载估算排空所需的秒数（至少 1 秒）
+    private long retryAfterSeconds() {
+        double drainMillis = (waiting + running) * averageMillis / maxConcurrent;
+        return Math.max(1, (long) Math.ceil(drainMillis / 1000));
+    }
+}
@@ -0,0 +1,379 @@
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Analyzer.DocumentProfile;
+import DataStructure.HashMap;
+import DataStructure.LinkedList;
+import DataStructure.LruCache;
+
+/**
+ * 异步比较任务：/api/jobs 提交的语料库比较在后台执行，客户端轮询进度并分页取结果
+ *
+ * 任务按提交顺序由一个调度线程逐个执行；每个任务的文档分析与打分提交到独立的任务线程池。
+ * 任务线程池的线程不另占 CPU：每一小段计算之前先向准入控制借用空闲的计算槽位（见 AdmissionControl#borrowIdle），
+ * 同时使用的线程数不超过借到的槽位数，算完立即归还；有交互请求排队或槽位全被占用时任务暂停等待，
+ * 因此后台任务只使用交互请求留下的空闲算力。
+ * 结果按请求中代码对的顺序写入预先分配的数组，已完成的前缀随时可以分页读取。
+ *
+ * 资源上限：
+ * - 排队与执行中的任务数不超过 maxActive，超出时拒绝（429）；
+ * - 所有保留任务的结果数组（每对 16 字节）合计不超过 maxBytes，必要时先淘汰最早结束的任务；
+ * - 结束（完成、失败或取消）的任务最多保留 retained 个、ttlMillis 毫秒，之后按 ID 查不到。
+ */
+final class JobManager {
+
+    /** 任务状态 */
+    enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    // 每次提交给任务线程池打分的代码对数，两块之间检查取消标志并更新进度
+    private static final int BLOCK = 4096;
+    // 每借到一个槽位打分的代码对数：借用时间保持在几十毫秒，排队的交互请求很快就能拿到槽位
+    private static final int SLICE_PER_SLOT = 256;
+    // 借不到空闲槽位时的重试间隔（毫秒）
+    private static final long IDLE_POLL_MILLIS = 10;
+    // 每个代码对占用的结果字节数：两个下标与一个 double
+    private static final long BYTES_PER_PAIR = 16;
+
+    /** 一个后台任务 */
+    static final class Job {
+        final String id;
+        private final int documents;
+        private final int[] pairs;
+        private final double[] scores;
+        private final long submittedNanos = System.nanoTime();
+
+        // 以下字段由调度线程写入，查询线程读取；batch（持有全部文档与画像）在任务结束后释放
+        private volatile PairBatch batch;
+        private volatile int distinct;
+        private volatile State state = State.QUEUED;
+        private volatile long done;
+        private volatile long startNanos;
+        // 文档分析结束、开始打分的时刻；剩余时间按打分速度估算，不计入分析耗时
+        private volatile long scoreStartNanos;
+        private volatile long finishNanos;
+        private volatile String error;
+        private volatile boolean cancelled;
+
+        private Job(String id, PairBatch batch) {
+            this.id = id;
+            this.batch = batch;
+            this.documents = batch.documentCount();
+            int m = (int) batch.pairCount();
+            this.pairs = new int[2 * m];
+            this.scores = new double[m];
+        }
+
+        State state() {
+            return state;
+        }
+
+        long pairCount() {
+            return scores.length;
+        }
+
+        long done() {
+            return done;
+        }
+
+        private long bytes() {
+            return BYTES_PER_PAIR * scores.length;
+        }
+
+        private boolean finished() {
+            State s = state;
+            return s == State.DONE || s == State.FAILED || s == State.CANCELLED;
+        }
+
+        /**
+         * 进度 JSON：已完成/总代码对数、已用时间与按当前速度估算的剩余时间（尚无法估算时为 null）
+         */
+        String statusJson() {
+            State s = state;
+            long now = System.nanoTime();
+            long m = scores.length;
+            long finished = done;
+            long start = startNanos;
+            long elapsed = start == 0 ? 0 : ((finishNanos != 0 ? finishNanos : now) - start) / 1_000_000;
+            String eta;
+            if (s == State.DONE) {
+                eta = "0";
+            } else if (s == State.RUNNING && finished > 0) {
+                double scoringMillis = (now - scoreStartNanos) / 1e6;
+                eta = Long.toString((long) (scoringMillis * (m - finished) / finished));
+            } else {
+                eta = "null";
+            }
+            StringBuilder json = new StringBuilder(256);
+            json.append("{\"id\":\"").append(id).append("\",\"state\":\"").append(s.name().toLowerCase(Locale.ROOT))
+                .append("\",\"documents\":").append(documents)
+                .append(",\"distinct\":").append(distinct)
+                .append(",\"pairs\":").append(m)
+                .append(",\"done\":").append(finished)
+                .append(",\"progress\":").append(String.format(Locale.US, "%.4f", m == 0 ? 1.0 : (double) finished / m))
+                .append(",\"queuedMillis\":").append(((start != 0 ? start : now) - submittedNanos) / 1_000_000)
+                .append(",\"elapsedMillis\":").append(elapsed)
+                .append(",\"etaMillis\":").append(eta);
+            if (error != null) {
+                json.append(",\"error\":\"").append(error).append('"');
+            }
+            return json.append('}').toString();
+        }
+
+        /**
+         * 结果分页：返回 [offset, offset + limit) 中已经算完的部分
+         */
+        String resultsJson(long offset, int limit) {
+            long available = done;
+            long end = Math.min(available, offset + limit);
+            StringBuilder json = new StringBuilder(96 + (int) Math.max(0, end - offset) * 48);
+            json.append("{\"id\":\"").append(id).append("\",\"offset\":").append(offset)
+                .append(",\"pairs\":").append(scores.length).append(",\"done\":").append(available)
+                .append(",\"results\":[");
+            for (long k = offset; k < end; k++) {
+                if (k > offset) json.append(',');
+                int index = (int) k;
+                json.append("{\"i\":").append(pairs[2 * index]).append(",\"j\":").append(pairs[2 * index + 1])
+                    .append(",\"similarity\":").append(String.format(Locale.US, "%.6f", scores[index])).append('}');
+            }
+            return json.append("]}").toString();
+        }
+    }
+
+    private final int maxActive;
+    private final long maxBytes;
+    private final int retained;
+    private final long ttlMillis;
+    private final LruCache<DocumentProfile> profiles;
+    private final AdmissionControl admission;
+    private final int threads;
+    private final ForkJoinPool workers;
+    private final ExecutorService scheduler;
+    private final SecureRandom random = new SecureRandom();
+
+    // 以下状态由 this 保护
+    private final HashMap<Job> jobs = new HashMap<>();
+    // 已结束的任务，按结束顺序排列，用于淘汰
+    private final LinkedList<Job> finished = new LinkedList<>();
+    private int active;
+    private long reservedBytes;
+    private long completed;
+
+    /**
+     * @param admission 交互请求的准入控制，任务只借用其中的空闲计算槽位
+     * @param threads 任务线程池的线程数（并行度上限，实际并行度还受借到的槽位数约束）
+     * @param maxActive 排队与执行中的任务数上限
+     * @param maxBytes 全部保留任务的结果数组字节数上限
+     * @param retained 结束后保留的任务数上限
+     * @param ttlMillis 结束后保留的时间
+     */
+    JobManager(LruCache<DocumentProfile> profiles, AdmissionControl admission, int threads, int maxActive,
+               long maxBytes, int retained, long ttlMillis) {
+        this.profiles = profiles;
+        this.admission = admission;
+        this.threads = threads;
+        this.maxActive = maxActive;
+        this.maxBytes = maxBytes;
+        this.retained = retained;
+        this.ttlMillis = ttlMillis;
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("job-worker-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+        this.scheduler = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交任务
+     * @throws AdmissionControl.Rejected 任务过多或结果内存不足（429）
+     */
+    Job submit(PairBatch batch) throws AdmissionControl.Rejected {
+        Job job;
+        synchronized (this) {
+            expire();
+            if (active >= maxActive) {
+                throw new AdmissionControl.Rejected(429, "Too many active jobs", 30);
+            }
+            long bytes = BYTES_PER_PAIR * batch.pairCount();
+            while (reservedBytes + bytes > maxBytes && !finished.isEmpty()) {
+                forget(finished.removeFirst());
+            }
+            if (reservedBytes + bytes > maxBytes) {
+                throw new AdmissionControl.Rejected(429, "Job memory budget exhausted", 30);
+            }
+            String id;
+            do {
+                id = String.format("%016x", random.nextLong());
+            } while (jobs.containsKey(id));
+            job = new Job(id, batch);
+            jobs.put(id, job);
+            active++;
+            reservedBytes += bytes;
+        }
+        scheduler.execute(() -> run(job));
+        return job;
+    }
+
+    /**
+     * 按 ID 查找任务，不存在或已过期时返回 null
+     */
+    synchronized Job get(String id) {
+        expire();
+        return jobs.get(id);
+    }
+
+    /**
+     * 取消并删除任务；执行中的任务在当前块算完后停止
+     */
+    boolean cancel(String id) {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(id);
+            if (job == null) {
+                return false;
+            }
+            if (job.finished()) {
+                finished.remove(job);
+                forget(job);
+                return true;
+            }
+        }
+        job.cancelled = true;
+        return true;
+    }
+
+    synchronized int active() {
+        return active;
+    }
+
+    synchronized long completed() {
+        return completed;
+    }
+
+    private void run(Job job) {
+        if (job.cancelled) {
+            finish(job, State.CANCELLED, null);
+            return;
+        }
+        job.startNanos = System.nanoTime();
+        job.state = State.RUNNING;
+        PairBatch batch = job.batch;
+        try {
+            int analyzeSlots = borrow(job);
+            if (analyzeSlots > 0) {
+                try {
+                    await(workers.submit(() -> batch.analyze(profiles, analyzeSlots)));
+                } finally {
+                    admission.giveBack(analyzeSlots);
+                }
+            }
+            if (job.cancelled) {
+                finish(job, State.CANCELLED, null);
+                return;
+            }
+            job.distinct = batch.distinct();
+            job.scoreStartNanos = System.nanoTime();
+            int[] block = new int[2 * BLOCK];
+            double[] blockScores = new double[BLOCK];
+            long offset = 0;
+            while (!job.cancelled) {
+                int count = batch.nextBlock(block);
+                if (count == 0) {
+                    break;
+                }
+                for (int from = 0; from < count && !job.cancelled; ) {
+                    int slots = borrow(job);
+                    if (slots == 0) break;
+                    int start = from;
+                    int end = Math.min(count, from + SLICE_PER_SLOT * slots);
+                    try {
+                        await(workers.submit(() -> batch.score(block, start, end, blockScores, slots)));
+                    } finally {
+                        admission.giveBack(slots);
+                    }
+                    from = end;
+                }
+                if (job.cancelled) {
+                    break;
+                }
+                System.arraycopy(block, 0, job.pairs, (int) (2 * offset), 2 * count);
+                System.arraycopy(blockScores, 0, job.scores, (int) offset, count);
+                offset += count;
+                job.done = offset;
+            }
+            finish(job, job.cancelled ? State.CANCELLED : State.DONE, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(job, State.FAILED, "interrupted");
+        } catch (ExecutionException e) {
+            finish(job, State.FAILED, e.getCause().getClass().getSimpleName());
+        } catch (RuntimeException | OutOfMemoryError e) {
+            finish(job, State.FAILED, e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 借到至少一个空闲计算槽位为止（至多 threads 个）；任务被取消时返回 0
+     */
+    private int borrow(Job job) throws InterruptedException {
+        while (!job.cancelled) {
+            int slots = admission.borrowIdle(threads);
+            if (slots > 0) {
+                return slots;
+            }
+            Thread.sleep(IDLE_POLL_MILLIS);
+        }
+        return 0;
+    }
+
+    private static void await(Future<?> future) throws InterruptedException, ExecutionException {
+        future.get();
+    }
+
+    private void finish(Job job, State state, String error) {
+        job.batch = null;
+        job.error = error;
+        job.finishNanos = System.nanoTime();
+        job.state = state;
+        synchronized (this) {
+            active--;
+            completed++;
+            if (job.cancelled) {
+                // 取消的任务已不需要保留
+                forget(job);
+                return;
+            }
+            finished.append(job);
+            while (finished.size() > retained) {
+                forget(finished.removeFirst());
+            }
+        }
+    }
+
+    // 从索引中删除任务并释放其结果内存的预留
+    private void forget(Job job) {
+        if (jobs.remove(job.id) != null) {
+            reservedBytes -= job.bytes();
+        }
+    }
+
+    // 删除结束超过 ttlMillis 的任务（finished 按结束时间排序）
+    private void expire() {
+        long now = System.nanoTime();
+        while (!finished.isEmpty() && now - finished.get(0).finishNanos > ttlMillis * 1_000_000) {
+            forget(finished.removeFirst());
+        }
+    }
+}
@@ -0,0 +1,331 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 极简流式 JSON 拉取式读取器（不引入第三方库）
+ *
+ * 调用方按文档结构依次调用 beginObject/nextName/nextString/... 读取，
+ * 不构建中间树，不认识的字段用 skipValue 跳过。
+ * 输入按 8K 字符分块从请求流中 UTF-8 解码，整个请求体不会先拼成一个 String；
+ * 字符串值可以用 {@link #nextString(StringBuilder)} 直接解码进调用方复用的缓冲区，
+ * 再作为 CharSequence 交给预处理器，中间不产生任何副本。
+ * 读取器会检查逗号、冒号与括号是否匹配，格式错误时抛出带偏移量的 IOException。
+ * 对象与数组最多嵌套 MAX_DEPTH 层：请求体只有两三层，更深的嵌套按格式错误拒绝，
+ * 避免跳过深层嵌套的未知字段时递归过深导致 StackOverflowError。
+ */
+final class JsonReader {
+
+    /** 下一个值的类型 */
+    enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END }
+
+    // 作用域状态
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private static final int CHUNK = 8192;
+    // 对象与数组的最大嵌套层数
+    private static final int MAX_DEPTH = 64;
+
+    private final Reader in;
+    private final char[] chunk = new char[CHUNK];
+    private int pos;
+    private int limit;
+    // 已从输入中消费的、位于当前块之前的字符数（用于错误信息中的偏移量）
+    private long consumedBefore;
+
+    private int[] stack = new int[16];
+    private int depth;
+    // peek 已识别但尚未被消费的记号；其前导字符（引号、括号）已经读过
+    private Token peeked;
+    private final StringBuilder buffer = new StringBuilder();
+
+    JsonReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    JsonReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * 查看下一个记号的类型（会消费其前的空白与分隔符，但不消费值本身）
+     */
+    Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') return peeked = Token.END_ARRAY;
+                if (c >= 0) pos--;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') return peeked = Token.END_ARRAY;
+                expect(c, ',');
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') return peeked = Token.END_OBJECT;
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                expect(c, '"');
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                expect(nextNonWhitespace(), ':');
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (nextNonWhitespace() < 0) return peeked = Token.END;
+                throw syntaxError("multiple top-level values");
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{': return peeked = Token.BEGIN_OBJECT;
+            case '[': return peeked = Token.BEGIN_ARRAY;
+            case '"': return peeked = Token.STRING;
+            case 't': case 'f': pos--; return peeked = Token.BOOLEAN;
+            case 'n': pos--; return peeked = Token.NULL;
+            case -1: throw syntaxError("unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    return peeked = Token.NUMBER;
+                }
+                throw syntaxError("unexpected character '" + (char) c + "'");
+        }
+    }
+
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END;
+    }
+
+    void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    String nextName() throws IOException {
+        consume(Token.NAME);
+        buffer.setLength(0);
+        readString(buffer);
+        return buffer.toString();
+    }
+
+    String nextString() throws IOException {
+        buffer.setLength(0);
+        nextString(buffer);
+        return buffer.toString();
+    }
+
+    /**
+     * 把下一个字符串值解码后追加到 out（不生成 String）
+     */
+    void nextString(StringBuilder out) throws IOException {
+        consume(Token.STRING);
+        readString(out);
+    }
+
+    /**
+     * 读取整数（不接受小数与指数形式）
+     */
+    int nextInt() throws IOException {
+        consume(Token.NUMBER);
+        buffer.setLength(0);
+        readWhile("+-.eE0123456789", buffer);
+        for (int i = 0; i < buffer.length(); i++) {
+            char c = buffer.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') throw syntaxError("expected an integer");
+        }
+        try {
+            return Integer.parseInt(buffer, 0, buffer.length(), 10);
+        } catch (NumberFormatException e) {
+            throw syntaxError("invalid integer '" + buffer + "'");
+        }
+    }
+
+    /**
+     * 跳过下一个值（包括整个嵌套的对象或数组）
+     */
+    void skipValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                while (hasNext()) skipValue();
+                endArray();
+                break;
+            case STRING:
+                consume(Token.STRING);
+                readString(null);
+                break;
+            case NUMBER:
+                consume(Token.NUMBER);
+                readWhile("+-.eE0123456789", null);
+                break;
+            case BOOLEAN:
+            case NULL: {
+                consume(peeked);
+                buffer.setLength(0);
+                readWhile("truefalsn", buffer);
+                String word = buffer.toString();
+                if (!word.equals("true") && !word.equals("false") && !word.equals("null")) {
+                    throw syntaxError("unexpected literal '" + word + "'");
+                }
+                break;
+            }
+            default:
+                throw syntaxError("expected a value");
+        }
+    }
+
+    private void consume(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("expected " + expected + " but found " + token);
+        }
+        peeked = null;
+    }
+
+    // 读取字符串内容（起始引号已消费）并追加到 out，out 为 null 时只跳过
+    private void readString(StringBuilder out) throws IOException {
+        while (true) {
+            // 快速路径：成段复制不含引号与反斜杠的字符
+            int start = pos;
+            while (pos < limit) {
+                char c = chunk[pos];
+                if (c == '"' || c == '\\') break;
+                pos++;
+            }
+            if (out != null) out.append(chunk, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) throw syntaxError("unterminated string");
+                continue;
+            }
+            if (chunk[pos++] == '"') return;
+
+            int esc = read();
+            char decoded;
+            switch (esc) {
+                case '"': decoded = '"'; break;
+                case '\\': decoded = '\\'; break;
+                case '/': decoded = '/'; break;
+                case 'b': decoded = '\b'; break;
+                case 'f': decoded = '\f'; break;
+                case 'n': decoded = '\n'; break;
+                case 'r': decoded = '\r'; break;
+                case 't': decoded = '\t'; break;
+                case 'u': {
+                    int cp = 0;
+                    for (int j = 0; j < 4; j++) {
+                        int v = Character.digit(read(), 16);
+                        if (v < 0) throw syntaxError("invalid unicode escape");
+                        cp = (cp << 4) + v;
+                    }
+                    decoded = (char) cp;
+                    break;
+                }
+                default:
+                    throw syntaxError("invalid escape");
+            }
+            if (out != null) out.append(decoded);
+        }
+    }
+
+    // 连续读取属于 allowed 的字符（追加到 out），遇到其他字符时退回
+    private void readWhile(String allowed, StringBuilder out) throws IOException {
+        while (true) {
+            int c = read();
+            if (c < 0) return;
+            if (allowed.indexOf(c) < 0) {
+                pos--;
+                return;
+            }
+            if (out != null) out.append((char) c);
+        }
+    }
+
+    // 跳过空白并消费下一个字符，到达末尾时返回 -1
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return c;
+        }
+    }
+
+    // 读取一个字符；读到的字符总在当前块内，因此紧接着的 pos-- 总能退回它
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return chunk[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        consumedBefore += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(chunk, 0, CHUNK);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private void expect(int actual, char expected) throws IOException {
+        if (actual != expected) {
+            throw syntaxError("expected '" + expected + "' but found " + (actual < 0 ? "end of input" : "'" + (char) actual + "'"));
+        }
+    }
+
+    private void push(int scope) throws IOException {
+        // stack[0] 为文档本身，不计入嵌套层数
+        if (depth > MAX_DEPTH) throw syntaxError("nesting deeper than " + MAX_DEPTH + " levels");
+        if (depth == stack.length) stack = java.util.Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = scope;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("Malformed JSON at offset " + (consumedBefore + pos) + ": " + message);
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import DataStructure.ArrayList;
+import DataStructure.HashMap;
+
+/**
+ * 指标注册表，按 Prometheus 文本格式（0.0.4）输出
+ *
+ * 支持三类指标：
+ * - 直方图 {@link Histogram}：固定桶上限，每个桶一个 LongAdder，记录路径无锁，多线程并发记录时几乎不竞争；
+ * - 计数器与仪表：注册一个读取函数，抓取时才调用（缓存、准入控制等已有的统计直接复用）。
+ * 指标只在启动时注册，抓取时按注册顺序输出，同名指标的多个标签组合归为一组。
+ */
+final class Metrics {
+
+    /** 时长桶上限（纳秒）：1µs ~ 10s（单对打分只需几微秒） */
+    static final long[] DURATION_BUCKETS = {
+        1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+        1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L,
+        100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    /** 字节数桶上限：256B ~ 16MB */
+    static final long[] BYTE_BUCKETS = {
+        256L, 1L << 10, 4L << 10, 16L << 10, 64L << 10, 256L << 10, 1L << 20, 4L << 20, 16L << 20
+    };
+
+    /** 分配字节数桶上限：0 ~ 16MB（很多打分阶段完全不分配） */
+    static final long[] ALLOCATION_BUCKETS = {
+        0L, 64L, 256L, 1L << 10, 4L << 10, 16L << 10, 64L << 10, 256L << 10, 1L << 20, 4L << 20, 16L << 20
+    };
+
+    /** 纳秒换算为秒 */
+    static final double NANOS = 1e-9;
+
+    /**
+     * 无锁直方图：value 落入第一个不小于它的桶，超过全部上限的落入 +Inf 桶
+     */
+    static final class Histogram {
+        private final long[] bounds;
+        private final LongAdder[] counts;
+        private final LongAdder sum = new LongAdder();
+        private final double unit;
+
+        private Histogram(long[] bounds, double unit) {
+            this.bounds = bounds;
+            this.unit = unit;
+            this.counts = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            int i = Arrays.binarySearch(bounds, value);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            counts[i].increment();
+            sum.add(value);
+        }
+
+        // 桶计数是分别读取的，抓取期间仍有记录时各桶之间可能相差几次，这对监控无影响
+        private void write(StringBuilder out, String name, String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i].sum();
+                String le = i < bounds.length ? format(bounds[i] * unit) : "+Inf";
+                out.append(name).append("_bucket{").append(labels);
+                if (!labels.isEmpty()) out.append(',');
+                out.append("le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(name).append("_sum").append(braces(labels)).append(' ').append(format(sum.sum() * unit)).append('\n');
+            out.append(name).append("_count").append(braces(labels)).append(' ').append(cumulative).append('\n');
+        }
+    }
+
+    // 同名指标的一组标签组合
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final ArrayList<String> labels = new ArrayList<>();
+        final ArrayList<Object> series = new ArrayList<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final ArrayList<Family> families = new ArrayList<>();
+    private final HashMap<Family> byName = new HashMap<>();
+
+    /**
+     * 注册一个直方图
+     * @param labels 标签，如 stage="tokenize"；无标签时为空串
+     * @param unit 记录值换算为导出单位的系数（时长为 NANOS，字节为 1）
+     */
+    synchronized Histogram histogram(String name, String help, String labels, long[] bounds, double unit) {
+        Histogram histogram = new Histogram(bounds, unit);
+        add(name, help, "histogram", labels, histogram);
+        return histogram;
+    }
+
+    /** 注册一个单调递增的计数器 */
+    synchronized void counter(String name, String help, String labels, LongSupplier value) {
+        add(name, help, "counter", labels, value);
+    }
+
+    /** 注册一个仪表（当前值） */
+    synchronized void gauge(String name, String help, String labels, DoubleSupplier value) {
+        add(name, help, "gauge", labels, value);
+    }
+
+    private void add(String name, String help, String type, String labels, Object series) {
+        Family family = byName.get(name);
+        if (family == null) {
+            family = new Family(name, help, type);
+            byName.put(name, family);
+            families.append(family);
+        } else if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " already registered as " + family.type);
+        }
+        family.labels.append(labels);
+        family.series.append(series);
+    }
+
+    /**
+     * 按 Prometheus 文本格式输出全部指标
+     */
+    synchronized String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (int f = 0; f < families.size(); f++) {
+            Family family = families.get(f);
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (int i = 0; i < family.series.size(); i++) {
+                Object series = family.series.get(i);
+                String labels = family.labels.get(i);
+                if (series instanceof Histogram) {
+                    ((Histogram) series).write(out, family.name, labels);
+                } else if (series instanceof LongSupplier) {
+                    out.append(family.name).append(braces(labels)).append(' ')
+                        .append(((LongSupplier) series).getAsLong()).append('\n');
+                } else {
+                    out.append(family.name).append(braces(labels)).append(' ')
+                        .append(format(((DoubleSupplier) series).getAsDouble())).append('\n');
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.US, "%.9g", value).replaceFirst("\\.?0+(e|$)", "$1");
+    }
+}
@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import Analyzer.DocumentProfile;
+import DataStructure.ArrayList;
+import DataStructure.HashMap;
+import DataStructure.LruCache;
+
+/**
+ * 多对比较请求：/api/similarity/batch 与 /api/similarity/stream 共用的请求解析、文档分析与代码对遍历
+ *
+ * 请求体：{"documents": ["code0", "code1", ...], "pairs": [[0, 1], [0, 2], ...]}，
+ * pairs 也可以是字符串 "all"，表示全部 i < j 的代码对。
+ * "all" 不展开成数组，而是由 {@link #nextBlock} 按 (0,1), (0,2), ..., (1,2), ... 的顺序逐块生成，
+ * 因此流式输出时内存占用与代码对数量无关。
+ */
+final class PairBatch {
+
+    // 打分时每次从游标领取的代码对数：单对打分很快，逐个领取时游标上的竞争不可忽略
+    private static final int SCORE_GRAIN = 16;
+
+    private final ArrayList<String> documents;
+    // 展开的下标对 [i0, j0, i1, j1, ...]；为 null 表示全部 i < j
+    private final int[] pairs;
+    private final long pairCount;
+
+    // 遍历游标：显式列表用 cursor，"all" 用 (nextI, nextJ)
+    private int cursor;
+    private int nextI;
+    private int nextJ = 1;
+
+    private DocumentProfile[] profiles;
+    private int distinct;
+
+    private PairBatch(ArrayList<String> documents, int[] pairs) {
+        this.documents = documents;
+        this.pairs = pairs;
+        int n = documents.size();
+        this.pairCount = pairs != null ? pairs.length / 2 : (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * 从请求流解析
+     * @param maxPairs 允许的最大代码对数
+     * @throws IOException JSON 格式错误
+     * @throws IllegalArgumentException 缺少字段、下标越界或代码对过多
+     */
+    static PairBatch parse(InputStream body, long maxPairs) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        ArrayList<String> documents = new ArrayList<>();
+        int[] pairs = null;
+        int count = 0;
+        boolean all = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "documents":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        documents.append(reader.nextString());
+                    }
+                    reader.endArray();
+                    break;
+                case "pairs":
+                    if (reader.peek() == JsonReader.Token.STRING) {
+                        if (!"all".equals(reader.nextString())) {
+                            throw new IllegalArgumentException("\"pairs\" must be an array of [i, j] or \"all\"");
+                        }
+                        all = true;
+                        break;
+                    }
+                    pairs = new int[64];
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (count >= maxPairs || count == Integer.MAX_VALUE / 2) {
+                            throw new IllegalArgumentException("Too many pairs (limit " + maxPairs + ")");
+                        }
+                        if (2 * count + 2 > pairs.length) {
+                            pairs = java.util.Arrays.copyOf(pairs, pairs.length * 2);
+                        }
+                        reader.beginArray();
+                        pairs[2 * count] = reader.nextInt();
+                        pairs[2 * count + 1] = reader.nextInt();
+                        reader.endArray();
+                        count++;
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (reader.peek() != JsonReader.Token.END) {
+            throw new IllegalArgumentException("Trailing data after JSON object");
+        }
+
+        int n = documents.size();
+        if (all) {
+            long total = (long) n * (n - 1) / 2;
+            if (total > maxPairs) {
+                throw new IllegalArgumentException("Too many pairs (" + total + ", limit " + maxPairs + ")");
+            }
+            return new PairBatch(documents, null);
+        }
+        if (pairs == null) {
+            throw new IllegalArgumentException("Missing \"pairs\"");
+        }
+        for (int k = 0; k < 2 * count; k++) {
+            if (pairs[k] < 0 || pairs[k] >= n) {
+                throw new IllegalArgumentException("Document index out of range: " + pairs[k]);
+            }
+        }
+        return new PairBatch(documents, java.util.Arrays.copyOf(pairs, 2 * count));
+    }
+
+    int documentCount() {
+        return documents.size();
+    }
+
+    long pairCount() {
+        return pairCount;
+    }
+
+    /**
+     * 内容不同的文档数（analyze 之后有效）
+     */
+    int distinct() {
+        return distinct;
+    }
+
+    /**
+     * 分析全部文档：内容相同的文档只分析一次并共享同一画像，已在画像缓存中的直接复用。
+     * 在 pool 中并行执行，调用方需在 pool 的任务内调用（见 ServerMain.compute）。
+     */
+    void analyze(LruCache<DocumentProfile> cache) {
+        analyze(cache, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 同 {@link #analyze(LruCache)}，但同时使用的线程数不超过 workers（准入控制持有的槽位数）
+     */
+    void analyze(LruCache<DocumentProfile> cache, int workers) {
+        int n = documents.size();
+        String[] digests = new String[n];
+        forEach(0, n, workers, 1, i ->
+            digests[i] = ServerMain.toHex(ServerMain.sha256(documents.get(i).getBytes(StandardCharsets.UTF_8))));
+        // 按内容去重：canonical[i] 为与文档 i 内容相同的第一个文档
+        int[] canonical = new int[n];
+        HashMap<Integer> first = new HashMap<>(Math.max(16, n * 2));
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            Integer seen = first.get(digests[i]);
+            if (seen == null) {
+                first.put(digests[i], i);
+                canonical[i] = i;
+                unique++;
+            } else {
+                canonical[i] = seen;
+            }
+        }
+        DocumentProfile[] analyzed = new DocumentProfile[n];
+        forEach(0, n, workers, 1, i -> {
+            if (canonical[i] != i) return;
+            DocumentProfile profile = cache.get(digests[i]);
+            if (profile == null) {
+                profile = DocumentProfile.build(documents.get(i));
+                cache.put(digests[i], profile, profile.estimatedHeapBytes());
+            }
+            analyzed[i] = profile;
+        });
+        for (int i = 0; i < n; i++) {
+            analyzed[i] = analyzed[canonical[i]];
+        }
+        this.profiles = analyzed;
+        this.distinct = unique;
+    }
+
+    /**
+     * 按请求顺序取出下一块代码对写入 out（[i0, j0, i1, j1, ...]），返回本块的代码对数，遍历结束时返回 0
+     */
+    int nextBlock(int[] out) {
+        int capacity = out.length / 2;
+        int filled = 0;
+        if (pairs != null) {
+            filled = Math.min(capacity, pairs.length / 2 - cursor);
+            System.arraycopy(pairs, 2 * cursor, out, 0, 2 * filled);
+            cursor += filled;
+            return filled;
+        }
+        int n = documents.size();
+        while (filled < capacity && nextI < n - 1) {
+            out[2 * filled] = nextI;
+            out[2 * filled + 1] = nextJ;
+            filled++;
+            if (++nextJ == n) {
+                nextI++;
+                nextJ = nextI + 1;
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * 对一块代码对并行打分（analyze 之后调用）
+     */
+    void score(int[] block, int count, double[] scores) {
+        score(block, 0, count, scores, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 对 block 中下标 [from, to) 的代码对打分，同时使用的线程数不超过 workers（准入控制持有的槽位数）
+     */
+    void score(int[] block, int from, int to, double[] scores, int workers) {
+        forEach(from, to, workers, SCORE_GRAIN, k ->
+            scores[k] = SimilarityCalculator.calculate(profiles[block[2 * k]], profiles[block[2 * k + 1]]));
+    }
+
+    /**
+     * 用至多 workers 个并行任务处理下标 [from, to)：各任务从共享游标每次领取 grain 个下标，
+     * 先做完的任务继续领取剩余部分，因此各下标耗时不均时仍能均衡，而同时占用的线程数不超过 workers。
+     * workers 为 Integer.MAX_VALUE 时不设上限，由所在线程池的并行度决定。
+     */
+    private static void forEach(int from, int to, int workers, int grain, IntConsumer action) {
+        if (workers == Integer.MAX_VALUE) {
+            IntStream.range(from, to).parallel().forEach(action);
+            return;
+        }
+        int tasks = (int) Math.max(1, Math.min(workers, ((long) to - from + grain - 1) / grain));
+        AtomicInteger cursor = new AtomicInteger(from);
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int start;
+            while ((start = cursor.getAndAdd(grain)) < to) {
+                for (int i = start, end = Math.min(to, start + grain); i < end; i++) {
+                    action.accept(i);
+                }
+            }
+        });
+    }
+}
@@ -3,22 +3,85 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import Analyzer.DocumentProfile;
+import Analyzer.StageTracer;
+import DataStructure.LruCache;
 
 public class ServerMain {
     private static final int DEFAULT_PORT = 8080;
 
+    // 结果缓存上限，可用 -Dsimilarity.cache.entries / .bytes / .ttl（秒）覆盖
+    private static final int CACHE_ENTRIES = Integer.getInteger("similarity.cache.entries", 10_000);
+    private static final long CACHE_BYTES = Long.getLong("similarity.cache.bytes", 16L << 20);
+    private static final long CACHE_TTL_SECONDS = Long.getLong("similarity.cache.ttl", 0L);
+    // 文档画像缓存上限，可用 -Dsimilarity.profiles.entries / .bytes 覆盖
+    private static final int PROFILE_ENTRIES = Integer.getInteger("similarity.profiles.entries", 4096);
+    private static final long PROFILE_BYTES = Long.getLong("similarity.profiles.bytes", 64L << 20);
+    // 请求执行模式：fixed（默认，固定大小的平台线程池，计算在请求线程上进行）或 virtual（见 main）
+    private static final String EXECUTOR_MODE = System.getProperty("similarity.executor", "fixed");
+    private static final int COMPUTE_THREADS = Integer.getInteger("similarity.compute.threads",
+        Runtime.getRuntime().availableProcessors());
+    // 单个批量请求允许的最大代码对数，可用 -Dsimilarity.batch.maxPairs 覆盖
+    private static final int BATCH_MAX_PAIRS = Integer.getInteger("similarity.batch.maxPairs", 1_000_000);
+    // 准入控制（见 AdmissionControl）：请求体上限、排队名额、成本预算（字节）与等待计算槽位的最长时间（毫秒）
+    private static final long MAX_BODY_BYTES = Long.getLong("similarity.maxBody", 8L << 20);
+    private static final int ADMISSION_QUEUE = Integer.getInteger("similarity.admission.queue", 16);
+    private static final long ADMISSION_BUDGET = Long.getLong("similarity.admission.budget", 32L << 20);
+    private static final long ADMISSION_WAIT_MILLIS = Long.getLong("similarity.admission.wait", 1000L);
+    // 后台任务（见 JobManager）：任务线程数、排队与执行中的任务数、单个任务的代码对数、结果内存（字节）、
+    // 结束后保留的任务数与保留时间（秒），可用 -Dsimilarity.jobs.* 覆盖
+    private static final int JOB_THREADS = Integer.getInteger("similarity.jobs.threads", COMPUTE_THREADS);
+    private static final int JOB_MAX_ACTIVE = Integer.getInteger("similarity.jobs.max", 8);
+    private static final int JOB_MAX_PAIRS = Integer.getInteger("similarity.jobs.maxPairs", 5_000_000);
+    private static final long JOB_BYTES = Long.getLong("similarity.jobs.bytes", 256L << 20);
+    private static final int JOB_RETAINED = Integer.getInteger("similarity.jobs.retained", 32);
+    private static final long JOB_TTL_SECONDS = Long.getLong("similarity.jobs.ttl", 3600L);
+    // 结果分页的默认与最大页大小
+    private static final int JOB_PAGE = 1000;
+    private static final int JOB_MAX_PAGE = 10_000;
+    // 非 HTML 静态资源允许浏览器缓存的秒数，可用 -Dsimilarity.static.maxAge 覆盖
+    private static final long STATIC_MAX_AGE = Long.getLong("similarity.static.maxAge", 300L);
+    // 未配置 -Dsimilarity.trace 时的阶段追踪模式：每次分析/打分以 1/8 的概率追踪
+    private static final String DEFAULT_TRACE = "sample:8";
+    // fixed 模式下请求线程池自身的有界队列长度
+    private static final int ACCEPT_BACKLOG = 256;
+
     public static void main(String[] args) throws Exception {
+        // 阶段追踪默认采样开启（见 StageTracer）；追踪模式在 StageTracer 类初始化时读取，必须在任何分析之前设置
+        if (System.getProperty("similarity.trace") == null) {
+            System.setProperty("similarity.trace", DEFAULT_TRACE);
+        }
         int port = DEFAULT_PORT;
         if (args.length > 0) {
             try {
@@ -37,20 +100,197 @@ public class ServerMain {
             return;
         }
 
+        LruCache<Double> resultCache = new LruCache<>(CACHE_ENTRIES, CACHE_BYTES, CACHE_TTL_SECONDS * 1000);
+        LruCache<DocumentProfile> profileCache = new LruCache<>(PROFILE_ENTRIES, PROFILE_BYTES, 0);
+
+        // HttpServer 把响应头与正文分两次写出，开启 Nagle 算法时小响应会被延迟确认卡住约 40ms，
+        // 静态文件与 JSON 响应都受影响；未显式配置时关闭 Nagle（须在创建 HttpServer 之前设置）
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
         HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/api/similarity", new SimilarityHandler());
-        server.createContext("/", new StaticFileHandler(webRoot));
-        server.setExecutor(Executors.newFixedThreadPool(8));
+        // virtual 模式：HTTP 处理（读请求体、写响应、静态文件）跑在虚拟线程上，慢速上传只占用廉价的虚拟线程；
+        // 分析与打分提交到与 CPU 核数等大的计算线程池，I/O 再慢也不会占满计算槽位
+        // 两种模式下同时计算的请求数都等于计算线程数（默认 CPU 核数），超出核数的并发计算只会拉长每个请求的耗时。
+        // fixed 模式：计算直接在请求线程上进行；线程数在计算槽位之外额外留出排队名额与若干空闲线程，
+        // 保证过载时仍有线程能立即返回 429/503 和静态文件。
+        // 线程池自身的队列也有上限，超出时 HttpServer 直接关闭连接（最后一道防线，正常情况下由准入控制先拒绝）
+        ExecutorService requestExecutor;
+        ForkJoinPool computePool = null;
+        AdmissionControl admission;
+        if ("virtual".equalsIgnoreCase(EXECUTOR_MODE)) {
+            requestExecutor = newVirtualThreadExecutor();
+            computePool = new ForkJoinPool(COMPUTE_THREADS);
+            admission = new AdmissionControl(COMPUTE_THREADS, ADMISSION_QUEUE, ADMISSION_BUDGET, ADMISSION_WAIT_MILLIS);
+        } else {
+            int threads = Math.max(8, COMPUTE_THREADS + ADMISSION_QUEUE + 8);
+            requestExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(ACCEPT_BACKLOG));
+            admission = new AdmissionControl(COMPUTE_THREADS, ADMISSION_QUEUE, ADMISSION_BUDGET, ADMISSION_WAIT_MILLIS);
+        }
+        ForkJoinPool batchPool = computePool != null ? computePool : ForkJoinPool.commonPool();
+
+        JobManager jobs = new JobManager(profileCache, admission, JOB_THREADS, JOB_MAX_ACTIVE, JOB_BYTES, JOB_RETAINED,
+            JOB_TTL_SECONDS * 1000);
+        Metrics metrics = newMetrics(resultCache, profileCache, admission, requestExecutor);
+        metrics.gauge("similarity_jobs_active", "Background jobs queued or running", "", jobs::active);
+        metrics.counter("similarity_jobs_finished_total", "Background jobs finished, failed or cancelled", "",
+            jobs::completed);
+
+        server.createContext("/api/similarity", new MeteredHandler(metrics, "similarity",
+            new SimilarityHandler(resultCache, profileCache, computePool, admission)));
+        server.createContext("/api/similarity/batch", new MeteredHandler(metrics, "batch",
+            new BatchHandler(profileCache, batchPool, admission)));
+        server.createContext("/api/similarity/stream", new MeteredHandler(metrics, "stream",
+            new StreamHandler(profileCache, batchPool, admission)));
+        server.createContext("/api/jobs", new MeteredHandler(metrics, "jobs", new JobsHandler(jobs)));
+        server.createContext("/api/cache/stats", new StatsHandler(() ->
+            "{\"results\":" + resultCache.statsJson() + ",\"profiles\":" + profileCache.statsJson() + "}"));
+        server.createContext("/api/admission/stats", new StatsHandler(admission::statsJson));
+        server.createContext("/metrics", new MetricsHandler(metrics));
+        server.createContext("/", new StaticFileHandler(StaticAssets.load(webRoot)));
+        server.setExecutor(requestExecutor);
         server.start();
 
-        System.out.println("Server running on http://localhost:" + port);
+        System.out.println("Server running on http://localhost:" + port + " (executor=" + EXECUTOR_MODE
+            + (computePool != null ? ", compute threads=" + COMPUTE_THREADS : "") + ", job threads=" + JOB_THREADS
+            + ", trace=" + System.getProperty("similarity.trace") + ")");
+    }
+
+    /**
+     * 注册 /metrics 导出的指标：分析流水线各阶段的耗时与分配字节数（通过 StageTracer 采样上报）、
+     * 两个缓存的命中/未命中、准入控制的排队与拒绝计数，以及 fixed 模式下请求线程池的等待队列长度。
+     * 各接口的请求耗时与请求体字节数由 MeteredHandler 注册。
+     */
+    private static Metrics newMetrics(LruCache<Double> resultCache, LruCache<DocumentProfile> profileCache,
+                                      AdmissionControl admission, ExecutorService requestExecutor) {
+        Metrics metrics = new Metrics();
+        StageTracer.Stage[] stages = StageTracer.Stage.values();
+        Metrics.Histogram[] stageNanos = new Metrics.Histogram[stages.length];
+        Metrics.Histogram[] stageBytes = new Metrics.Histogram[stages.length];
+        for (StageTracer.Stage stage : stages) {
+            stageNanos[stage.ordinal()] = metrics.histogram("similarity_stage_duration_seconds",
+                "Time spent in each analysis stage (sampled)", "stage=\"" + stage.label() + "\"",
+                Metrics.DURATION_BUCKETS, Metrics.NANOS);
+        }
+        for (StageTracer.Stage stage : stages) {
+            stageBytes[stage.ordinal()] = metrics.histogram("similarity_stage_allocated_bytes",
+                "Bytes allocated in each analysis stage (sampled)", "stage=\"" + stage.label() + "\"",
+                Metrics.ALLOCATION_BUCKETS, 1);
+        }
+        StageTracer.setSink((stage, nanos, bytes) -> {
+            stageNanos[stage.ordinal()].record(nanos);
+            if (bytes >= 0) {
+                stageBytes[stage.ordinal()].record(bytes);
+            }
+        });
+
+        for (int i = 0; i < 2; i++) {
+            LruCache<?> cache = i == 0 ? resultCache : profileCache;
+            String labels = "cache=\"" + (i == 0 ? "results" : "profiles") + "\"";
+            metrics.counter("similarity_cache_hits_total", "Cache lookups that found an entry", labels, cache::hits);
+            metrics.counter("similarity_cache_misses_total", "Cache lookups that found no entry", labels, cache::misses);
+            metrics.counter("similarity_cache_evictions_total", "Entries evicted to stay within limits", labels, cache::evictions);
+            metrics.gauge("similarity_cache_entries", "Entries currently cached", labels, cache::size);
+            metrics.gauge("similarity_cache_bytes", "Estimated bytes currently cached", labels, cache::bytes);
+        }
+
+        metrics.gauge("similarity_admission_queue_depth", "Admitted requests waiting for a compute slot", "",
+            admission::queueDepth);
+        metrics.gauge("similarity_admission_running", "Requests holding a compute slot", "", admission::running);
+        metrics.gauge("similarity_admission_slots_in_use", "Compute slots held, including slots borrowed by batch requests",
+            "", admission::slotsInUse);
+        metrics.counter("similarity_admission_admitted_total", "Requests admitted", "", admission::admitted);
+        String rejected = "similarity_admission_rejected_total";
+        String rejectedHelp = "Requests rejected by admission control";
+        metrics.counter(rejected, rejectedHelp, "reason=\"queue_full\"", admission::rejectedQueueFull);
+        metrics.counter(rejected, rejectedHelp, "reason=\"budget\"", admission::rejectedBudget);
+        metrics.counter(rejected, rejectedHelp, "reason=\"timeout\"", admission::rejectedTimeout);
+        metrics.counter(rejected, rejectedHelp, "reason=\"too_large\"", admission::rejectedTooLarge);
+
+        if (requestExecutor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) requestExecutor;
+            metrics.gauge("similarity_executor_queue_depth", "Connections waiting for a request thread", "",
+                () -> pool.getQueue().size());
+        }
+        return metrics;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器。
+     * 通过反射调用 Executors.newVirtualThreadPerTaskExecutor（JDK 21+），使本文件仍可在 JDK 17 上编译；
+     * 运行时不支持虚拟线程（JDK 17，或 JDK 19/20 未开启 --enable-preview）时退化为按需创建的平台线程池，
+     * 仍然保留“I/O 与计算分离”的效果，只是每个挂起的连接占用一个平台线程。
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads are not available on this JVM, using a cached platform thread pool instead");
+            return Executors.newCachedThreadPool(daemonThreads("http-"));
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 在计算线程池上执行任务并等待结果；pool 为 null（fixed 模式）时直接在当前线程执行
+     */
+    static <T> T compute(ExecutorService pool, Supplier<T> task) throws IOException {
+        if (pool == null) {
+            return task.get();
+        }
+        Future<T> future = pool.submit(task::get);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the compute pool");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
     }
 
     /**
      * 相似度请求处理器
      * 处理来自前端的 POST 请求，计算两段代码的相似度并返回 JSON 结果。
+     *
+     * 同一对代码被反复提交（重复点击、刷新、同一模板对比多个文件）时直接返回缓存结果：
+     * 缓存键为两段代码各自 SHA-256 摘要按字典序排列后再做一次 SHA-256，
+     * 相似度是对称的，因此 (A, B) 与 (B, A) 命中同一条目。响应头 X-Cache 标明 HIT/MISS。
+     *
+     * 结果未命中时，两段代码的画像再分别按各自的摘要到画像缓存中查找：
+     * 参考答案、被反复比对的提交等已分析过的一侧直接复用，只有没见过的一侧需要重新分析。
+     * 响应头 X-Profile-Cache 给出两侧各自的 HIT/MISS。
      */
     private static class SimilarityHandler implements HttpHandler {
+        // 每个条目的估算开销：键字符串、链表节点、哈希表节点与装箱的 Double
+        private static final long ENTRY_BYTES = 256;
+
+        private final LruCache<Double> cache;
+        private final LruCache<DocumentProfile> profiles;
+        private final ForkJoinPool computePool;
+        private final AdmissionControl admission;
+
+        private SimilarityHandler(LruCache<Double> cache, LruCache<DocumentProfile> profiles, ForkJoinPool computePool,
+                                  AdmissionControl admission) {
+            this.cache = cache;
+            this.profiles = profiles;
+            this.computePool = computePool;
+            this.admission = admission;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             // 仅允许 POST 请求
@@ -59,35 +299,504 @@ public class ServerMain {
                 return;
             }
 
-            // 读取请求体（JSON 格式）
-            String body = readBody(exchange.getRequestBody());
-            // 手动解析 JSON 字段（避免引入第三方 JSON 库）
-            String code1 = getValue(body, "code1");
-            String code2 = getValue(body, "code2");
-
-            if (code1 == null || code2 == null) {
-                sendText(exchange, 400, "Invalid JSON payload");
+            AdmissionControl.Ticket ticket = admit(exchange, admission);
+            if (ticket == null) {
                 return;
             }
+            RequestBuffers buffers = RequestBuffers.acquire();
+            try (ticket) {
+                // 从请求流直接解码 JSON（避免引入第三方 JSON 库），两段代码写入复用的缓冲区
+                if (!readCodes(limitedBody(exchange), buffers)) {
+                    sendText(exchange, 400, "Invalid JSON payload");
+                    return;
+                }
+                respond(exchange, buffers.code1, buffers.code2, buffers, ticket);
+            } catch (AdmissionControl.BodyTooLargeException e) {
+                sendTooLarge(exchange, admission, e);
+            } catch (AdmissionControl.Rejected e) {
+                sendRejected(exchange, e);
+            } finally {
+                // 等待计算时被中断的话，计算任务可能仍在读取缓冲区，此时不归还
+                if (!Thread.currentThread().isInterrupted()) {
+                    buffers.release();
+                }
+            }
+        }
+
+        private void respond(HttpExchange exchange, CharSequence code1, CharSequence code2,
+                             RequestBuffers buffers, AdmissionControl.Ticket ticket)
+                throws IOException, AdmissionControl.Rejected {
+            byte[] digest1 = buffers.sha256(code1);
+            byte[] digest2 = buffers.sha256(code2);
+            String key = pairKey(digest1, digest2);
+            Double cached = cache.get(key);
+            double similarity;
+            if (cached != null) {
+                similarity = cached;
+                exchange.getResponseHeaders().set("X-Cache", "HIT");
+            } else {
+                String hex1 = toHex(digest1);
+                String hex2 = toHex(digest2);
+                DocumentProfile cached1 = profiles.get(hex1);
+                DocumentProfile cached2 = hex2.equals(hex1) ? cached1 : profiles.get(hex2);
+                exchange.getResponseHeaders().set("X-Profile-Cache",
+                    (cached1 != null ? "HIT" : "MISS") + "," + (cached2 != null ? "HIT" : "MISS"));
+                // 结果缓存命中的请求不占用计算槽位，只有真正需要计算时才等待
+                ticket.start();
+                similarity = compute(computePool, () -> {
+                    DocumentProfile profile1 = cached1 != null ? cached1 : analyze(hex1, code1);
+                    DocumentProfile profile2 = cached2 != null ? cached2
+                        : hex2.equals(hex1) ? profile1 : analyze(hex2, code2);
+                    // 调用核心算法计算相似度
+                    return SimilarityCalculator.calculate(profile1, profile2);
+                });
+                cache.put(key, similarity, ENTRY_BYTES);
+                exchange.getResponseHeaders().set("X-Cache", "MISS");
+            }
 
-            // 调用核心算法计算相似度
-            double similarity = SimilarityCalculator.calculate(code1, code2);
-            
             // 构造响应 JSON
             String json = String.format(Locale.US, "{\"similarity\":%.6f}", similarity);
             sendJson(exchange, 200, json);
         }
+
+        private DocumentProfile analyze(String digest, CharSequence code) {
+            DocumentProfile profile = DocumentProfile.build(code);
+            profiles.put(digest, profile, profile.estimatedHeapBytes());
+            return profile;
+        }
+
+        /**
+         * 读取 {"code1": "...", "code2": "..."}，其他字段忽略；两段代码都存在时返回 true
+         * @throws AdmissionControl.BodyTooLargeException 请求体超过上限
+         */
+        private static boolean readCodes(InputStream body, RequestBuffers buffers) throws IOException {
+            boolean has1 = false;
+            boolean has2 = false;
+            try {
+                JsonReader reader = new JsonReader(body);
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "code1":
+                            buffers.code1.setLength(0);
+                            reader.nextString(buffers.code1);
+                            has1 = true;
+                            break;
+                        case "code2":
+                            buffers.code2.setLength(0);
+                            reader.nextString(buffers.code2);
+                            has2 = true;
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                return has1 && has2 && reader.peek() == JsonReader.Token.END;
+            } catch (AdmissionControl.BodyTooLargeException e) {
+                throw e;
+            } catch (IOException e) {
+                return false;
+            }
+        }
     }
 
     /**
-     * 静态文件处理器
-     * 负责将 Web 目录下的 HTML, JS, CSS 等资源映射到 HTTP 服务。
+     * 单对请求复用的缓冲区：两段代码的解码结果，以及计算摘要时使用的 UTF-8 编码器与字节缓冲。
+     * 请求结束后归还到池中供下一个请求使用（与线程无关，虚拟线程下同样有效）；
+     * 容量超过 MAX_RETAINED_CHARS 的缓冲区不归还，避免一次超大请求长期占住内存。
      */
-    private static class StaticFileHandler implements HttpHandler {
-        private final Path webRoot;
+    private static final class RequestBuffers {
+        private static final int MAX_RETAINED_CHARS = 1 << 20;
+        private static final ArrayBlockingQueue<RequestBuffers> POOL = new ArrayBlockingQueue<>(32);
+
+        final StringBuilder code1 = new StringBuilder(4096);
+        final StringBuilder code2 = new StringBuilder(4096);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+
+        static RequestBuffers acquire() {
+            RequestBuffers buffers = POOL.poll();
+            return buffers != null ? buffers : new RequestBuffers();
+        }
+
+        void release() {
+            if (code1.capacity() > MAX_RETAINED_CHARS || code2.capacity() > MAX_RETAINED_CHARS) {
+                return;
+            }
+            code1.setLength(0);
+            code2.setLength(0);
+            POOL.offer(this);
+        }
+
+        /**
+         * 文本 UTF-8 编码后的 SHA-256，分块编码，不生成完整的字节数组
+         * （非法代理字符替换为 '?'，与 String.getBytes(UTF_8) 结果一致）
+         */
+        byte[] sha256(CharSequence text) {
+            MessageDigest digest = newSha256();
+            CharBuffer in = CharBuffer.wrap(text);
+            encoder.reset();
+            CoderResult result;
+            do {
+                bytes.clear();
+                result = encoder.encode(in, bytes, true);
+                bytes.flip();
+                digest.update(bytes);
+            } while (result.isOverflow());
+            bytes.clear();
+            encoder.flush(bytes);
+            bytes.flip();
+            digest.update(bytes);
+            return digest.digest();
+        }
+    }
+
+    /**
+     * 批量相似度：POST /api/similarity/batch（请求体格式见 PairBatch）
+     *
+     * 响应：{"documents": n, "distinct": d, "pairs": m, "results": [{"i": 0, "j": 1, "similarity": 0.5}, ...]}，
+     *       results 与请求中 pairs 的顺序一致。
+     *
+     * 内容相同的文档只分析一次（并复用画像缓存），分析与打分都在计算线程池上并行进行。
+     * 结果不写入单对结果缓存，避免一次大批量请求把交互请求的缓存条目全部挤掉。
+     *
+     * 准入只保证一个计算槽位，并行度因此受持有的槽位数约束：分析前与每 BATCH_BLOCK 对打分前
+     * 用 widen 借用当时空闲的槽位，本阶段同时使用的线程数不超过持有数，阶段结束即归还借用的槽位，
+     * 排队中的交互请求最迟在一块打完后拿到槽位。
+     */
+    private static class BatchHandler implements HttpHandler {
+        private static final int BATCH_BLOCK = 4096;
+
+        private final LruCache<DocumentProfile> profiles;
+        private final ForkJoinPool pool;
+        private final AdmissionControl admission;
+
+        private BatchHandler(LruCache<DocumentProfile> profiles, ForkJoinPool pool, AdmissionControl admission) {
+            this.profiles = profiles;
+            this.pool = pool;
+            this.admission = admission;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Method Not Allowed");
+                return;
+            }
+
+            AdmissionControl.Ticket ticket = admit(exchange, admission);
+            if (ticket == null) {
+                return;
+            }
+            PairBatch batch;
+            int m;
+            int[] pairs;
+            double[] scores;
+            try (ticket) {
+                try {
+                    batch = PairBatch.parse(limitedBody(exchange), BATCH_MAX_PAIRS);
+                } catch (AdmissionControl.BodyTooLargeException e) {
+                    sendTooLarge(exchange, admission, e);
+                    return;
+                } catch (IOException | IllegalArgumentException e) {
+                    sendText(exchange, 400, e.getMessage());
+                    return;
+                }
+
+                m = (int) batch.pairCount();
+                pairs = new int[2 * m];
+                scores = new double[m];
+                ticket.start();
+                int parallelism = pool.getParallelism();
+                compute(pool, () -> {
+                    batch.analyze(profiles, ticket.widen(parallelism));
+                    ticket.narrow();
+                    batch.nextBlock(pairs);
+                    for (int from = 0; from < m; from += BATCH_BLOCK) {
+                        batch.score(pairs, from, Math.min(m, from + BATCH_BLOCK), scores, ticket.widen(parallelism));
+                        ticket.narrow();
+                    }
+                    return null;
+                });
+            } catch (AdmissionControl.Rejected e) {
+                sendRejected(exchange, e);
+                return;
+            }
+
+            StringBuilder json = new StringBuilder(64 + m * 48);
+            json.append("{\"documents\":").append(batch.documentCount()).append(",\"distinct\":").append(batch.distinct())
+                .append(",\"pairs\":").append(m).append(",\"results\":[");
+            for (int k = 0; k < m; k++) {
+                if (k > 0) json.append(',');
+                appendResult(json, pairs[2 * k], pairs[2 * k + 1], scores[k]);
+            }
+            json.append("]}");
+            sendJson(exchange, 200, json.toString());
+        }
+    }
+
+    /**
+     * 流式批量相似度：POST /api/similarity/stream（请求体格式见 PairBatch，代码对数量不设上限）
+     *
+     * 响应为 NDJSON（application/x-ndjson，分块传输编码），每行一个结果 {"i": 0, "j": 1, "similarity": 0.5}，
+     * 顺序与请求一致，最后一行为 {"done": true, "pairs": m}；中途出错时写出 {"error": "..."} 并结束，
+     * 因此没有收到 done 行的客户端可以判断结果不完整。
+     *
+     * 代码对按 STREAM_BLOCK 个一块并行打分，一块算完立即写出并 flush；写出当前块的同时下一块已在计算，
+     * 服务端只持有两块结果，内存占用与代码对总数无关。客户端断开时写入失败，正在计算的一块算完后停止。
+     *
+     * 输出长度不设上限，因此不在整个流式输出期间占用计算槽位：准入后的槽位只用于文档分析，
+     * 之后每块打分前重新排队占用槽位（并借用空闲槽位，并行度不超过持有数），打完立即归还，
+     * 与交互请求按公平顺序分时使用；等待慢速客户端读取时不占用任何槽位。
+     */
+    private static class StreamHandler implements HttpHandler {
+        private static final int STREAM_BLOCK = 1024;
+
+        private final LruCache<DocumentProfile> profiles;
+        private final ForkJoinPool pool;
+        private final AdmissionControl admission;
+
+        private StreamHandler(LruCache<DocumentProfile> profiles, ForkJoinPool pool, AdmissionControl admission) {
+            this.profiles = profiles;
+            this.pool = pool;
+            this.admission = admission;
+        }
+
+        /** 一块代码对及其得分 */
+        private static final class Block {
+            final int[] pairs = new int[2 * STREAM_BLOCK];
+            final double[] scores = new double[STREAM_BLOCK];
+            int count;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Method Not Allowed");
+                return;
+            }
+
+            AdmissionControl.Ticket ticket = admit(exchange, admission);
+            if (ticket == null) {
+                return;
+            }
+            try (ticket) {
+                PairBatch batch;
+                try {
+                    batch = PairBatch.parse(limitedBody(exchange), Long.MAX_VALUE);
+                } catch (AdmissionControl.BodyTooLargeException e) {
+                    sendTooLarge(exchange, admission, e);
+                    return;
+                } catch (IOException | IllegalArgumentException e) {
+                    sendText(exchange, 400, e.getMessage());
+                    return;
+                }
+                ticket.start();
+                int parallelism = pool.getParallelism();
+                compute(pool, () -> {
+                    batch.analyze(profiles, ticket.widen(parallelism));
+                    return null;
+                });
+                ticket.pause();
+                stream(exchange, batch, ticket, parallelism);
+            } catch (AdmissionControl.Rejected e) {
+                sendRejected(exchange, e);
+            }
+        }
+
+        private void stream(HttpExchange exchange, PairBatch batch, AdmissionControl.Ticket ticket, int parallelism)
+                throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+            // 长度为 0 表示使用分块传输编码
+            exchange.sendResponseHeaders(200, 0);
+            Block current = new Block();
+            Block next = new Block();
+            current.count = batch.nextBlock(current.pairs);
+            ForkJoinTask<?> running = score(batch, current, ticket, parallelism);
+            long written = 0;
+            StringBuilder lines = new StringBuilder(STREAM_BLOCK * 48);
+            try (OutputStream os = exchange.getResponseBody()) {
+                try {
+                    while (current.count > 0) {
+                        await(running);
+                        next.count = batch.nextBlock(next.pairs);
+                        running = score(batch, next, ticket, parallelism);
+
+                        lines.setLength(0);
+                        for (int k = 0; k < current.count; k++) {
+                            appendResult(lines, current.pairs[2 * k], current.pairs[2 * k + 1], current.scores[k]);
+                            lines.append('\n');
+                        }
+                        os.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                        os.flush();
+                        written += current.count;
+
+                        Block t = current;
+                        current = next;
+                        next = t;
+                    }
+                    os.write(("{\"done\":true,\"pairs\":" + written + "}\n").getBytes(StandardCharsets.UTF_8));
+                } catch (RuntimeException e) {
+                    os.write(("{\"error\":\"" + e.getClass().getSimpleName() + "\"}\n").getBytes(StandardCharsets.UTF_8));
+                }
+            } finally {
+                // 客户端断开（写入抛出 IOException）时不再提交新块。ForkJoinTask 的 cancel 不会中断已在计算的块，
+                // 因此等在算的块结束、由它自己的 pause 归还槽位，再由 try (ticket) 关闭；
+                // 否则 close 会在计算仍在进行时提前释放槽位（含借用的），合计计算线程数就可能超过槽位数
+                if (running != null) running.quietlyJoin();
+            }
+        }
+
+        /**
+         * 等待计算槽位后提交一块的打分，打完在计算线程上归还槽位
+         */
+        private ForkJoinTask<?> score(PairBatch batch, Block block, AdmissionControl.Ticket ticket, int parallelism)
+                throws IOException {
+            if (block.count == 0) return null;
+            int workers = ticket.resume(parallelism);
+            return pool.submit(() -> {
+                try {
+                    batch.score(block.pairs, 0, block.count, block.scores, workers);
+                } finally {
+                    ticket.pause();
+                }
+            });
+        }
+
+        private static void await(Future<?> future) throws IOException {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while streaming results");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * 后台任务：
+     * - POST /api/jobs：请求体格式同批量接口（见 PairBatch），立即返回 202 与任务状态（含 id）；
+     * - GET /api/jobs/{id}：任务状态与进度（已完成/总代码对数、已用时间、预计剩余时间）；
+     * - GET /api/jobs/{id}/results?offset=0&limit=1000：按请求顺序分页返回已算完的结果，任务执行中也可读取；
+     * - DELETE /api/jobs/{id}：取消并删除任务。
+     * 任务不经过准入控制，由 JobManager 自己的排队上限约束，在独立的任务线程池上执行，
+     * 计算时只借用交互请求留下的空闲计算槽位。
+     */
+    private static class JobsHandler implements HttpHandler {
+        private final JobManager jobs;
+
+        private JobsHandler(JobManager jobs) {
+            this.jobs = jobs;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            // 路径形如 /api/jobs、/api/jobs/{id} 或 /api/jobs/{id}/results
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            String id = parts.length > 3 ? parts[3] : null;
+            boolean results = parts.length == 5 && "results".equals(parts[4]);
+            if (parts.length > 5 || (parts.length == 5 && !results)) {
+                sendText(exchange, 404, "Not Found");
+                return;
+            }
+
+            if (id == null) {
+                if (!"POST".equalsIgnoreCase(method)) {
+                    sendText(exchange, 405, "Method Not Allowed");
+                    return;
+                }
+                submit(exchange);
+                return;
+            }
+            JobManager.Job job = jobs.get(id);
+            if (job == null) {
+                sendText(exchange, 404, "Unknown job: " + id);
+                return;
+            }
+            if ("DELETE".equalsIgnoreCase(method) && !results) {
+                jobs.cancel(id);
+                sendJson(exchange, 200, job.statusJson());
+            } else if (!"GET".equalsIgnoreCase(method)) {
+                sendText(exchange, 405, "Method Not Allowed");
+            } else if (results) {
+                long offset = queryParameter(exchange, "offset", 0);
+                long limit = queryParameter(exchange, "limit", JOB_PAGE);
+                if (offset < 0 || offset > job.pairCount() || limit <= 0 || limit > JOB_MAX_PAGE) {
+                    sendText(exchange, 400, "offset must be in [0, " + job.pairCount() + "], limit in [1, " + JOB_MAX_PAGE + "]");
+                    return;
+                }
+                sendJson(exchange, 200, job.resultsJson(offset, (int) limit));
+            } else {
+                sendJson(exchange, 200, job.statusJson());
+            }
+        }
+
+        private void submit(HttpExchange exchange) throws IOException {
+            if (contentLength(exchange) > MAX_BODY_BYTES) {
+                sendText(exchange, 413, "Request body exceeds " + MAX_BODY_BYTES + " bytes");
+                return;
+            }
+            PairBatch batch;
+            try {
+                batch = PairBatch.parse(limitedBody(exchange), JOB_MAX_PAIRS);
+            } catch (AdmissionControl.BodyTooLargeException e) {
+                sendText(exchange, 413, e.getMessage());
+                return;
+            } catch (IOException | IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+            try {
+                JobManager.Job job = jobs.submit(batch);
+                exchange.getResponseHeaders().set("Location", "/api/jobs/" + job.id);
+                sendJson(exchange, 202, job.statusJson());
+            } catch (AdmissionControl.Rejected e) {
+                sendRejected(exchange, e);
+            }
+        }
+    }
 
-        private StaticFileHandler(Path webRoot) {
-            this.webRoot = webRoot;
+    // 查询串中的非负整数参数，缺失或格式错误时返回 defaultValue（格式错误时为 -1，由调用方报错）
+    private static long queryParameter(HttpExchange exchange, String name, long defaultValue) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                try {
+                    return Long.parseLong(pair.substring(eq + 1));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void appendResult(StringBuilder out, int i, int j, double similarity) {
+        out.append("{\"i\":").append(i).append(",\"j\":").append(j)
+            .append(",\"similarity\":").append(String.format(Locale.US, "%.6f", similarity)).append('}');
+    }
+
+    /**
+     * 统计信息：GET 时返回 json 提供的 JSON 对象
+     * （/api/cache/stats 返回 {"results":{...},"profiles":{...}}，/api/admission/stats 返回准入控制的计数）
+     */
+    private static class StatsHandler implements HttpHandler {
+        private final Supplier<String> json;
+
+        private StatsHandler(Supplier<String> json) {
+            this.json = json;
         }
 
         @Override
@@ -96,42 +805,295 @@ public class ServerMain {
                 sendText(exchange, 405, "Method Not Allowed");
                 return;
             }
+            sendJson(exchange, 200, json.get());
+        }
+    }
+
+    /**
+     * 记录接口的请求耗时、请求体字节数与按状态码分类的响应数，再交给 delegate 处理。
+     * 请求体换成计数的包装流（exchange.setStreams），delegate 读取方式不变；流式接口的耗时包含整个输出过程。
+     */
+    private static class MeteredHandler implements HttpHandler {
+        private final HttpHandler delegate;
+        private final Metrics.Histogram latency;
+        private final Metrics.Histogram bytesIn;
+        // 下标为状态码的百位（2xx、4xx、5xx），0 表示未发送响应
+        private final LongAdder[] responses = new LongAdder[6];
+
+        private MeteredHandler(Metrics metrics, String endpoint, HttpHandler delegate) {
+            this.delegate = delegate;
+            String labels = "endpoint=\"" + endpoint + "\"";
+            this.latency = metrics.histogram("similarity_request_duration_seconds",
+                "Request latency including body upload and response", labels, Metrics.DURATION_BUCKETS, Metrics.NANOS);
+            this.bytesIn = metrics.histogram("similarity_request_bytes",
+                "Request body bytes read", labels, Metrics.BYTE_BUCKETS, 1);
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = new LongAdder();
+            }
+            for (int i = 2; i <= 5; i++) {
+                if (i == 3) continue;
+                LongAdder counter = responses[i];
+                metrics.counter("similarity_responses_total", "Responses by status class",
+                    labels + ",code=\"" + i + "xx\"", counter::sum);
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            long start = System.nanoTime();
+            long[] count = new long[1];
+            exchange.setStreams(new FilterInputStream(exchange.getRequestBody()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) count[0]++;
+                    return b;
+                }
 
-            String path = exchange.getRequestURI().getPath();
-            // 默认访问 index.html
-            if (path == null || path.isEmpty() || "/".equals(path)) {
-                path = "/index.html";
+                @Override
+                public int read(byte[] buf, int off, int len) throws IOException {
+                    int n = super.read(buf, off, len);
+                    if (n > 0) count[0] += n;
+                    return n;
+                }
+            }, null);
+            try {
+                delegate.handle(exchange);
+            } finally {
+                latency.record(System.nanoTime() - start);
+                bytesIn.record(count[0]);
+                int status = exchange.getResponseCode() / 100;
+                responses[status >= 0 && status < responses.length ? status : 0].increment();
+            }
+        }
+    }
+
+    /**
+     * GET /metrics：Prometheus 文本格式的指标
+     */
+    private static class MetricsHandler implements HttpHandler {
+        private final Metrics metrics;
+
+        private MetricsHandler(Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Method Not Allowed");
+                return;
             }
+            byte[] data = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(data);
+            }
+        }
+    }
 
-            // 路径安全检查，防止目录穿越攻击
-            Path file = webRoot.resolve(path.substring(1)).normalize();
-            if (!file.startsWith(webRoot) || Files.isDirectory(file) || !Files.exists(file)) {
+    /**
+     * 准入第一步：检查请求体大小并预约排队名额与成本预算（成本按 Content-Length 估算，缺失时按上限计）。
+     * 被拒绝时已经发送 413/429 响应并返回 null
+     */
+    private static AdmissionControl.Ticket admit(HttpExchange exchange, AdmissionControl admission) throws IOException {
+        long length = contentLength(exchange);
+        if (length > MAX_BODY_BYTES) {
+            sendTooLarge(exchange, admission, new AdmissionControl.BodyTooLargeException(MAX_BODY_BYTES));
+            return null;
+        }
+        try {
+            return admission.admit(length >= 0 ? length : MAX_BODY_BYTES);
+        } catch (AdmissionControl.Rejected e) {
+            sendRejected(exchange, e);
+            return null;
+        }
+    }
+
+    /**
+     * 请求头中的 Content-Length，缺失或格式错误时为 -1
+     */
+    private static long contentLength(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (header != null) {
+            try {
+                return Long.parseLong(header.trim());
+            } catch (NumberFormatException ignored) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 请求体（读取超过 MAX_BODY_BYTES 时抛出 BodyTooLargeException，用于没有 Content-Length 的分块上传）
+     */
+    private static InputStream limitedBody(HttpExchange exchange) {
+        return AdmissionControl.limit(exchange.getRequestBody(), MAX_BODY_BYTES);
+    }
+
+    private static void sendTooLarge(HttpExchange exchange, AdmissionControl admission,
+                                     AdmissionControl.BodyTooLargeException e) throws IOException {
+        admission.recordTooLarge();
+        sendText(exchange, 413, e.getMessage());
+    }
+
+    private static void sendRejected(HttpExchange exchange, AdmissionControl.Rejected e) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", Long.toString(e.retryAfterSeconds));
+        sendText(exchange, e.status, e.getMessage());
+    }
+
+    /**
+     * 与顺序无关的代码对缓存键：SHA-256(min(h1, h2) || max(h1, h2))，hi = SHA-256(UTF-8(codei))
+     */
+    static String pairKey(byte[] h1, byte[] h2) {
+        if (java.util.Arrays.compareUnsigned(h1, h2) > 0) {
+            byte[] t = h1;
+            h1 = h2;
+            h2 = t;
+        }
+        byte[] pair = new byte[h1.length + h2.length];
+        System.arraycopy(h1, 0, pair, 0, h1.length);
+        System.arraycopy(h2, 0, pair, h1.length, h2.length);
+        return toHex(sha256(pair));
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    static byte[] sha256(byte[] data) {
+        return newSha256().digest(data);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 静态文件处理器
+     * 负责将 Web 目录下的 HTML, JS, CSS 等资源映射到 HTTP 服务。
+     *
+     * 资源在启动时读入内存并预先压缩（见 StaticAssets），每次请求只做一次查找：
+     * - 客户端接受 gzip 时发送压缩版本（Vary: Accept-Encoding）；
+     * - 带 ETag，If-None-Match 匹配时返回 304，不发送正文；
+     * - HTML 使用 Cache-Control: no-cache（每次重新验证，页面更新立即可见），
+     *   其他资源允许缓存 STATIC_MAX_AGE 秒。
+     */
+    private static class StaticFileHandler implements HttpHandler {
+        private final StaticAssets assets;
+
+        private StaticFileHandler(StaticAssets assets) {
+            this.assets = assets;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                sendText(exchange, 405, "Method Not Allowed");
+                return;
+            }
+
+            // 只会命中启动时从 Web 目录加载的资源，不存在目录穿越问题
+            StaticAssets.Asset asset = assets.get(exchange.getRequestURI().getPath());
+            if (asset == null) {
                 sendText(exchange, 404, "Not Found");
                 return;
             }
 
-            // 读取文件内容并发送
-            byte[] data = Files.readAllBytes(file);
+            Headers request = exchange.getRequestHeaders();
+            boolean gzip = asset.gzip != null && acceptsGzip(request.getFirst("Accept-Encoding"));
+            String etag = gzip ? asset.gzipEtag : asset.etag;
             Headers headers = exchange.getResponseHeaders();
-            headers.set("Content-Type", contentType(file));
+            headers.set("ETag", etag);
+            headers.set("Cache-Control", asset.contentType.startsWith("text/html")
+                ? "no-cache" : "public, max-age=" + STATIC_MAX_AGE);
+            if (asset.gzip != null) {
+                headers.set("Vary", "Accept-Encoding");
+            }
+            if (etagMatches(request.getFirst("If-None-Match"), asset)) {
+                sendWithoutBody(exchange, 304);
+                return;
+            }
+
+            byte[] data = gzip ? asset.gzip : asset.data;
+            headers.set("Content-Type", asset.contentType);
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+            if (head) {
+                sendWithoutBody(exchange, 200);
+                return;
+            }
             exchange.sendResponseHeaders(200, data.length);
             try (OutputStream os = exchange.getResponseBody()) {
                 os.write(data);
             }
         }
-    }
 
-    private static String contentType(Path file) {
-        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
-        if (name.endsWith(".html")) return "text/html; charset=utf-8";
-        if (name.endsWith(".js")) return "text/javascript; charset=utf-8";
-        if (name.endsWith(".css")) return "text/css; charset=utf-8";
-        if (name.endsWith(".json")) return "application/json; charset=utf-8";
-        return "application/octet-stream";
+        // Accept-Encoding 中列出 gzip（或 *）且 q 不为 0
+        private static boolean acceptsGzip(String header) {
+            if (header == null) {
+                return false;
+            }
+            for (String part : header.split(",")) {
+                String[] params = part.split(";");
+                String coding = params[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                    continue;
+                }
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+
+        // If-None-Match 可以列出多个 ETag（可带 W/ 前缀）或为 *；两种编码的内容相同，任一匹配即可
+        private static boolean etagMatches(String header, StaticAssets.Asset asset) {
+            if (header == null) {
+                return false;
+            }
+            for (String tag : header.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(asset.etag) || tag.equals(asset.gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 
-    private static String readBody(InputStream input) throws IOException {
-        return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+    /**
+     * 发送不带正文的响应（304、HEAD）。
+     * JDK 的 HttpServer 在这种情况下不会读完请求流，随后会把连接当作未读完请求而关闭，
+     * 因此先关闭请求流（读到结尾），连接才能继续复用
+     */
+    private static void sendWithoutBody(HttpExchange exchange, int status) throws IOException {
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status, -1);
     }
 
     private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
@@ -151,51 +1113,4 @@ public class ServerMain {
             os.write(data);
         }
     }
-
-    private static String getValue(String json, String key) {
-        if (json == null) return null;
-        String pattern = "\"" + Pattern.quote(key) + "\"\\s*:\\s*\"((?:\\\\.|[^\"\\\\])*)\"";
-        var matcher = Pattern.compile(pattern).matcher(json);
-        if (!matcher.find()) return null;
-        return unescapeJson(matcher.group(1));
-    }
-
-    private static String unescapeJson(String s) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (c != '\\') {
-                sb.append(c);
-                continue;
-            }
-            if (i + 1 >= s.length()) {
-                return null;
-            }
-            char esc = s.charAt(++i);
-            switch (esc) {
-                case '"': sb.append('"'); break;
-                case '\\': sb.append('\\'); break;
-                case '/': sb.append('/'); break;
-                case 'b': sb.append('\b'); break;
-                case 'f': sb.append('\f'); break;
-                case 'n': sb.append('\n'); break;
-                case 'r': sb.append('\r'); break;
-                case 't': sb.append('\t'); break;
-                case 'u':
-                    if (i + 4 >= s.length()) return null;
-                    int cp = 0;
-                    for (int j = 1; j <= 4; j++) {
-                        int v = Character.digit(s.charAt(i + j), 16);
-                        if (v < 0) return null;
-                        cp = (cp << 4) + v;
-                    }
-                    sb.append((char) cp);
-                    i += 4;
-                    break;
-                default:
-                    return null;
-            }
-        }
-        return sb.toString();
-    }
 }
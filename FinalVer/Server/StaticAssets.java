@@ -0,0 +1,170 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import DataStructure.HashMap;
+
+/**
+ * 内存中的静态资源
+ *
+ * 启动时把 Web 目录下的全部文件读入内存，文本类资源同时预先 gzip 压缩一份，
+ * 并按内容的 SHA-256 生成 ETag。请求时只做一次哈希表查找，不再访问磁盘。
+ * 后台线程通过 WatchService 监听目录，文件变化后重新加载整个目录并原子替换快照，
+ * 因此开发时修改页面刷新即可生效，正在处理的请求仍使用旧快照。
+ */
+final class StaticAssets {
+
+    /** 一个资源：原始字节、gzip 字节（不值得压缩时为 null）与对应的 ETag */
+    static final class Asset {
+        final String contentType;
+        final byte[] data;
+        final byte[] gzip;
+        final String etag;
+        final String gzipEtag;
+
+        private Asset(String contentType, byte[] data, byte[] gzip, String etag) {
+            this.contentType = contentType;
+            this.data = data;
+            this.gzip = gzip;
+            this.etag = "\"" + etag + "\"";
+            this.gzipEtag = "\"" + etag + "-gz\"";
+        }
+    }
+
+    // 压缩后至少要小这么多比例才保留 gzip 版本
+    private static final double MIN_GZIP_SAVING = 0.1;
+
+    private final Path root;
+    // 键为相对 root 的路径（以 / 分隔，不带前导 /）；快照建好后只读，整体替换
+    private volatile HashMap<Asset> assets;
+    private volatile int count;
+
+    private StaticAssets(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * 加载 root 下的全部文件并开始监听变化
+     */
+    static StaticAssets load(Path root) throws IOException {
+        StaticAssets assets = new StaticAssets(root);
+        assets.reload();
+        assets.watch();
+        return assets;
+    }
+
+    /**
+     * 按请求路径查找资源（"/" 映射为 index.html），不存在时返回 null
+     */
+    Asset get(String path) {
+        if (path == null || path.isEmpty() || "/".equals(path)) {
+            path = "/index.html";
+        }
+        return assets.get(path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    int size() {
+        return count;
+    }
+
+    private void reload() throws IOException {
+        HashMap<Asset> loaded = new HashMap<>();
+        int n = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                String key = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                loaded.put(key, build(file));
+                n++;
+            }
+        }
+        assets = loaded;
+        count = n;
+    }
+
+    private static Asset build(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        String type = contentType(file);
+        byte[] gzip = null;
+        if (type.startsWith("text/") || type.startsWith("application/json")) {
+            byte[] compressed = gzip(data);
+            if (compressed.length < data.length * (1 - MIN_GZIP_SAVING)) {
+                gzip = compressed;
+            }
+        }
+        String etag = ServerMain.toHex(ServerMain.sha256(data)).substring(0, 16);
+        return new Asset(type, data, gzip, etag);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    static String contentType(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".html")) return "text/html; charset=utf-8";
+        if (name.endsWith(".js")) return "text/javascript; charset=utf-8";
+        if (name.endsWith(".css")) return "text/css; charset=utf-8";
+        if (name.endsWith(".json")) return "application/json; charset=utf-8";
+        if (name.endsWith(".svg")) return "image/svg+xml";
+        if (name.endsWith(".png")) return "image/png";
+        return "application/octet-stream";
+    }
+
+    // 监听 root 及其子目录；任何变化都重新加载整个目录（资源只有几个文件，代价很小）
+    private void watch() throws IOException {
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            try (Stream<Path> dirs = Files.walk(root)) {
+                for (Path dir : (Iterable<Path>) dirs::iterator) {
+                    if (Files.isDirectory(dir)) {
+                        dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    }
+                }
+            }
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    // 编辑器保存往往触发多个事件，稍等片刻合并为一次重新加载
+                    Thread.sleep(50);
+                    key.pollEvents();
+                    key.reset();
+                    for (WatchKey more = watcher.poll(); more != null; more = watcher.poll()) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    try {
+                        reload();
+                    } catch (IOException e) {
+                        System.err.println("Failed to reload static assets: " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // 退出监听
+            }
+        }, "static-assets-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
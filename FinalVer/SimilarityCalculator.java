@@ -1,8 +1,5 @@
-import DataStructure.ArrayList;
-import DataStructure.HashMap;
-import DataStructure.FrequencyVector;
-import Analyzer.*;
-import Constants.JavaConstants;
+import Analyzer.DocumentProfile;
+import Analyzer.StageTracer;
 
 /**
  * 相似度计算器
@@ -24,6 +21,9 @@ public class SimilarityCalculator {
     private static final double SEQUENCE_WEIGHT = 0.148921;
     private static final double LENGTH_WEIGHT = 0.308775;
 
+    // 归一化 token n-gram 各阶权重（下标即阶数 2~8），偏向长 n-gram
+    private static final double[] SEQUENCE_ORDER_WEIGHTS = {0, 0, 0.05, 0.08, 0.10, 0.12, 0.15, 0.20, 0.30};
+
     /**
      * 计算两个源代码的相似度
      * @param code1 第一个源代码
@@ -31,34 +31,32 @@ public class SimilarityCalculator {
      * @return 相似度值 (0.0 ~ 1.0)
      */
     public static double calculate(String code1, String code2) {
-        // 1. 预处理：去除注释、字符串字面量等噪声
-        String processed1 = Preprocessor.process(code1);
-        String processed2 = Preprocessor.process(code2);
-
-        // 2. 词法分析：将代码切分为Token流
-        ArrayList<String> tokens1 = Lexer.tokenize(processed1);
-        ArrayList<String> tokens2 = Lexer.tokenize(processed2);
-
-        // 3. 关键字分析：统计Java关键字频次并向量化
-        HashMap<Integer> kwMap1 = KeywordAnalyzer.analyze(tokens1);
-        HashMap<Integer> kwMap2 = KeywordAnalyzer.analyze(tokens2);
-        FrequencyVector kwVec1 = KeywordAnalyzer.toVector(kwMap1);
-        FrequencyVector kwVec2 = KeywordAnalyzer.toVector(kwMap2);
-
-        // 4. 运算符分析：统计运算符频次并向量化
-        HashMap<Integer> opMap1 = OperatorAnalyzer.analyze(tokens1);
-        HashMap<Integer> opMap2 = OperatorAnalyzer.analyze(tokens2);
-        FrequencyVector opVec1 = OperatorAnalyzer.toVector(opMap1);
-        FrequencyVector opVec2 = OperatorAnalyzer.toVector(opMap2);
+        // 1~5. 预处理、词法分析与各维度特征提取，统一封装在文档画像中
+        DocumentProfile profile1 = DocumentProfile.build(code1);
+        DocumentProfile profile2 = DocumentProfile.build(code2);
+        return calculate(profile1, profile2);
+    }
 
-        // 5. 标识符序列分析：提取归一化后的标识符流并计算结构相似度
-        double idSim = calculateIdentifierSequenceSimilarity(tokens1, tokens2);
+    /**
+     * 计算两个已构建画像的相似度
+     * 同一份代码需要与大量代码比较时，先构建一次画像再反复调用本方法，避免重复分析。
+     * @param profile1 第一个源代码的画像
+     * @param profile2 第二个源代码的画像
+     * @return 相似度值 (0.0 ~ 1.0)
+     */
+    public static double calculate(DocumentProfile profile1, DocumentProfile profile2) {
+        StageTracer.Span span = StageTracer.begin();
 
         // 6. 计算各维度相似度：使用余弦相似度衡量向量间的分布一致性
-        double kwSim = FrequencyVector.cosineSimilarity(kwVec1, kwVec2);
-        double opSim = FrequencyVector.cosineSimilarity(opVec1, opVec2);
-        double seqSim = calculateNormalizedTokenNGramSimilarity(tokens1, tokens2);
-        double lenSim = calculateTokenLengthSimilarity(tokens1, tokens2);
+        double kwSim = DocumentProfile.keywordSimilarity(profile1, profile2);
+        StageTracer.lap(span, StageTracer.Stage.KEYWORD_SIMILARITY);
+        double opSim = DocumentProfile.operatorSimilarity(profile1, profile2);
+        StageTracer.lap(span, StageTracer.Stage.OPERATOR_SIMILARITY);
+        double idSim = calculateIdentifierSequenceSimilarity(profile1, profile2);
+        StageTracer.lap(span, StageTracer.Stage.IDENTIFIER_SIMILARITY);
+        double seqSim = calculateNormalizedTokenNGramSimilarity(profile1, profile2);
+        StageTracer.lap(span, StageTracer.Stage.TOKEN_SIMILARITY);
+        double lenSim = DocumentProfile.lengthSimilarity(profile1, profile2);
 
         // 7. 加权综合：将各维度得分按权重累加得到最终结果
         double similarity = KEYWORD_WEIGHT * kwSim
@@ -67,48 +65,32 @@ public class SimilarityCalculator {
                           + SEQUENCE_WEIGHT * seqSim
                           + LENGTH_WEIGHT * lenSim;
 
+        StageTracer.lap(span, StageTracer.Stage.FUSION);
         return similarity;
     }
 
-    // 标识符相似度已改为：归一化 ID 频度的余弦相似度（见上方 idSim 计算）
-
     /**
      * 计算归一化 token n-gram 相似度（余弦）
      * - 将所有标识符统一映射为 ID，提升抗变量/方法名重命名能力
-     * - 使用 bi-gram 与 tri-gram 做简单融合，兼顾短代码片段
+     * - 对 2~8 阶 n-gram 分别求余弦后加权融合
      */
-    private static double calculateNormalizedTokenNGramSimilarity(ArrayList<String> tokens1, ArrayList<String> tokens2) {
+    public static double calculateNormalizedTokenNGramSimilarity(DocumentProfile p1, DocumentProfile p2) {
         // 更偏向长 n-gram：减少“通用 Java 模板”造成的虚高（尤其跨主题数据结构）。
-        double s2 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 2),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 2)
-        );
-        double s3 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 3),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 3)
-        );
-        double s4 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 4),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 4)
-        );
-        double s5 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 5),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 5)
-        );
-        double s6 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 6),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 6)
-        );
-        double s7 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 7),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 7)
-        );
-        double s8 = cosineSimilaritySparseCounts(
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens1, 8),
-            NGramAnalyzer.analyzeNormalizedNGrams(tokens2, 8)
-        );
+        // 2~8 阶余弦在一次合并中同时算出
+        double[] s = DocumentProfile.tokenNGramSimilarities(p1, p2);
 
-        return 0.05 * s2 + 0.08 * s3 + 0.10 * s4 + 0.12 * s5 + 0.15 * s6 + 0.20 * s7 + 0.30 * s8;
+        double sum = 0.0;
+        for (int n = DocumentProfile.SEQ_MIN_N; n <= DocumentProfile.SEQ_MAX_N; n++) {
+            sum += SEQUENCE_ORDER_WEIGHTS[n] * s[n];
+        }
+        return sum;
+    }
+
+    /**
+     * 归一化 token n-gram 各阶权重的副本（下标即阶数），供倒排索引等按同样口径打分
+     */
+    public static double[] sequenceOrderWeights() {
+        return SEQUENCE_ORDER_WEIGHTS.clone();
     }
 
     /**
@@ -119,77 +101,9 @@ public class SimilarityCalculator {
      *
      * 这样对“纯重命名”不敏感，同时能更好区分不同实现的标识符使用模式。
      */
-    private static double calculateIdentifierSequenceSimilarity(ArrayList<String> tokens1, ArrayList<String> tokens2) {
-        ArrayList<String> ids1 = IdentifierAnalyzer.normalizedIdentifierSequence(tokens1);
-        ArrayList<String> ids2 = IdentifierAnalyzer.normalizedIdentifierSequence(tokens2);
-
-        double s2 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 2), NGramAnalyzer.analyzeNGrams(ids2, 2));
-        double s3 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 3), NGramAnalyzer.analyzeNGrams(ids2, 3));
-        double s4 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 4), NGramAnalyzer.analyzeNGrams(ids2, 4));
-        double s5 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 5), NGramAnalyzer.analyzeNGrams(ids2, 5));
-        double s6 = cosineSimilaritySparseCounts(NGramAnalyzer.analyzeNGrams(ids1, 6), NGramAnalyzer.analyzeNGrams(ids2, 6));
-
-        return 0.10 * s2 + 0.15 * s3 + 0.20 * s4 + 0.25 * s5 + 0.30 * s6;
-    }
+    public static double calculateIdentifierSequenceSimilarity(DocumentProfile p1, DocumentProfile p2) {
+        double[] s = DocumentProfile.identifierNGramSimilarities(p1, p2);
 
-    private static double cosineSimilaritySparseCounts(HashMap<Integer> map1, HashMap<Integer> map2) {
-        String[] keys1 = map1.keys();
-        String[] keys2 = map2.keys();
-
-        if (keys1.length == 0 && keys2.length == 0) {
-            return 1.0;
-        }
-        if (keys1.length == 0 || keys2.length == 0) {
-            return 0.0;
-        }
-
-        HashMap<Integer> a = map1;
-        HashMap<Integer> b = map2;
-        String[] aKeys = keys1;
-        String[] bKeys = keys2;
-        if (keys1.length > keys2.length) {
-            a = map2;
-            b = map1;
-            aKeys = keys2;
-            bKeys = keys1;
-        }
-
-        double dot = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-
-        for (String k : aKeys) {
-            int av = a.getOrDefault(k, 0);
-            int bv = b.getOrDefault(k, 0);
-            dot += (double) av * bv;
-            normA += (double) av * av;
-        }
-
-        for (String k : bKeys) {
-            int bv = b.getOrDefault(k, 0);
-            normB += (double) bv * bv;
-        }
-
-        if (normA == 0 && normB == 0) return 1.0;
-        if (normA == 0 || normB == 0) return 0.0;
-        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
-    }
-
-    /**
-     * token 数量相似度（长度比）
-     * 用于区分“结构规模差异”导致的相似度差异（例如方法数明显不同）。
-     */
-    private static double calculateTokenLengthSimilarity(ArrayList<String> tokens1, ArrayList<String> tokens2) {
-        int n1 = tokens1.size();
-        int n2 = tokens2.size();
-        if (n1 == 0 && n2 == 0) {
-            return 1.0;
-        }
-        if (n1 == 0 || n2 == 0) {
-            return 0.0;
-        }
-        int min = Math.min(n1, n2);
-        int max = Math.max(n1, n2);
-        return (double) min / (double) max;
+        return 0.10 * s[2] + 0.15 * s[3] + 0.20 * s[4] + 0.25 * s[5] + 0.30 * s[6];
     }
 }
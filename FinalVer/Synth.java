@@ -0,0 +1,1261 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import Constants.JavaConstants;
+import DataStructure.ArrayList;
+import DataStructure.HashMap;
+import DataStructure.HashSet;
+
+/**
+ * 合成抄袭语料库：以 TestCode 等种子文件为素材，按给定规模生成带真值的语料库
+ *
+ * 用法：
+ *   java Main synth <seedDir>... --out <dir> [--families n] [--variants m] [--lines min-max]
+ *                   [--transforms rename,reorder,deadcode,loops,comments,format] [--rate p] [--seed s] [--threads n]
+ *   java Main synth check <truth.csv> <pairs.csv|pairs.jsonl> [--threshold t] [--score column]
+ *
+ * 生成过程：
+ * 1. 每个“家族”先拼出一份原始提交：随机挑选种子文件拼接到目标行数（--lines 区间内均匀抽取），
+ *    每份副本的类名与声明的标识符全部换成新名字，不同家族之间只共享种子的结构；
+ * 2. 再由原始提交派生 m 份抄袭副本，每份随机选用若干变换（至少一种），每处改写以概率 p 发生：
+ *    - rename：一致地重命名类、方法、字段与局部变量；
+ *    - reorder：打乱类中方法的顺序，交换相邻的互不依赖的赋值语句；
+ *    - deadcode：在方法体中插入不影响结果的语句，在类中插入不被调用的私有方法；
+ *    - loops：经典 for 循环改写为 while 循环，while 循环改写为 for 循环；
+ *    - comments：删除已有注释，添加新注释；
+ *    - format：改变缩进宽度与大括号风格，增删空行。
+ * 3. 全部文件打乱顺序后以 s000001.java 起编号写入 <dir>/submissions，文件名不暴露家族。
+ *
+ * 输出：
+ *   <dir>/submissions/*.java   语料库
+ *   <dir>/manifest.csv         file,family,role,transforms,lines（role 为 original 或 copy）
+ *   <dir>/truth.csv            file1,file2,family,transforms：同一家族内的全部文件对（file1 < file2），即真值正例；
+ *                              不同家族之间的文件对都是负例（它们可能复用了同一个种子，结构上并非毫无关系）
+ * 同样的参数与 --seed 在任何线程数下生成逐字节相同的语料库。
+ *
+ * check 子命令对照真值评估 corpus / winnow 等命令的输出（CSV 或 JSONL，按文件名匹配，不看目录）：
+ * 报告的文件对中真值正例的比例（precision）与真值正例被报告的比例（recall）。
+ * --threshold 只统计 --score 列（默认 similarity，没有该列时不过滤）不低于阈值的文件对。
+ */
+public class Synth {
+
+    /** 全部变换，按应用顺序排列 */
+    static final String[] TRANSFORMS = {"reorder", "loops", "deadcode", "rename", "comments", "format"};
+
+    // 重写时保持不变的方法名（入口与常见的覆写方法）
+    private static final String[] KEEP_NAMES = {
+        "main", "toString", "equals", "hashCode", "compareTo", "compare", "run", "call",
+        "iterator", "hasNext", "next", "close", "get", "set", "length", "size"
+    };
+
+    private static final String[] NAME_PARTS = {
+        "value", "node", "item", "count", "index", "temp", "result", "data", "buffer", "current",
+        "total", "entry", "key", "left", "right", "head", "tail", "cursor", "element", "limit",
+        "offset", "target", "pivot", "slot", "bucket", "level", "parent", "child", "root", "store"
+    };
+
+    private static final String[] TYPE_SUFFIXES = {
+        "Store", "Table", "Queue", "List", "Manager", "Helper", "Impl", "Util", "Box", "Tree", "Pool", "Map"
+    };
+
+    private static final HashSet JUMPS = new HashSet();
+
+    static {
+        for (String word : new String[] {"return", "break", "continue", "throw", "yield"}) {
+            JUMPS.add(word);
+        }
+    }
+
+    private static final String[] COMMENTS = {
+        "helper for the main loop", "TODO: handle edge cases", "check bounds first",
+        "update the running total", "iterate over all elements", "swap the two entries",
+        "base case", "move to the next node", "keep the invariant", "grow the storage if needed",
+        "simple implementation", "not thread-safe", "return the result", "initialize fields",
+        "see the assignment description", "corner case for empty input"
+    };
+
+    // 类型声明：class / interface / enum / record 之后的名字
+    private static final Pattern TYPE_DECL = Pattern.compile("\\b(?:class|interface|enum|record)\\s+([A-Za-z_$][\\w$]*)");
+    // 变量、字段、参数与方法声明：类型（可带泛型与数组维度）之后紧跟的名字
+    private static final Pattern MEMBER_DECL = Pattern.compile(
+        "\\b(?:[A-Z][\\w$]*|int|long|double|float|boolean|char|byte|short|void|var)"
+            + "(?:\\s*<[^;(){}]*>)?(?:\\s*\\[\\s*\\])*\\s+([A-Za-z_$][\\w$]*)\\s*(?=[=;,():\\[])");
+    private static final Pattern WORD = Pattern.compile("[A-Za-z_$][\\w$]*");
+    // 单行的经典 for 循环头：for (init; cond; update) {
+    private static final Pattern FOR_HEADER = Pattern.compile("^for\\s*\\(([^;:]*);([^;]*);([^;]*)\\)\\s*\\{$");
+    private static final Pattern WHILE_HEADER = Pattern.compile("^while\\s*\\((.*)\\)\\s*\\{$");
+    private static final Pattern LOCAL_DECL = Pattern.compile(
+        "^(?:final\\s+)?(?:int|long|short|byte|char|double|float|var)\\s+([A-Za-z_$][\\w$]*)\\s*=.*$");
+    private static final Pattern ANONYMOUS_CLASS = Pattern.compile("\\bnew\\s+[\\w$.<>, ]+\\([^)]*\\)\\s*$");
+
+    public static void run(String[] args) throws IOException {
+        if (args.length >= 1 && "check".equals(args[0])) {
+            check(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        ArrayList<Path> roots = new ArrayList<>();
+        String out = null;
+        int families = 50;
+        int variants = 3;
+        int minLines = 500;
+        int maxLines = 5000;
+        String transformList = String.join(",", TRANSFORMS);
+        double rate = 0.3;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    out = Main.requireValue(args, ++i, "--out");
+                    break;
+                case "--families":
+                    families = Integer.parseInt(Main.requireValue(args, ++i, "--families"));
+                    break;
+                case "--variants":
+                    variants = Integer.parseInt(Main.requireValue(args, ++i, "--variants"));
+                    break;
+                case "--lines": {
+                    String value = Main.requireValue(args, ++i, "--lines");
+                    int dash = value.indexOf('-');
+                    minLines = Integer.parseInt(dash < 0 ? value : value.substring(0, dash));
+                    maxLines = dash < 0 ? minLines : Integer.parseInt(value.substring(dash + 1));
+                    break;
+                }
+                case "--transforms":
+                    transformList = Main.requireValue(args, ++i, "--transforms");
+                    break;
+                case "--rate":
+                    rate = Double.parseDouble(Main.requireValue(args, ++i, "--rate"));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(Main.requireValue(args, ++i, "--seed"));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(Main.requireValue(args, ++i, "--threads"));
+                    break;
+                default:
+                    roots.append(Paths.get(args[i]));
+            }
+        }
+        boolean[] enabled = parseTransforms(transformList);
+        if (roots.isEmpty() || out == null || enabled == null || families <= 0 || variants < 0
+            || minLines <= 0 || maxLines < minLines || !(rate >= 0 && rate <= 1) || threads <= 0) {
+            usage();
+            return;
+        }
+
+        Path[] files = Corpus.listJavaFiles(roots);
+        if (files.length == 0) {
+            System.out.println("种子目录中没有 .java 文件");
+            return;
+        }
+        String[] seeds = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            seeds[i] = Corpus.readFile(files[i]);
+        }
+
+        long start = System.nanoTime();
+        Path dir = Paths.get(out);
+        Generator generator = new Generator(seeds, dir.resolve("submissions"), families, variants, minLines, maxLines,
+            enabled, rate, seed);
+        Files.createDirectories(generator.dir);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Corpus.invoke(pool, () -> IntStream.range(0, generator.families).parallel().forEach(f -> {
+                try {
+                    generator.writeFamily(f);
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            }));
+        } catch (java.io.UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        String[] manifest = generator.manifest;
+        String[][] truth = generator.truth;
+        int documents = manifest.length;
+
+        try (Writer writer = Files.newBufferedWriter(dir.resolve("manifest.csv"), StandardCharsets.UTF_8)) {
+            writer.write("file,family,role,transforms,lines\n");
+            for (String row : manifest) {
+                writer.write(row);
+            }
+        }
+        int pairs = 0;
+        for (String[] rows : truth) {
+            pairs += rows.length;
+        }
+        String[] truthRows = new String[pairs];
+        int k = 0;
+        for (String[] rows : truth) {
+            for (String row : rows) {
+                truthRows[k++] = row;
+            }
+        }
+        java.util.Arrays.sort(truthRows);
+        try (Writer writer = Files.newBufferedWriter(dir.resolve("truth.csv"), StandardCharsets.UTF_8)) {
+            writer.write("file1,file2,family,transforms\n");
+            for (String row : truthRows) {
+                writer.write(row);
+            }
+        }
+
+        long totalLines = 0;
+        long totalBytes = 0;
+        for (int f = 0; f < families; f++) {
+            totalLines += generator.lines[f];
+            totalBytes += generator.bytes[f];
+        }
+        System.out.printf(Locale.US,
+            "{\"documents\":%d,\"families\":%d,\"truthPairs\":%d,\"lines\":%d,\"bytes\":%d,\"millis\":%d}%n",
+            documents, families, pairs, totalLines, totalBytes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 生成参数与各家族的输出（按家族或文档下标写入，家族之间互不干扰，可以并行生成）
+     */
+    private static final class Generator {
+        final String[] seeds;
+        final Path dir;
+        final int families;
+        final int variants;
+        final int minLines;
+        final int maxLines;
+        final boolean[] enabled;
+        final double rate;
+        final long seed;
+        // 文档下标（family * (variants + 1) + v）→ 打乱后的编号，编号作为文件名，家族成员在目录中不相邻
+        final int[] ids;
+        // 按编号排列的 manifest 行
+        final String[] manifest;
+        // 按家族排列的真值行
+        final String[][] truth;
+        final long[] lines;
+        final long[] bytes;
+
+        Generator(String[] seeds, Path dir, int families, int variants, int minLines, int maxLines,
+                  boolean[] enabled, double rate, long seed) {
+            this.seeds = seeds;
+            this.dir = dir;
+            this.families = families;
+            this.variants = variants;
+            this.minLines = minLines;
+            this.maxLines = maxLines;
+            this.enabled = enabled;
+            this.rate = rate;
+            this.seed = seed;
+            this.ids = shuffledIds(families * (variants + 1), new Random(seed));
+            this.manifest = new String[ids.length];
+            this.truth = new String[families][];
+            this.lines = new long[families];
+            this.bytes = new long[families];
+        }
+
+        /**
+         * 生成并写出一个家族：原始提交与 variants 份副本
+         */
+        void writeFamily(int family) throws IOException {
+            // 每个家族使用独立的随机数序列，结果与线程调度无关
+            Random random = new Random(seed * 0x9E3779B97F4A7C15L + family);
+            int target = minLines + random.nextInt(maxLines - minLines + 1);
+            ArrayList<String> original = compose(seeds, target, random);
+
+            int members = variants + 1;
+            String[] names = new String[members];
+            String[] applied = new String[members];
+            for (int v = 0; v < members; v++) {
+                int index = family * members + v;
+                names[v] = String.format("s%06d.java", ids[index] + 1);
+                ArrayList<String> document;
+                if (v == 0) {
+                    document = original;
+                    applied[v] = "";
+                } else {
+                    boolean[] chosen = choose(enabled, random);
+                    document = copyOf(original);
+                    StringBuilder list = new StringBuilder();
+                    for (int t = 0; t < TRANSFORMS.length; t++) {
+                        if (!chosen[t]) {
+                            continue;
+                        }
+                        document = apply(TRANSFORMS[t], document, random, rate);
+                        if (list.length() > 0) list.append('+');
+                        list.append(TRANSFORMS[t]);
+                    }
+                    applied[v] = list.toString();
+                }
+                String text = join(document);
+                byte[] data = text.getBytes(StandardCharsets.UTF_8);
+                Files.write(dir.resolve(names[v]), data);
+                lines[family] += document.size();
+                bytes[family] += data.length;
+                manifest[ids[index]] = names[v] + "," + family + "," + (v == 0 ? "original" : "copy") + ","
+                    + applied[v] + "," + document.size() + "\n";
+            }
+
+            String[] rows = new String[members * (members - 1) / 2];
+            int k = 0;
+            for (int a = 0; a < members; a++) {
+                for (int b = a + 1; b < members; b++) {
+                    boolean ordered = names[a].compareTo(names[b]) < 0;
+                    String transforms = applied[a].isEmpty() ? applied[b]
+                        : applied[b].isEmpty() ? applied[a] : applied[a] + "|" + applied[b];
+                    rows[k++] = (ordered ? names[a] : names[b]) + "," + (ordered ? names[b] : names[a]) + ","
+                        + family + "," + transforms + "\n";
+                }
+            }
+            truth[family] = rows;
+        }
+    }
+
+    // 每种启用的变换以 1/2 的概率选用，至少选一种
+    private static boolean[] choose(boolean[] enabled, Random random) {
+        boolean[] chosen = new boolean[TRANSFORMS.length];
+        int count = 0;
+        int available = 0;
+        for (int t = 0; t < TRANSFORMS.length; t++) {
+            if (enabled[t]) {
+                available++;
+                if (random.nextBoolean()) {
+                    chosen[t] = true;
+                    count++;
+                }
+            }
+        }
+        if (count == 0 && available > 0) {
+            int pick = random.nextInt(available);
+            for (int t = 0; t < TRANSFORMS.length; t++) {
+                if (enabled[t] && pick-- == 0) {
+                    chosen[t] = true;
+                }
+            }
+        }
+        return chosen;
+    }
+
+    private static ArrayList<String> apply(String transform, ArrayList<String> lines, Random random, double rate) {
+        switch (transform) {
+            case "rename":
+                return rename(lines, random, rate, wordsOf(lines));
+            case "reorder":
+                return reorder(lines, random, rate);
+            case "deadcode":
+                return insertDeadCode(lines, random, rate);
+            case "loops":
+                return rewriteLoops(lines, random, rate);
+            case "comments":
+                return churnComments(lines, random, rate);
+            case "format":
+                return reformat(lines, random, rate);
+            default:
+                throw new IllegalArgumentException("unknown transform: " + transform);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 原始提交
+    // ------------------------------------------------------------------
+
+    /**
+     * 拼接种子文件直到不少于 target 行：去掉 package/import（import 去重后统一放在开头），
+     * 顶层类型去掉 public（一个文件只能有一个 public 类型），每份副本的声明全部重命名
+     */
+    static ArrayList<String> compose(String[] seeds, int target, Random random) {
+        ArrayList<String> imports = new ArrayList<>();
+        HashSet importSet = new HashSet();
+        ArrayList<String> body = new ArrayList<>();
+        HashSet taken = new HashSet();
+        while (body.size() + imports.size() < target) {
+            ArrayList<String> copy = new ArrayList<>();
+            for (String line : splitLines(seeds[random.nextInt(seeds.length)])) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("package ")) {
+                    continue;
+                }
+                if (trimmed.startsWith("import ")) {
+                    if (importSet.add(trimmed)) {
+                        imports.append(trimmed);
+                    }
+                    continue;
+                }
+                copy.append(line.replaceFirst("^public\\s+((?:final\\s+|abstract\\s+)*(?:class|interface|enum|record)\\b)", "$1"));
+            }
+            copy = rename(copy, random, 1.0, taken);
+            if (body.size() > 0) {
+                body.append("");
+            }
+            for (int i = 0; i < copy.size(); i++) {
+                body.append(copy.get(i));
+            }
+        }
+        ArrayList<String> result = new ArrayList<>(imports.size() + body.size() + 1);
+        for (int i = 0; i < imports.size(); i++) {
+            result.append(imports.get(i));
+        }
+        if (imports.size() > 0) {
+            result.append("");
+        }
+        for (int i = 0; i < body.size(); i++) {
+            result.append(body.get(i));
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------
+    // 变换
+    // ------------------------------------------------------------------
+
+    /**
+     * 一致地重命名声明的类型、方法、字段、参数与局部变量；每个名字以概率 rate 被替换。
+     * 新名字不与 taken 中的任何单词重复，并加入 taken。只改代码，不改字符串与注释。
+     */
+    static ArrayList<String> rename(ArrayList<String> lines, Random random, double rate, HashSet taken) {
+        Scan scan = scan(lines);
+        ArrayList<String> declared = new ArrayList<>();
+        HashSet isType = new HashSet();
+        HashSet seen = new HashSet();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher m = TYPE_DECL.matcher(scan.masked[i]);
+            while (m.find()) {
+                String name = m.group(1);
+                isType.add(name);
+                if (seen.add(name)) declared.append(name);
+            }
+            m = MEMBER_DECL.matcher(scan.masked[i]);
+            while (m.find()) {
+                String name = m.group(1);
+                if (renamable(name) && seen.add(name)) declared.append(name);
+            }
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher m = WORD.matcher(scan.masked[i]);
+            while (m.find()) {
+                taken.add(m.group());
+            }
+        }
+
+        HashMap<String> renames = new HashMap<>();
+        for (int i = 0; i < declared.size(); i++) {
+            String name = declared.get(i);
+            if (random.nextDouble() < rate) {
+                renames.put(name, freshName(random, isType.contains(name), taken));
+            }
+        }
+        if (renames.isEmpty()) {
+            return lines;
+        }
+        ArrayList<String> result = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            result.append(replaceWords(lines.get(i), scan.masked[i], renames));
+        }
+        return result;
+    }
+
+    /**
+     * 打乱类中方法的顺序（每对相邻方法以概率 rate 交换），并交换相邻的、互不依赖的赋值语句
+     */
+    static ArrayList<String> reorder(ArrayList<String> lines, Random random, double rate) {
+        ArrayList<String> result = reorderMethods(lines, random, rate);
+        Scan scan = scan(result);
+        for (int i = 0; i + 1 < result.size(); i++) {
+            if (scan.depth[i] != scan.depth[i + 1] || !scan.inMethod[i] || !scan.inMethod[i + 1]
+                || !isAssignment(scan.code[i]) || !isAssignment(scan.code[i + 1]) || !statementStart(scan, i)
+                || random.nextDouble() >= rate) {
+                continue;
+            }
+            HashSet words1 = wordSet(scan.masked[i]);
+            HashSet words2 = wordSet(scan.masked[i + 1]);
+            if (intersects(assignedNames(scan.code[i]), words2) || intersects(assignedNames(scan.code[i + 1]), words1)) {
+                continue;
+            }
+            String line = result.get(i);
+            result.set(i, result.get(i + 1));
+            result.set(i + 1, line);
+            // 交换过的两行不再参与后续交换，避免一条语句被连续后移
+            i++;
+        }
+        return result;
+    }
+
+    private static ArrayList<String> reorderMethods(ArrayList<String> lines, Random random, double rate) {
+        Scan scan = scan(lines);
+        // 收集每个类体中的方法：[起始行, 结束行]，连同前面的注释与空行
+        ArrayList<int[]> methods = new ArrayList<>();
+        int n = lines.size();
+        int pendingStart = -1;
+        for (int i = 0; i < n; i++) {
+            if (scan.inMethod[i] || scan.depth[i] == 0) {
+                pendingStart = -1;
+                continue;
+            }
+            String code = scan.code[i].trim();
+            if (code.isEmpty()) {
+                if (pendingStart < 0) pendingStart = i;
+                continue;
+            }
+            int start = pendingStart >= 0 ? pendingStart : i;
+            pendingStart = -1;
+            // 方法：类体中以 { 结尾、含括号且不是类型声明的行，直到深度回到该行
+            if (scan.delta[i] > 0 && code.endsWith("{") && code.indexOf('(') >= 0 && !TYPE_DECL.matcher(code).find()) {
+                int end = i + 1;
+                while (end < n && scan.depth[end] + scan.delta[end] > scan.depth[i]) end++;
+                if (end < n) {
+                    methods.append(new int[] {start, end, scan.depth[i]});
+                    i = end;
+                }
+            }
+        }
+        if (methods.size() < 2) {
+            return lines;
+        }
+
+        // 相邻（同一个类体中、中间只隔着空行或已收集的方法）的方法组成一段，段内随机交换
+        int[] order = new int[methods.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        for (int i = 0; i + 1 < order.length; i++) {
+            int[] a = methods.get(order[i]);
+            int[] b = methods.get(order[i + 1]);
+            if (a[2] == b[2] && sameBlock(scan, a[1], b[0]) && random.nextDouble() < rate) {
+                int t = order[i];
+                order[i] = order[i + 1];
+                order[i + 1] = t;
+                i++;
+            }
+        }
+        ArrayList<String> result = new ArrayList<>(n);
+        int next = 0;
+        for (int k = 0; k < methods.size(); k++) {
+            int[] slot = methods.get(k);
+            int[] moved = methods.get(order[k]);
+            while (next < slot[0]) result.append(lines.get(next++));
+            for (int i = moved[0]; i <= moved[1]; i++) result.append(lines.get(i));
+            next = slot[1] + 1;
+        }
+        while (next < n) result.append(lines.get(next++));
+        return result;
+    }
+
+    // from 与 to 之间只有空行（两个方法位于同一个类体中并且相邻）
+    private static boolean sameBlock(Scan scan, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (!scan.code[i].trim().isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 插入不影响结果的代码：方法体中的语句之后以概率 rate/4 插入一段无用语句，
+     * 类体中的方法之后以概率 rate/4 插入一个不被调用的私有方法
+     */
+    static ArrayList<String> insertDeadCode(ArrayList<String> lines, Random random, double rate) {
+        Scan scan = scan(lines);
+        HashSet taken = wordsOf(lines);
+        ArrayList<String> result = new ArrayList<>(lines.size() + lines.size() / 4);
+        double p = rate / 4;
+        for (int i = 0; i < lines.size(); i++) {
+            result.append(lines.get(i));
+            String code = scan.code[i].trim();
+            boolean last = i + 1 == lines.size();
+            // 语句之后：不在 return 等跳转之后（否则是不可达代码），也不夹在无大括号的 if 与 else 之间
+            boolean afterStatement = scan.inMethod[i] && scan.delta[i] == 0 && code.endsWith(";")
+                && !last && !scan.code[i + 1].trim().startsWith("else") && !endsWithJump(scan, i);
+            // 方法的右大括号之后：下一行回到类体
+            boolean afterMethod = code.equals("}") && scan.inMethod[i] && !last && !scan.inMethod[i + 1]
+                && scan.depth[i + 1] > 0;
+            if (afterStatement && random.nextDouble() < p) {
+                String indent = indentOf(lines.get(i));
+                String v = freshName(random, false, taken);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        result.append(indent + "int " + v + " = " + random.nextInt(100) + ";");
+                        break;
+                    case 1:
+                        result.append(indent + "boolean " + v + " = false;");
+                        result.append(indent + "if (" + v + ") {");
+                        result.append(indent + "    " + v + " = !" + v + ";");
+                        result.append(indent + "}");
+                        break;
+                    case 2: {
+                        String k = freshName(random, false, taken);
+                        result.append(indent + "int " + v + " = 0;");
+                        result.append(indent + "for (int " + k + " = 0; " + k + " < 0; " + k + "++) {");
+                        result.append(indent + "    " + v + " += " + k + ";");
+                        result.append(indent + "}");
+                        break;
+                    }
+                    default:
+                        result.append(indent + "String " + v + " = \"" + NAME_PARTS[random.nextInt(NAME_PARTS.length)] + "\";");
+                        result.append(indent + "if (" + v + ".isEmpty()) {");
+                        result.append(indent + "    " + v + " = null;");
+                        result.append(indent + "}");
+                }
+            } else if (afterMethod && random.nextDouble() < p) {
+                String indent = indentOf(lines.get(i));
+                String name = freshName(random, false, taken);
+                String arg = freshName(random, false, taken);
+                String local = freshName(random, false, taken);
+                result.append("");
+                result.append(indent + "private int " + name + "(int " + arg + ") {");
+                result.append(indent + "    int " + local + " = " + arg + " * " + (2 + random.nextInt(7)) + ";");
+                result.append(indent + "    if (" + local + " < 0) {");
+                result.append(indent + "        " + local + " = -" + local + ";");
+                result.append(indent + "    }");
+                result.append(indent + "    return " + local + " - " + arg + ";");
+                result.append(indent + "}");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 循环改写（每处以概率 rate）：
+     * - for (init; cond; update) { body } → init; while (cond) { body update; }，循环变量换成新名字以免与后面的同名变量冲突；
+     *   循环体含 continue 时跳过（改写后 continue 会跳过 update）；
+     * - while (cond) { → for (; cond; ) {
+     */
+    static ArrayList<String> rewriteLoops(ArrayList<String> lines, Random random, double rate) {
+        Scan scan = scan(lines);
+        HashSet taken = wordsOf(lines);
+        ArrayList<String> result = new ArrayList<>(lines.size() + 16);
+        // 结束行号 → 需要在该行之前插入的 update 语句
+        HashMap<String> pendingUpdates = new HashMap<>();
+        // 循环变量的重命名：作用范围 [循环头, 结束行] 与对应的重命名表
+        ArrayList<int[]> renameRanges = new ArrayList<>();
+        ArrayList<HashMap<String>> renameMaps = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String indent = indentOf(line);
+            String code = scan.code[i].trim();
+            String update = pendingUpdates.remove(Integer.toString(i));
+            if (update != null) {
+                for (String u : update.split("\n")) {
+                    result.append(rewriteInRanges(indent + "    " + u + ";", i, renameRanges, renameMaps));
+                }
+            }
+            if (!scan.inMethod[i]) {
+                result.append(rewriteInRanges(line, i, renameRanges, renameMaps));
+                continue;
+            }
+            Matcher m = FOR_HEADER.matcher(code);
+            if (m.matches() && statementStart(scan, i) && random.nextDouble() < rate) {
+                int end = closingLine(scan, i);
+                if (end > 0 && scan.code[end].trim().equals("}") && !containsWord(scan, i + 1, end, "continue")) {
+                    String init = m.group(1).trim();
+                    String cond = m.group(2).trim();
+                    String step = m.group(3).trim();
+                    Matcher decl = LOCAL_DECL.matcher(init);
+                    if (decl.matches()) {
+                        HashMap<String> map = new HashMap<>();
+                        map.put(decl.group(1), freshName(random, false, taken));
+                        renameRanges.append(new int[] {i, end});
+                        renameMaps.append(map);
+                    }
+                    if (!init.isEmpty()) {
+                        result.append(rewriteInRanges(indent + init + ";", i, renameRanges, renameMaps));
+                    }
+                    result.append(rewriteInRanges(indent + "while (" + (cond.isEmpty() ? "true" : cond) + ") {",
+                        i, renameRanges, renameMaps));
+                    if (!step.isEmpty()) {
+                        pendingUpdates.put(Integer.toString(end), step.replaceAll("\\s*,\\s*", "\n"));
+                    }
+                    continue;
+                }
+            }
+            m = WHILE_HEADER.matcher(code);
+            if (m.matches() && random.nextDouble() < rate / 2) {
+                result.append(rewriteInRanges(indent + "for (; " + m.group(1).trim() + "; ) {", i, renameRanges, renameMaps));
+                continue;
+            }
+            result.append(rewriteInRanges(line, i, renameRanges, renameMaps));
+        }
+        return result;
+    }
+
+    // 对落在某个循环改写范围内的行应用该循环的变量重命名
+    private static String rewriteInRanges(String line, int index, ArrayList<int[]> ranges, ArrayList<HashMap<String>> maps) {
+        for (int r = 0; r < ranges.size(); r++) {
+            int[] range = ranges.get(r);
+            if (index >= range[0] && index <= range[1]) {
+                line = replaceWords(line, mask(line), maps.get(r));
+            }
+        }
+        return line;
+    }
+
+    /**
+     * 注释扰动：整行注释以概率 rate 删除，行尾注释以概率 rate 删除，
+     * 每行之前以概率 rate/4 插入一行新注释
+     */
+    static ArrayList<String> churnComments(ArrayList<String> lines, Random random, double rate) {
+        Scan scan = scan(lines);
+        ArrayList<String> result = new ArrayList<>(lines.size() + lines.size() / 4);
+        int n = lines.size();
+        for (int i = 0; i < n; i++) {
+            String line = lines.get(i);
+            if (scan.commentOnly[i] && !scan.inBlockComment[i]) {
+                // 跨行的块注释整体保留或整体删除；结束行后面还有代码时保留
+                int end = i;
+                while (end + 1 < n && scan.inBlockComment[end + 1]) end++;
+                boolean whole = true;
+                for (int j = i; j <= end; j++) whole &= scan.commentOnly[j];
+                if (whole && random.nextDouble() < rate) {
+                    i = end;
+                    continue;
+                }
+            } else if (scan.hasComment[i] && !scan.code[i].trim().isEmpty() && !scan.inBlockComment[i]
+                && (i + 1 == n || !scan.inBlockComment[i + 1]) && random.nextDouble() < rate) {
+                line = scan.code[i];
+            }
+            // 块注释内部的行前不能插入 // 注释以外的内容，// 注释本身放在任何代码行前都安全
+            if (!scan.code[i].trim().isEmpty() && !scan.inBlockComment[i] && random.nextDouble() < rate / 4) {
+                result.append(indentOf(line) + "// " + COMMENTS[random.nextInt(COMMENTS.length)]);
+            }
+            result.append(line);
+        }
+        return result;
+    }
+
+    /**
+     * 排版扰动：以概率 rate 把 4 空格缩进改为 2 空格或制表符；
+     * 行尾的 { 以概率 rate 移到下一行（Allman 风格）；空行以概率 rate 删除
+     */
+    static ArrayList<String> reformat(ArrayList<String> lines, Random random, double rate) {
+        Scan scan = scan(lines);
+        String unit = null;
+        if (random.nextDouble() < rate) {
+            unit = random.nextBoolean() ? "  " : "\t";
+        }
+        ArrayList<String> result = new ArrayList<>(lines.size() + lines.size() / 8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty() && random.nextDouble() < rate) {
+                continue;
+            }
+            if (scan.inBlockComment[i]) {
+                result.append(line);
+                continue;
+            }
+            String indent = indentOf(line);
+            String content = line.substring(indent.length());
+            String newIndent = unit == null ? indent : reindent(indent, unit);
+            String code = scan.code[i];
+            if (code.trim().endsWith("{") && !scan.hasComment[i] && code.trim().length() > 1 && random.nextDouble() < rate) {
+                String head = content.substring(0, content.lastIndexOf('{')).replaceAll("\\s+$", "");
+                result.append(newIndent + head);
+                result.append(newIndent + "{");
+                continue;
+            }
+            result.append(newIndent + content);
+        }
+        return result;
+    }
+
+    private static String reindent(String indent, String unit) {
+        int width = 0;
+        for (int i = 0; i < indent.length(); i++) {
+            width += indent.charAt(i) == '\t' ? 4 : 1;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int level = 0; level < width / 4; level++) {
+            sb.append(unit);
+        }
+        for (int rest = 0; rest < width % 4; rest++) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------
+    // 源码扫描
+    // ------------------------------------------------------------------
+
+    /**
+     * 逐行扫描的结果
+     * - masked：与原行等长，注释与字面量内容替换为空格，只剩代码（用于查找单词与大括号）；
+     * - code：去掉注释后的行（保留字面量）；
+     * - depth：行首的大括号深度，delta：本行大括号的净增量；
+     * - inMethod：行首位于方法体（或其他代码块）中，而不是类体或文件顶层；
+     * - inBlockComment：行首位于块注释中。
+     */
+    static final class Scan {
+        String[] masked;
+        String[] code;
+        int[] depth;
+        int[] delta;
+        boolean[] inMethod;
+        boolean[] commentOnly;
+        boolean[] hasComment;
+        boolean[] inBlockComment;
+    }
+
+    static Scan scan(ArrayList<String> lines) {
+        int n = lines.size();
+        Scan scan = new Scan();
+        scan.masked = new String[n];
+        scan.code = new String[n];
+        scan.depth = new int[n];
+        scan.delta = new int[n];
+        scan.inMethod = new boolean[n];
+        scan.commentOnly = new boolean[n];
+        scan.hasComment = new boolean[n];
+        scan.inBlockComment = new boolean[n];
+
+        boolean inBlock = false;
+        int depth = 0;
+        // 大括号栈：true 表示类体（含匿名类），false 表示代码块
+        boolean[] classBody = new boolean[64];
+        StringBuilder header = new StringBuilder();
+        for (int k = 0; k < n; k++) {
+            String line = lines.get(k);
+            scan.inBlockComment[k] = inBlock;
+            scan.depth[k] = depth;
+            scan.inMethod[k] = depth > 0 && !classBody[Math.min(depth, classBody.length) - 1];
+            char[] masked = line.toCharArray();
+            StringBuilder code = new StringBuilder(line.length());
+            boolean comment = false;
+            int i = 0;
+            int len = line.length();
+            while (i < len) {
+                char c = line.charAt(i);
+                if (inBlock) {
+                    comment = true;
+                    if (c == '*' && i + 1 < len && line.charAt(i + 1) == '/') {
+                        masked[i] = ' ';
+                        masked[i + 1] = ' ';
+                        i += 2;
+                        inBlock = false;
+                    } else {
+                        masked[i++] = ' ';
+                    }
+                    continue;
+                }
+                if (c == '/' && i + 1 < len && line.charAt(i + 1) == '/') {
+                    comment = true;
+                    for (int j = i; j < len; j++) masked[j] = ' ';
+                    break;
+                }
+                if (c == '/' && i + 1 < len && line.charAt(i + 1) == '*') {
+                    comment = true;
+                    inBlock = true;
+                    masked[i] = ' ';
+                    masked[i + 1] = ' ';
+                    i += 2;
+                    continue;
+                }
+                if (c == '"' || c == '\'') {
+                    code.append(c);
+                    i++;
+                    while (i < len) {
+                        char d = line.charAt(i);
+                        code.append(d);
+                        if (d == '\\' && i + 1 < len) {
+                            code.append(line.charAt(i + 1));
+                            masked[i] = ' ';
+                            masked[i + 1] = ' ';
+                            i += 2;
+                            continue;
+                        }
+                        if (d == c) {
+                            i++;
+                            break;
+                        }
+                        masked[i++] = ' ';
+                    }
+                    continue;
+                }
+                if (c == '{') {
+                    String h = header.toString();
+                    boolean isClass = TYPE_DECL.matcher(h).find() || ANONYMOUS_CLASS.matcher(h).find();
+                    if (depth >= classBody.length) classBody = java.util.Arrays.copyOf(classBody, depth * 2);
+                    classBody[depth] = isClass;
+                    depth++;
+                    header.setLength(0);
+                } else if (c == '}') {
+                    depth = Math.max(0, depth - 1);
+                    header.setLength(0);
+                } else if (c == ';') {
+                    header.setLength(0);
+                } else {
+                    header.append(c);
+                }
+                code.append(c);
+                i++;
+            }
+            header.append(' ');
+            scan.masked[k] = new String(masked);
+            scan.code[k] = code.toString().replaceAll("\\s+$", "");
+            scan.delta[k] = depth - scan.depth[k];
+            scan.hasComment[k] = comment;
+            scan.commentOnly[k] = comment && scan.code[k].trim().isEmpty();
+        }
+        return scan;
+    }
+
+    // 不考虑注释与字面量：单独一行的 masked 形式（用于新生成的行，假定不在块注释中）
+    private static String mask(String line) {
+        ArrayList<String> single = new ArrayList<>(1);
+        single.append(line);
+        return scan(single).masked[0];
+    }
+
+    // 与 start 行的 { 配对的 } 所在行，找不到时返回 -1
+    private static int closingLine(Scan scan, int start) {
+        int target = scan.depth[start];
+        for (int i = start + 1; i < scan.depth.length; i++) {
+            if (scan.depth[i] + scan.delta[i] <= target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 以第 i 行结尾的语句（可能跨多行）含有 return 等跳转，或是多行的 for 循环头
+    private static boolean endsWithJump(Scan scan, int i) {
+        int first = i;
+        while (first > 0 && !statementStart(scan, first)) first--;
+        if (scan.code[first].trim().startsWith("for")) return true;
+        for (int j = first; j <= i; j++) {
+            if (intersects(wordSet(scan.masked[j]), JUMPS)) return true;
+        }
+        return false;
+    }
+
+    // 第 i 行是一条独立语句的开头：上一行以 ; { } 结尾或为空（不是无大括号的 if/else/for 的循环体，也不是标签之后）
+    private static boolean statementStart(Scan scan, int i) {
+        if (i == 0) return true;
+        String previous = scan.code[i - 1].trim();
+        return previous.isEmpty() || previous.endsWith(";") || previous.endsWith("{") || previous.endsWith("}");
+    }
+
+    private static boolean containsWord(Scan scan, int from, int to, String word) {
+        for (int i = from; i < to; i++) {
+            if (wordSet(scan.masked[i]).contains(word)) return true;
+        }
+        return false;
+    }
+
+    // 按 masked 中单词的位置替换原行中的单词
+    private static String replaceWords(String line, String masked, HashMap<String> renames) {
+        Matcher m = WORD.matcher(masked);
+        StringBuilder sb = null;
+        int last = 0;
+        while (m.find()) {
+            if (m.start() > 0 && Character.isDigit(masked.charAt(m.start() - 1))) {
+                continue;
+            }
+            String replacement = renames.get(m.group());
+            if (replacement == null) {
+                continue;
+            }
+            if (sb == null) sb = new StringBuilder(line.length() + 16);
+            sb.append(line, last, m.start()).append(replacement);
+            last = m.end();
+        }
+        if (sb == null) {
+            return line;
+        }
+        return sb.append(line, last, line.length()).toString();
+    }
+
+    // 语句是否为简单赋值（含局部变量声明）：顶层有 =（不是 ==、!=、<=、>=），不含控制流关键字
+    private static boolean isAssignment(String code) {
+        String s = code.trim();
+        if (!s.endsWith(";") || s.startsWith("}") || s.matches("^(return|break|continue|throw|yield|case|default|if|else|for|while|do|switch|try|catch|finally|assert)\\b.*")) {
+            return false;
+        }
+        return assignmentIndex(s) > 0;
+    }
+
+    private static int assignmentIndex(String s) {
+        for (int i = 1; i + 1 < s.length(); i++) {
+            if (s.charAt(i) != '=') continue;
+            char before = s.charAt(i - 1);
+            char after = s.charAt(i + 1);
+            if (after == '=' || before == '=' || before == '!' || before == '<' || before == '>') continue;
+            return i;
+        }
+        return -1;
+    }
+
+    // 赋值语句左侧出现的名字（被写入的变量）
+    private static HashSet assignedNames(String code) {
+        String s = code.trim();
+        HashSet names = new HashSet();
+        Matcher m = WORD.matcher(s.substring(0, Math.max(0, assignmentIndex(s))));
+        while (m.find()) names.add(m.group());
+        return names;
+    }
+
+    private static boolean intersects(HashSet a, HashSet b) {
+        for (String word : a.toArray()) {
+            if (b.contains(word)) return true;
+        }
+        return false;
+    }
+
+    private static HashSet wordSet(String masked) {
+        HashSet words = new HashSet();
+        Matcher m = WORD.matcher(masked);
+        while (m.find()) words.add(m.group());
+        return words;
+    }
+
+    private static HashSet wordsOf(ArrayList<String> lines) {
+        HashSet words = new HashSet();
+        for (int i = 0; i < lines.size(); i++) {
+            Matcher m = WORD.matcher(lines.get(i));
+            while (m.find()) words.add(m.group());
+        }
+        return words;
+    }
+
+    private static boolean renamable(String name) {
+        if (JavaConstants.isKeyword(name)) return false;
+        for (String literal : JavaConstants.LITERALS) {
+            if (literal.equals(name)) return false;
+        }
+        for (String keep : KEEP_NAMES) {
+            if (keep.equals(name)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 生成一个不在 taken 中的新名字并加入 taken：类型为 PascalCase 加后缀，其余为 camelCase
+     */
+    static String freshName(Random random, boolean type, HashSet taken) {
+        while (true) {
+            String first = NAME_PARTS[random.nextInt(NAME_PARTS.length)];
+            String name;
+            if (type) {
+                name = capitalize(first) + TYPE_SUFFIXES[random.nextInt(TYPE_SUFFIXES.length)];
+            } else if (random.nextBoolean()) {
+                name = first + capitalize(NAME_PARTS[random.nextInt(NAME_PARTS.length)]);
+            } else {
+                name = first;
+            }
+            if (random.nextInt(4) == 0) {
+                name += random.nextInt(10);
+            }
+            if (!JavaConstants.isKeyword(name) && taken.add(name)) {
+                return name;
+            }
+        }
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static String indentOf(String line) {
+        int i = 0;
+        while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) i++;
+        return line.substring(0, i);
+    }
+
+    private static String[] splitLines(String text) {
+        return text.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1);
+    }
+
+    private static String join(ArrayList<String> lines) {
+        StringBuilder sb = new StringBuilder(lines.size() * 32);
+        for (int i = 0; i < lines.size(); i++) {
+            sb.append(lines.get(i)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static ArrayList<String> copyOf(ArrayList<String> lines) {
+        ArrayList<String> copy = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) copy.append(lines.get(i));
+        return copy;
+    }
+
+    private static int[] shuffledIds(int n, Random random) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) ids[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+        return ids;
+    }
+
+    // 解析 --transforms，含未知名称时返回 null
+    private static boolean[] parseTransforms(String list) {
+        boolean[] enabled = new boolean[TRANSFORMS.length];
+        for (String name : list.split(",")) {
+            String t = name.trim().toLowerCase(Locale.ROOT);
+            if (t.isEmpty()) continue;
+            int index = -1;
+            for (int i = 0; i < TRANSFORMS.length; i++) {
+                if (TRANSFORMS[i].equals(t)) index = i;
+            }
+            if (index < 0) {
+                System.out.println("未知的变换: " + name);
+                return null;
+            }
+            enabled[index] = true;
+        }
+        return enabled;
+    }
+
+    // ------------------------------------------------------------------
+    // check：对照真值评估检测结果
+    // ------------------------------------------------------------------
+
+    private static void check(String[] args) throws IOException {
+        ArrayList<String> positional = new ArrayList<>();
+        double threshold = Double.NEGATIVE_INFINITY;
+        String scoreColumn = "similarity";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threshold":
+                    threshold = Double.parseDouble(Main.requireValue(args, ++i, "--threshold"));
+                    break;
+                case "--score":
+                    scoreColumn = Main.requireValue(args, ++i, "--score");
+                    break;
+                default:
+                    positional.append(args[i]);
+            }
+        }
+        if (positional.size() != 2) {
+            usage();
+            return;
+        }
+
+        HashSet truth = new HashSet();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(positional.get(0)), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] fields = csvFields(line);
+                truth.add(pairKey(fields[0], fields[1]));
+            }
+        }
+
+        long reported = 0;
+        long truePositives = 0;
+        HashSet found = new HashSet();
+        Path results = Paths.get(positional.get(1));
+        try (BufferedReader reader = Files.newBufferedReader(results, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            boolean jsonl = first != null && first.trim().startsWith("{");
+            int file1 = 0;
+            int file2 = 1;
+            int score = -1;
+            if (!jsonl && first != null) {
+                String[] header = csvFields(first);
+                for (int i = 0; i < header.length; i++) {
+                    if (header[i].equals("file1")) file1 = i;
+                    if (header[i].equals("file2")) file2 = i;
+                    if (header[i].equals(scoreColumn)) score = i;
+                }
+            }
+            String line = jsonl ? first : reader.readLine();
+            for (; line != null; line = reader.readLine()) {
+                if (line.isEmpty()) continue;
+                String name1;
+                String name2;
+                double value;
+                if (jsonl) {
+                    name1 = jsonField(line, "file1");
+                    name2 = jsonField(line, "file2");
+                    String raw = jsonField(line, scoreColumn);
+                    value = raw == null ? Double.NaN : Double.parseDouble(raw);
+                } else {
+                    String[] fields = csvFields(line);
+                    name1 = fields[file1];
+                    name2 = fields[file2];
+                    value = score >= 0 ? Double.parseDouble(fields[score]) : Double.NaN;
+                }
+                if (name1 == null || name2 == null || value < threshold) {
+                    continue;
+                }
+                reported++;
+                String key = pairKey(name1, name2);
+                if (truth.contains(key) && found.add(key)) {
+                    truePositives++;
+                }
+            }
+        }
+        System.out.printf(Locale.US,
+            "{\"truthPairs\":%d,\"reported\":%d,\"truePositives\":%d,\"recall\":%.4f,\"precision\":%.4f}%n",
+            truth.size(), reported, truePositives,
+            truth.size() == 0 ? 1.0 : (double) truePositives / truth.size(),
+            reported == 0 ? 1.0 : (double) truePositives / reported);
+    }
+
+    // 文件对的键：两个文件名（不含目录）按字典序排列
+    private static String pairKey(String path1, String path2) {
+        String a = Paths.get(path1).getFileName().toString();
+        String b = Paths.get(path2).getFileName().toString();
+        return a.compareTo(b) <= 0 ? a + "\n" + b : b + "\n" + a;
+    }
+
+    // 解析一行 CSV（支持 Corpus.csvField 产生的双引号转义）
+    private static String[] csvFields(String line) {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.append(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.append(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // 取 JSONL 行中的字段值（字符串去掉引号并反转义 \" 与 \\，数字原样返回），不存在时返回 null
+    private static String jsonField(String line, String name) {
+        Matcher m = Pattern.compile("\"" + Pattern.quote(name) + "\"\\s*:\\s*(\"((?:[^\"\\\\]|\\\\.)*)\"|[-0-9.eE+]+)").matcher(line);
+        if (!m.find()) {
+            return null;
+        }
+        if (m.group(2) != null) {
+            return m.group(2).replace("\\\"", "\"").replace("\\\\", "\\");
+        }
+        return m.group(1);
+    }
+
+    private static void usage() {
+        System.out.println("用法: java Main synth <seedDir>... --out <dir> [--families n] [--variants m] [--lines min-max]");
+        System.out.println("                      [--transforms " + String.join(",", TRANSFORMS) + "] [--rate p] [--seed s] [--threads n]");
+        System.out.println("      java Main synth check <truth.csv> <pairs.csv|pairs.jsonl> [--threshold t] [--score column]");
+    }
+}
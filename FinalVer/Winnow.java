@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import DataStructure.ArrayList;
+import Index.FingerprintIndex;
+import Index.Winnowing;
+
+/**
+ * 克隆检测模式：winnowing 指纹 + 全局指纹索引
+ *
+ * 用法：
+ *   java Main winnow <dir>... [--k n] [--w n] [--min-shared n] [--max-df n] [--format csv|jsonl] [--threads n]
+ *
+ * 与 corpus 子命令的加权余弦互为补充：不给出 0~1 的综合相似度，
+ * 而是给出两份文件共享的指纹数、各自被覆盖的比例以及匹配片段的行范围。
+ * 只有共享指纹的文件对才会出现在结果中，整体耗时近似线性。
+ */
+public class Winnow {
+
+    public static void run(String[] args) throws IOException {
+        ArrayList<Path> roots = new ArrayList<>();
+        int k = Winnowing.DEFAULT_K;
+        int w = Winnowing.DEFAULT_W;
+        int minShared = 5;
+        int maxDocFrequency = 10;
+        String format = "csv";
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--k":
+                    k = Integer.parseInt(Main.requireValue(args, ++i, "--k"));
+                    break;
+                case "--w":
+                    w = Integer.parseInt(Main.requireValue(args, ++i, "--w"));
+                    break;
+                case "--min-shared":
+                    minShared = Integer.parseInt(Main.requireValue(args, ++i, "--min-shared"));
+                    break;
+                case "--max-df":
+                    maxDocFrequency = Integer.parseInt(Main.requireValue(args, ++i, "--max-df"));
+                    break;
+                case "--format":
+                    format = Main.requireValue(args, ++i, "--format").toLowerCase(Locale.ROOT);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(Main.requireValue(args, ++i, "--threads"));
+                    break;
+                default:
+                    roots.append(Paths.get(args[i]));
+            }
+        }
+        if (roots.isEmpty() || k <= 0 || w <= 0 || threads <= 0
+                || !("csv".equals(format) || "jsonl".equals(format))) {
+            System.out.println("用法: java Main winnow <dir>... [--k n] [--w n] [--min-shared n] [--max-df n] [--format csv|jsonl] [--threads n]");
+            return;
+        }
+
+        Path[] files = Corpus.listJavaFiles(roots);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long t0 = System.nanoTime();
+            Winnowing.Fingerprints[] fingerprints = new Winnowing.Fingerprints[files.length];
+            int kk = k, ww = w;
+            Corpus.invoke(pool, () -> IntStream.range(0, files.length).parallel().forEach(i -> {
+                String code = "";
+                try {
+                    code = Corpus.readFile(files[i]);
+                } catch (IOException e) {
+                    System.err.println("读取文件失败: " + files[i] + " (" + e.getMessage() + ")");
+                }
+                fingerprints[i] = Winnowing.fingerprint(code, kk, ww);
+            }));
+            FingerprintIndex index = new FingerprintIndex();
+            for (Winnowing.Fingerprints f : fingerprints) {
+                index.add(f);
+            }
+            long t1 = System.nanoTime();
+            FingerprintIndex.ClonePair[] pairs = index.clonePairs(minShared, maxDocFrequency);
+            long t2 = System.nanoTime();
+
+            PrintStream out = new PrintStream(System.out, false, "UTF-8");
+            boolean csv = "csv".equals(format);
+            if (csv) {
+                out.println("file1,file2,shared,coverage1,coverage2,regions");
+            }
+            for (FingerprintIndex.ClonePair pair : pairs) {
+                String regions = formatRegions(index.matches(pair.doc1(), pair.doc2()));
+                String file1 = files[pair.doc1()].toString();
+                String file2 = files[pair.doc2()].toString();
+                if (csv) {
+                    out.printf(Locale.US, "%s,%s,%d,%.4f,%.4f,%s%n", Corpus.csvField(file1), Corpus.csvField(file2),
+                        pair.shared(), pair.coverage1(), pair.coverage2(), regions);
+                } else {
+                    out.printf(Locale.US, "{\"file1\":%s,\"file2\":%s,\"shared\":%d,\"coverage1\":%.4f,\"coverage2\":%.4f,\"regions\":\"%s\"}%n",
+                        Corpus.jsonString(file1), Corpus.jsonString(file2),
+                        pair.shared(), pair.coverage1(), pair.coverage2(), regions);
+                }
+            }
+            out.flush();
+            System.err.printf(Locale.US, "files=%d pairs=%d index=%.2fs match=%.2fs k=%d w=%d%n",
+                files.length, pairs.length, (t1 - t0) / 1e9, (t2 - t1) / 1e9, k, w);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 匹配片段格式：file1 行范围:file2 行范围，多段以分号分隔，如 "3-10:5-12;20-31:40-51"
+     */
+    private static String formatRegions(FingerprintIndex.Region[] regions) {
+        StringBuilder sb = new StringBuilder();
+        for (FingerprintIndex.Region r : regions) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(r.start1()).append('-').append(r.end1()).append(':')
+              .append(r.start2()).append('-').append(r.end2());
+        }
+        return sb.toString();
+    }
+}
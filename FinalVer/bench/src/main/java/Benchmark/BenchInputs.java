@@ -0,0 +1,139 @@
+package Benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import Constants.JavaConstants;
+import DataStructure.ArrayList;
+
+/**
+ * 基准输入：TestCode 中的源文件，以及由它们拼接生成的大文件
+ *
+ * 三档规模（{@link #pair}）：
+ * - small：TestCode 中最小的两个文件（约 200 字节）；
+ * - medium：TestCode 中最大的两个文件（约 1.2KB）；
+ * - large：生成的两个约 64KB 的文件。每个文件依次拼接随机挑选的 TestCode 文件，
+ *   每份副本的标识符加上不同后缀（模拟改名抄袭），两个文件的挑选顺序不同，彼此相似但不相同。
+ * 生成过程只依赖固定种子，每次运行得到的输入完全一致。
+ *
+ * TestCode 目录由 -Dsimilarity.bench.corpus 指定，默认为 ../../TestCode（在 FinalVer/bench 下运行时）。
+ */
+final class BenchInputs {
+
+    /** 语料目录的系统属性名 */
+    static final String CORPUS_PROPERTY = "similarity.bench.corpus";
+    static final String DEFAULT_CORPUS = "../../TestCode";
+
+    /** large 档文件的目标大小（字符数） */
+    static final int LARGE_CHARS = 64 * 1024;
+
+    private static final Pattern WORD = Pattern.compile("\\b[A-Za-z_][A-Za-z0-9_]*\\b");
+
+    private static String[] sources;
+
+    private BenchInputs() {
+    }
+
+    /** 语料目录 */
+    static Path corpus() {
+        return Paths.get(System.getProperty(CORPUS_PROPERTY, DEFAULT_CORPUS)).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 语料中全部 .java 文件的内容，按文件大小升序
+     */
+    static synchronized String[] sources() {
+        if (sources == null) {
+            Path root = corpus();
+            try (Stream<Path> files = Files.walk(root)) {
+                sources = files.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p))
+                    .sorted()
+                    .map(BenchInputs::read)
+                    .sorted((a, b) -> Integer.compare(a.length(), b.length()))
+                    .toArray(String[]::new);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read benchmark corpus " + root
+                    + " (set -D" + CORPUS_PROPERTY + ")", e);
+            }
+            if (sources.length < 2) {
+                throw new IllegalStateException("Benchmark corpus " + root + " needs at least two .java files");
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * 指定规模的一对输入
+     * @param size small / medium / large
+     */
+    static String[] pair(String size) {
+        String[] all = sources();
+        switch (size) {
+            case "small":
+                return new String[] {all[0], all[1]};
+            case "medium":
+                return new String[] {all[all.length - 2], all[all.length - 1]};
+            case "large":
+                return new String[] {generate(LARGE_CHARS, 1), generate(LARGE_CHARS, 2)};
+            default:
+                throw new IllegalArgumentException("Unknown input size: " + size);
+        }
+    }
+
+    /**
+     * 拼接生成约 chars 个字符的源文件
+     */
+    static String generate(int chars, long seed) {
+        String[] all = sources();
+        Random random = new Random(seed);
+        StringBuilder out = new StringBuilder(chars + 2048);
+        for (int copy = 0; out.length() < chars; copy++) {
+            out.append(rename(all[random.nextInt(all.length)], "_" + copy)).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * 语料中全部 token（关键字、运算符与标识符），用作数据结构基准的键
+     */
+    static ArrayList<String> tokens() {
+        ArrayList<String> tokens = new ArrayList<>();
+        for (String source : sources()) {
+            ArrayList<String> fileTokens = Analyzer.Lexer.tokenize(Analyzer.Preprocessor.process(source));
+            for (int i = 0; i < fileTokens.size(); i++) {
+                tokens.append(fileTokens.get(i));
+            }
+        }
+        return tokens;
+    }
+
+    // 关键字与 true/false/null 以外的单词都加上后缀
+    private static String rename(String source, String suffix) {
+        Matcher m = WORD.matcher(source);
+        StringBuilder out = new StringBuilder(source.length() + source.length() / 4);
+        while (m.find()) {
+            String word = m.group();
+            boolean keep = JavaConstants.isKeyword(word) || Arrays.asList(JavaConstants.LITERALS).contains(word);
+            m.appendReplacement(out, keep ? word : word + suffix);
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    private static String read(Path file) {
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
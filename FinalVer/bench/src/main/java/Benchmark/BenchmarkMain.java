@@ -0,0 +1,53 @@
+package Benchmark;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar 的入口
+ *
+ * 参数与 JMH 自带的命令行完全相同，另外：
+ * - 默认启用 GC 分配分析（等同 -prof gc），结果中 gc.alloc.rate.norm 即每次调用分配的字节数；
+ *   加 --no-gc 关闭；
+ * - 语料目录（-Dsimilarity.bench.corpus）解析为绝对路径后传给每个 fork 出的 JVM。
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+        boolean gc = true;
+        java.util.ArrayList<String> rest = new java.util.ArrayList<>();
+        for (String arg : args) {
+            if ("--no-gc".equals(arg)) {
+                gc = false;
+            } else {
+                rest.add(arg);
+            }
+        }
+        CommandLineOptions cli = new CommandLineOptions(rest.toArray(new String[0]));
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+            || cli.shouldListResultFormats()) {
+            // 帮助与列表类参数交给 JMH 自带的入口处理
+            org.openjdk.jmh.Main.main(rest.toArray(new String[0]));
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli)
+            .jvmArgsAppend("-D" + BenchInputs.CORPUS_PROPERTY + "=" + BenchInputs.corpus());
+        boolean profiled = cli.getProfilers().stream().anyMatch(p -> p.getKlass().equals(GCProfiler.class.getName())
+            || p.getKlass().equals("gc"));
+        if (gc && !profiled) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
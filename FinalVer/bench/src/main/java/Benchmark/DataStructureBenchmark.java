@@ -0,0 +1,122 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Analyzer.KeywordAnalyzer;
+import Analyzer.Lexer;
+import Analyzer.OperatorAnalyzer;
+import Analyzer.Preprocessor;
+import DataStructure.ArrayList;
+import DataStructure.FrequencyVector;
+import DataStructure.HashMap;
+
+/**
+ * DataStructure 包的微基准
+ *
+ * 键取自 TestCode 的 token（与分析器实际使用的字符串分布一致），keys 个不同的键，
+ * 不足时以后缀区分的副本补足。HashMap/ArrayList 基准每次调用处理全部键，单次操作的耗时为结果除以 keys。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataStructureBenchmark {
+
+    /** 不同键的个数 */
+    @Param({"64", "4096"})
+    public int keys;
+
+    private String[] words;
+    private HashMap<Integer> filled;
+    private FrequencyVector keyword1;
+    private FrequencyVector keyword2;
+    private FrequencyVector operator1;
+    private FrequencyVector operator2;
+
+    @Setup
+    public void setUp() {
+        ArrayList<String> tokens = BenchInputs.tokens();
+        HashMap<Boolean> seen = new HashMap<>();
+        ArrayList<String> distinct = new ArrayList<>();
+        for (int copy = 0; distinct.size() < keys; copy++) {
+            for (int i = 0; i < tokens.size() && distinct.size() < keys; i++) {
+                String word = copy == 0 ? tokens.get(i) : tokens.get(i) + "_" + copy;
+                if (!seen.containsKey(word)) {
+                    seen.put(word, Boolean.TRUE);
+                    distinct.append(word);
+                }
+            }
+        }
+        words = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            words[i] = distinct.get(i);
+        }
+        filled = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            filled.put(words[i], i);
+        }
+
+        String[] pair = BenchInputs.pair("medium");
+        ArrayList<String> tokens1 = Lexer.tokenize(Preprocessor.process(pair[0]));
+        ArrayList<String> tokens2 = Lexer.tokenize(Preprocessor.process(pair[1]));
+        keyword1 = KeywordAnalyzer.toVector(KeywordAnalyzer.analyze(tokens1));
+        keyword2 = KeywordAnalyzer.toVector(KeywordAnalyzer.analyze(tokens2));
+        operator1 = OperatorAnalyzer.toVector(OperatorAnalyzer.analyze(tokens1));
+        operator2 = OperatorAnalyzer.toVector(OperatorAnalyzer.analyze(tokens2));
+    }
+
+    /** 从空表开始插入全部键（含扩容） */
+    @Benchmark
+    public HashMap<Integer> hashMapPut() {
+        HashMap<Integer> map = new HashMap<>();
+        for (int i = 0; i < words.length; i++) {
+            map.put(words[i], i);
+        }
+        return map;
+    }
+
+    /** 查找全部键（全部命中） */
+    @Benchmark
+    public void hashMapGet(Blackhole blackhole) {
+        for (int i = 0; i < words.length; i++) {
+            blackhole.consume(filled.get(words[i]));
+        }
+    }
+
+    /** 从空列表开始追加全部键（含扩容） */
+    @Benchmark
+    public ArrayList<String> arrayListAppend() {
+        ArrayList<String> list = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            list.append(words[i]);
+        }
+        return list;
+    }
+
+    /** 关键字频度向量的余弦相似度（维度为关键字个数） */
+    @Benchmark
+    public double keywordCosine() {
+        return FrequencyVector.cosineSimilarity(keyword1, keyword2);
+    }
+
+    /** 运算符频度向量的余弦相似度 */
+    @Benchmark
+    public double operatorCosine() {
+        return FrequencyVector.cosineSimilarity(operator1, operator2);
+    }
+}
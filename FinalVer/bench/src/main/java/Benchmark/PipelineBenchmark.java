@@ -0,0 +1,110 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Analyzer.DocumentProfile;
+import Analyzer.IdentifierAnalyzer;
+import Analyzer.KeywordAnalyzer;
+import Analyzer.Lexer;
+import Analyzer.NGramAnalyzer;
+import Analyzer.OperatorAnalyzer;
+import Analyzer.Preprocessor;
+import Analyzer.SourceBuffer;
+import Analyzer.TokenStream;
+import DataStructure.FrequencyVector;
+import DataStructure.LongCountMap;
+
+/**
+ * 画像构建流水线各阶段的单独耗时
+ *
+ * 每个阶段的输入在 Setup 中由前面的阶段预先算好，基准方法只执行该阶段本身，
+ * 阶段划分与 Analyzer/StageTracer.java 一致；buildProfile 为整条流水线。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private String code;
+    private SourceBuffer buffer;
+    private char[] preprocessed;
+    private TokenStream tokens;
+    private int[] identifierIds;
+
+    @Setup
+    public void setUp() {
+        code = BenchInputs.pair(size)[0];
+        buffer = new SourceBuffer();
+        Preprocessor.processInto(code, buffer);
+        preprocessed = java.util.Arrays.copyOf(buffer.chars(), buffer.length());
+        tokens = Lexer.tokenizeCodes(preprocessed, preprocessed.length);
+        identifierIds = IdentifierAnalyzer.normalizedIdentifierIds(tokens);
+    }
+
+    @Benchmark
+    public SourceBuffer preprocess() {
+        Preprocessor.processInto(code, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public TokenStream lex() {
+        return Lexer.tokenizeCodes(preprocessed, preprocessed.length);
+    }
+
+    @Benchmark
+    public FrequencyVector keyword() {
+        return KeywordAnalyzer.toVector(tokens);
+    }
+
+    @Benchmark
+    public FrequencyVector operator() {
+        return OperatorAnalyzer.toVector(tokens);
+    }
+
+    @Benchmark
+    public int[] identifierIds() {
+        return IdentifierAnalyzer.normalizedIdentifierIds(tokens);
+    }
+
+    @Benchmark
+    public LongCountMap identifierNGrams() {
+        return NGramAnalyzer.hashNGrams(identifierIds, identifierIds.length,
+            DocumentProfile.ID_MIN_N, DocumentProfile.ID_MAX_N);
+    }
+
+    @Benchmark
+    public LongCountMap tokenNGrams() {
+        return NGramAnalyzer.hashNormalizedNGrams(tokens, DocumentProfile.SEQ_MIN_N, DocumentProfile.SEQ_MAX_N);
+    }
+
+    /** 由 token 流构建画像（关键字之后的全部阶段，含排序汇总） */
+    @Benchmark
+    public DocumentProfile fromTokens() {
+        return DocumentProfile.fromTokens(tokens);
+    }
+
+    /** 整条流水线：预处理到画像 */
+    @Benchmark
+    public DocumentProfile buildProfile() {
+        return DocumentProfile.build(code);
+    }
+}
@@ -0,0 +1,58 @@
+package Benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import Analyzer.DocumentProfile;
+
+/**
+ * 调用默认包中的 SimilarityCalculator
+ *
+ * 具名包里的代码无法 import 默认包的类（JMH 生成的代码也必须位于具名包），
+ * 因此通过 MethodHandle 调用。句柄保存在 static final 字段中，JIT 把它当作常量直接内联目标方法，
+ * invokeExact 与直接调用没有可测量的差别。
+ */
+final class Similarity {
+
+    private static final MethodHandle CALCULATE_CODE;
+    private static final MethodHandle CALCULATE_PROFILE;
+
+    static {
+        try {
+            Class<?> calculator = Class.forName("SimilarityCalculator");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            CALCULATE_CODE = lookup.findStatic(calculator, "calculate",
+                MethodType.methodType(double.class, String.class, String.class));
+            CALCULATE_PROFILE = lookup.findStatic(calculator, "calculate",
+                MethodType.methodType(double.class, DocumentProfile.class, DocumentProfile.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Similarity() {
+    }
+
+    /** SimilarityCalculator.calculate(String, String) */
+    static double calculate(String code1, String code2) {
+        try {
+            return (double) CALCULATE_CODE.invokeExact(code1, code2);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** SimilarityCalculator.calculate(DocumentProfile, DocumentProfile) */
+    static double calculate(DocumentProfile profile1, DocumentProfile profile2) {
+        try {
+            return (double) CALCULATE_PROFILE.invokeExact(profile1, profile2);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
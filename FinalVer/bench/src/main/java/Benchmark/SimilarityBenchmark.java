@@ -0,0 +1,59 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Analyzer.DocumentProfile;
+
+/**
+ * SimilarityCalculator.calculate 端到端耗时
+ *
+ * - code：两段源代码，含两次画像构建（命令行与 /api/similarity 的路径）；
+ * - profiles：两个已构建的画像，只有打分（语料库两两比较中每对的开销）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private String code1;
+    private String code2;
+    private DocumentProfile profile1;
+    private DocumentProfile profile2;
+
+    @Setup
+    public void setUp() {
+        String[] pair = BenchInputs.pair(size);
+        code1 = pair[0];
+        code2 = pair[1];
+        profile1 = DocumentProfile.build(code1);
+        profile2 = DocumentProfile.build(code2);
+    }
+
+    @Benchmark
+    public double code() {
+        return Similarity.calculate(code1, code2);
+    }
+
+    @Benchmark
+    public double profiles() {
+        return Similarity.calculate(profile1, profile2);
+    }
+}
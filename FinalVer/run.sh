@@ -7,7 +7,7 @@ cd "$ROOT"
 PORT="${1:-8080}"
 
 printf "Compiling Java sources...\n"
-javac Server/ServerMain.java SimilarityCalculator.java Analyzer/*.java DataStructure/*.java Constants/*.java
+javac Server/*.java SimilarityCalculator.java Analyzer/*.java DataStructure/*.java Constants/*.java
 
 printf "Starting server on http://localhost:%s\n" "$PORT"
 java -cp ".:Server" ServerMain "$PORT" &